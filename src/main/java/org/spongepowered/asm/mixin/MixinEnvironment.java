@@ -293,6 +293,14 @@ public final class MixinEnvironment implements ITokenProvider {
          */
         DEBUG_PROFILER(Option.DEBUG_ALL, Inherit.ALLOW_OVERRIDE, "profiler"),
 
+        /**
+         * Record the code size of target methods before and after mixins are
+         * applied, warn when methods grow past the JIT inlining and
+         * compilation thresholds and write a report of the growth attributed
+         * to each mixin and injector
+         */
+        DEBUG_CODE_SIZE(Option.DEBUG_ALL, "codeSize"),
+
         /**
          * Dumps the bytecode for the target class to disk when mixin
          * application fails
@@ -416,6 +424,27 @@ public final class MixinEnvironment implements ITokenProvider {
          */
         INITIALISER_INJECTION_MODE("initialiserInjectionMode", "default"),
 
+        /**
+         * Directory to use for the persistent transform cache. When set, the
+         * result of applying mixins to a target class is stored in this
+         * directory and reused on subsequent launches as long as neither the
+         * class nor the mixins which apply to it have changed. The directory
+         * can be shared by several processes. Classes are not cached while
+         * remappers are registered with the environment. Disabled when empty.
+         */
+        TRANSFORM_CACHE("transformCache", ""),
+
+        /**
+         * File to use for the persistent ClassInfo snapshot. When set, class
+         * metadata loaded during the session is written to this file on exit
+         * and reused on subsequent launches for classes whose bytecode has
+         * not changed and when the set of transformers reported by the
+         * service is the same. Class resources are still read to validate the
+         * snapshot, only parsing and transformation are avoided. Disabled when
+         * empty.
+         */
+        CLASSINFO_SNAPSHOT("classInfoSnapshot", ""),
+
         /**
          * Parent for tunable settings
          */
@@ -427,7 +456,115 @@ public final class MixinEnvironment implements ITokenProvider {
          * with {@link ClassReader#EXPAND_FRAMES} flag which restores the
          * behaviour from versions 0.8.6 and below, newer versions default to 0.
          */
-        CLASSREADER_EXPAND_FRAMES(Option.TUNABLE, Inherit.INDEPENDENT, "classReaderExpandFrames", true, "false");
+        CLASSREADER_EXPAND_FRAMES(Option.TUNABLE, Inherit.INDEPENDENT, "classReaderExpandFrames", true, "false"),
+
+        /**
+         * Tunable which allows the mixin transformer to process disjoint
+         * target classes concurrently. By default all transformer operations
+         * are serialised on the write lock of the transformer's read/write lock.
+         * When this option is enabled, every transformation (including classes
+         * without mixins) holds the shared read lock instead, so threads only
+         * block one another while mixin selection takes the write lock to
+         * prepare newly available configs. Mixin targets additionally take a
+         * per-target lock and then the locks of the mixins being applied, so
+         * targets only contend with other targets which share one or more
+         * mixins. Note that config plugins must be thread-safe when this
+         * option is enabled.
+         */
+        CONCURRENT_TRANSFORM(Option.TUNABLE, Inherit.INDEPENDENT, "concurrentTransform", true, "false"),
+
+        /**
+         * Tunable which causes prepared mixins to retain their class bytecode
+         * instead of the full class tree. Trees are re-read from the bytecode
+         * when required and a bounded number are kept in a shared cache, see
+         * {@link #MIXIN_CLASS_CACHE_SIZE}. Reduces the memory retained by
+         * large numbers of mixins at the cost of re-parsing mixin classes.
+         */
+        COMPACT_MIXIN_CLASSES(Option.TUNABLE, Inherit.INDEPENDENT, "compactMixinClasses", true, "false"),
+
+        /**
+         * Maximum number of mixin class trees to keep in memory when
+         * {@link #COMPACT_MIXIN_CLASSES} is enabled
+         */
+        MIXIN_CLASS_CACHE_SIZE(Option.TUNABLE, Inherit.INDEPENDENT, "mixinClassCacheSize", false, "64"),
+
+        /**
+         * Tunable which enables memoisation of member lookups in the class
+         * hierarchy. The memoised results for a class are discarded when
+         * members, interfaces or mixins are added to it, its mixins or its
+         * ancestors after they were loaded, or their members are renamed or
+         * remapped.
+         */
+        HIERARCHY_LOOKUP_CACHE(Option.TUNABLE, Inherit.INDEPENDENT, "hierarchyLookupCache", true, "false"),
+
+        /**
+         * Tunable which causes class metadata for classes which are not mixin
+         * targets to be read without method bodies. Frames for the methods of
+         * such classes are only read if they are later required, either from
+         * the class node when the class becomes a mixin target or by reading
+         * the class again.
+         */
+        SKELETON_CLASS_INFO(Option.TUNABLE, Inherit.INDEPENDENT, "skeletonClassInfo", true, "false"),
+
+        /**
+         * Maximum number of entries in the class metadata cache before
+         * metadata for library classes is evicted, least recently used first.
+         * Metadata for mixins and mixin targets is never evicted. Zero (the
+         * default) means the cache is unbounded.
+         */
+        CLASSINFO_CACHE_SIZE(Option.TUNABLE, Inherit.INDEPENDENT, "classInfoCacheSize", false, "0"),
+
+        /**
+         * Tunable which causes <tt>&#64;Inject</tt> callbacks in void methods
+         * (other than constructors) to obtain their {@link
+         * org.spongepowered.asm.mixin.injection.callback.CallbackInfo
+         * CallbackInfo} from a per-thread pool instead of allocating a new
+         * instance on every invocation. Handlers must not retain the instance
+         * after they return when this option is enabled.
+         */
+        POOL_CALLBACK_INFO(Option.TUNABLE, Inherit.INDEPENDENT, "poolCallbackInfo"),
+
+        /**
+         * Estimated target method size in bytes above which <tt>&#64;Inject
+         * </tt> callbacks are outlined. The callback setup, handler invocation
+         * and <tt>CallbackInfo</tt> construction are moved into a synthetic
+         * static stub method in the target class, leaving only the argument
+         * loads, a call to the stub and the cancellation check in the target.
+         * Pooled callback info (see {@link #POOL_CALLBACK_INFO}) is acquired
+         * and released inside the stub. A callback is outlined when injecting
+         * it inline would take the target past the threshold. The default
+         * matches HotSpot's <tt>HugeMethodLimit</tt>, beyond which methods
+         * are never compiled, set to <tt>325</tt> to keep methods within
+         * <tt>FreqInlineSize</tt> or <tt>0</tt> to disable outlining.
+         */
+        OUTLINE_CALLBACKS_THRESHOLD(Option.TUNABLE, Inherit.INDEPENDENT, "outlineCallbacksThreshold", false, "8000"),
+
+        /**
+         * Tunable which causes <tt>&#64;Inject</tt> callbacks at multiple
+         * RETURN sites in the same target to be generated once in a shared
+         * epilogue at the end of the target, instead of being duplicated at
+         * every site. Each site jumps to the epilogue and is switched back to
+         * once the callback completes, so code injected at the same sites by
+         * other injectors runs exactly as before.
+         */
+        COALESCE_RETURN_INJECTIONS(Option.TUNABLE, Inherit.INDEPENDENT, "coalesceReturnInjections"),
+
+        /**
+         * Tunable which causes consecutive <tt>&#64;Inject</tt> callbacks from
+         * different injectors at the same instruction to share a single
+         * <tt>CallbackInfo</tt> instance and a single copy of the return code
+         * for cancellation, provided the callback infos would be identical.
+         */
+        FUSE_CALLBACKS(Option.TUNABLE, Inherit.INDEPENDENT, "fuseCallbacks"),
+
+        /**
+         * Tunable which specifies the maximum estimated code size in bytes of
+         * private or static injector handlers which will be inlined into their
+         * call sites once all injectors have been applied. The handler methods
+         * themselves are retained. A value of zero (the default) disables
+         * inlining.
+         */
+        INLINE_HANDLERS_THRESHOLD(Option.TUNABLE, Inherit.INDEPENDENT, "inlineHandlersThreshold", false, "0");
         
         /**
          * Type of inheritance for options
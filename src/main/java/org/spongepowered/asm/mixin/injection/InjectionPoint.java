@@ -40,6 +40,7 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.AnnotationNode;
@@ -293,6 +294,13 @@ public abstract class InjectionPoint {
      */
     private static Map<String, Class<? extends InjectionPoint>> types = new HashMap<String, Class<? extends InjectionPoint>>();
     
+    /**
+     * Resolved constructors for injection point classes, so that reflective
+     * lookup only happens once per class
+     */
+    private static final Map<Class<? extends InjectionPoint>, Constructor<? extends InjectionPoint>> constructors
+            = new ConcurrentHashMap<Class<? extends InjectionPoint>, Constructor<? extends InjectionPoint>>();
+    
     static {
         // Standard Injection Points
         InjectionPoint.registerBuiltIn(BeforeFieldAccess.class);
@@ -861,12 +869,15 @@ public abstract class InjectionPoint {
     }
     
     private static InjectionPoint create(IMixinContext context, InjectionPointData data, Class<? extends InjectionPoint> ipClass) {
-        Constructor<? extends InjectionPoint> ipCtor = null;
-        try {
-            ipCtor = ipClass.getDeclaredConstructor(InjectionPointData.class);
-            ipCtor.setAccessible(true);
-        } catch (NoSuchMethodException ex) {
-            throw new InvalidInjectionException(context, ipClass.getName() + " must contain a constructor which accepts an InjectionPointData", ex);
+        Constructor<? extends InjectionPoint> ipCtor = InjectionPoint.constructors.get(ipClass);
+        if (ipCtor == null) {
+            try {
+                ipCtor = ipClass.getDeclaredConstructor(InjectionPointData.class);
+                ipCtor.setAccessible(true);
+            } catch (NoSuchMethodException ex) {
+                throw new InvalidInjectionException(context, ipClass.getName() + " must contain a constructor which accepts an InjectionPointData", ex);
+            }
+            InjectionPoint.constructors.put(ipClass, ipCtor);
         }
 
         InjectionPoint point = null;
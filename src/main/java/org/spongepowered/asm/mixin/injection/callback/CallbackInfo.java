@@ -36,6 +36,22 @@ import org.spongepowered.asm.util.Constants;
  */
 public class CallbackInfo implements Cancellable {
 
+    /**
+     * Number of instances retained per thread for pooled callbacks, see
+     * {@link #acquire}
+     */
+    private static final int POOL_SIZE = 8;
+
+    /**
+     * Per-thread pool of reusable instances
+     */
+    private static final ThreadLocal<PooledCallbackInfo[]> pool = new ThreadLocal<PooledCallbackInfo[]>() {
+        @Override
+        protected PooledCallbackInfo[] initialValue() {
+            return new PooledCallbackInfo[CallbackInfo.POOL_SIZE];
+        }
+    };
+
     /**
      * Method name being injected into, this is useful if a single callback is
      * injecting into multiple methods.
@@ -79,11 +95,12 @@ public class CallbackInfo implements Cancellable {
      */
     @Override
     public String toString() {
-        return String.format("CallbackInfo[TYPE=%s,NAME=%s,CANCELLABLE=%s]", this.getClass().getSimpleName(), this.name, this.cancellable);
+        return String.format("CallbackInfo[TYPE=%s,NAME=%s,CANCELLABLE=%s]", this.getClass().getSimpleName(), this.getId(),
+                this.isCancellable());
     }
 
     @Override
-    public final boolean isCancellable() {
+    public boolean isCancellable() {
         return this.cancellable;
     }
 
@@ -97,13 +114,63 @@ public class CallbackInfo implements Cancellable {
      */
     @Override
     public void cancel() throws CancellationException {
-        if (!this.cancellable) {
-            throw new CancellationException(String.format("The call %s is not cancellable.", this.name));
+        if (!this.isCancellable()) {
+            throw new CancellationException(String.format("The call %s is not cancellable.", this.getId()));
         }
 
         this.cancelled = true;
     }
     
+    /**
+     * Obtain an instance from the calling thread's pool, called by injected
+     * code when callback info pooling is enabled in place of allocating a new
+     * instance for every invocation. The instance is only valid until the
+     * injected code calls {@link #release}, handlers must therefore not retain
+     * the instance beyond their own invocation. Any free pooled instance is
+     * reused and takes on the supplied id and cancellability, so a thread
+     * only allocates when it holds more instances at once than the pool
+     * retains. If every pooled instance is currently held, for example because the
+     * target method has been re-entered from inside a handler, a new unpooled
+     * instance is returned.
+     * 
+     * @param name calling method name
+     * @param cancellable true if the callback can be cancelled
+     * @return reset callback info instance
+     */
+    public static CallbackInfo acquire(String name, boolean cancellable) {
+        PooledCallbackInfo[] instances = CallbackInfo.pool.get();
+        for (int i = 0; i < instances.length; i++) {
+            PooledCallbackInfo instance = instances[i];
+            if (instance == null) {
+                instance = instances[i] = new PooledCallbackInfo();
+            }
+            if (!instance.acquired) {
+                return instance.reuse(name, cancellable);
+            }
+        }
+        return new CallbackInfo(name, cancellable);
+    }
+
+    /**
+     * Return this instance to the pool it was obtained from, called by injected
+     * code once the callback has completed, including when the handler throws.
+     * Returns the cancellation state so that the injected code does not need
+     * to read it separately. Instances which were not obtained from the pool
+     * are unaffected.
+     * 
+     * @return true if the callback was cancelled
+     */
+    public boolean release() {
+        return this.cancelled;
+    }
+
+    /**
+     * Clear the cancellation state, called when a pooled instance is reused
+     */
+    void reset() {
+        this.cancelled = false;
+    }
+
     // Methods below this point used by the CallbackInjector
 
     static String getCallInfoClassName() {
@@ -145,4 +212,20 @@ public class CallbackInfo implements Cancellable {
     static String getIsCancelledMethodSig() {
         return "()Z";
     }
+
+    static String getAcquireMethodName() {
+        return "acquire";
+    }
+
+    static String getAcquireMethodSig() {
+        return String.format("(%sZ)L%s;", Constants.STRING_DESC, CallbackInfo.getCallInfoClassName(Type.VOID_TYPE));
+    }
+
+    static String getReleaseMethodName() {
+        return "release";
+    }
+
+    static String getReleaseMethodSig() {
+        return "()Z";
+    }
 }
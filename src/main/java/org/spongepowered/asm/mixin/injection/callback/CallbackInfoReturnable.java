@@ -124,6 +124,18 @@ public class CallbackInfoReturnable<R> extends CallbackInfo {
     public boolean getReturnValueZ() { if (this.returnValue == null) { return false; } return (Boolean)  this.returnValue; }
     // CHECKSTYLE:ON
 
+    // Unboxed setters, overridden by the specialised subclasses below to avoid boxing entirely
+    // CHECKSTYLE:OFF
+    @SuppressWarnings("unchecked") public void setReturnValueB(byte    returnValue) throws CancellationException { this.setReturnValue((R) Byte.valueOf(returnValue)); }
+    @SuppressWarnings("unchecked") public void setReturnValueC(char    returnValue) throws CancellationException { this.setReturnValue((R) Character.valueOf(returnValue)); }
+    @SuppressWarnings("unchecked") public void setReturnValueD(double  returnValue) throws CancellationException { this.setReturnValue((R) Double.valueOf(returnValue)); }
+    @SuppressWarnings("unchecked") public void setReturnValueF(float   returnValue) throws CancellationException { this.setReturnValue((R) Float.valueOf(returnValue)); }
+    @SuppressWarnings("unchecked") public void setReturnValueI(int     returnValue) throws CancellationException { this.setReturnValue((R) Integer.valueOf(returnValue)); }
+    @SuppressWarnings("unchecked") public void setReturnValueJ(long    returnValue) throws CancellationException { this.setReturnValue((R) Long.valueOf(returnValue)); }
+    @SuppressWarnings("unchecked") public void setReturnValueS(short   returnValue) throws CancellationException { this.setReturnValue((R) Short.valueOf(returnValue)); }
+    @SuppressWarnings("unchecked") public void setReturnValueZ(boolean returnValue) throws CancellationException { this.setReturnValue((R) Boolean.valueOf(returnValue)); }
+    // CHECKSTYLE:ON
+
     static String getReturnAccessor(Type returnType) {
         if (returnType.getSort() == Type.OBJECT || returnType.getSort() == Type.ARRAY) {
             return "getReturnValue";
@@ -139,4 +151,368 @@ public class CallbackInfoReturnable<R> extends CallbackInfo {
 
         return String.format("()%s", returnType.getDescriptor());
     }
+
+    /**
+     * Get the class to instantiate for the specified return type when the
+     * return value is available, returns null if the return type has no
+     * unboxed specialisation
+     */
+    static String getInstanceClassName(Type returnType) {
+        switch (returnType.getSort()) {
+            case Type.BYTE: return CallbackInfoReturnable.OfByte.class.getName().replace('.', '/');
+            case Type.CHAR: return CallbackInfoReturnable.OfChar.class.getName().replace('.', '/');
+            case Type.DOUBLE: return CallbackInfoReturnable.OfDouble.class.getName().replace('.', '/');
+            case Type.FLOAT: return CallbackInfoReturnable.OfFloat.class.getName().replace('.', '/');
+            case Type.INT: return CallbackInfoReturnable.OfInt.class.getName().replace('.', '/');
+            case Type.LONG: return CallbackInfoReturnable.OfLong.class.getName().replace('.', '/');
+            case Type.SHORT: return CallbackInfoReturnable.OfShort.class.getName().replace('.', '/');
+            case Type.BOOLEAN: return CallbackInfoReturnable.OfBoolean.class.getName().replace('.', '/');
+            default: return null;
+        }
+    }
+
+    /**
+     * Specialisation for <tt>byte</tt> return values which stores the value
+     * unboxed, instantiated by injected code at <tt>RETURN</tt> in place of
+     * the generic type. The value is only boxed if the handler calls the
+     * generic {@link #getReturnValue} or {@link #setReturnValue}.
+     */
+    public static final class OfByte extends CallbackInfoReturnable<Byte> {
+
+        private byte value;
+
+        private boolean isNull;
+
+        public OfByte(String name, boolean cancellable, byte returnValue) {
+            super(name, cancellable);
+            this.value = returnValue;
+        }
+
+        @Override
+        public void setReturnValue(Byte returnValue) throws CancellationException {
+            this.cancel();
+            this.isNull = returnValue == null;
+            this.value = this.isNull ? 0 : returnValue.byteValue();
+        }
+
+        @Override
+        public void setReturnValueB(byte returnValue) throws CancellationException {
+            this.cancel();
+            this.isNull = false;
+            this.value = returnValue;
+        }
+
+        @Override
+        public Byte getReturnValue() {
+            return this.isNull ? null : Byte.valueOf(this.value);
+        }
+
+        @Override
+        public byte getReturnValueB() {
+            return this.value;
+        }
+
+    }
+
+    /**
+     * Specialisation for <tt>char</tt> return values which stores the value
+     * unboxed, instantiated by injected code at <tt>RETURN</tt> in place of
+     * the generic type. The value is only boxed if the handler calls the
+     * generic {@link #getReturnValue} or {@link #setReturnValue}.
+     */
+    public static final class OfChar extends CallbackInfoReturnable<Character> {
+
+        private char value;
+
+        private boolean isNull;
+
+        public OfChar(String name, boolean cancellable, char returnValue) {
+            super(name, cancellable);
+            this.value = returnValue;
+        }
+
+        @Override
+        public void setReturnValue(Character returnValue) throws CancellationException {
+            this.cancel();
+            this.isNull = returnValue == null;
+            this.value = this.isNull ? 0 : returnValue.charValue();
+        }
+
+        @Override
+        public void setReturnValueC(char returnValue) throws CancellationException {
+            this.cancel();
+            this.isNull = false;
+            this.value = returnValue;
+        }
+
+        @Override
+        public Character getReturnValue() {
+            return this.isNull ? null : Character.valueOf(this.value);
+        }
+
+        @Override
+        public char getReturnValueC() {
+            return this.value;
+        }
+
+    }
+
+    /**
+     * Specialisation for <tt>double</tt> return values which stores the value
+     * unboxed, instantiated by injected code at <tt>RETURN</tt> in place of
+     * the generic type. The value is only boxed if the handler calls the
+     * generic {@link #getReturnValue} or {@link #setReturnValue}.
+     */
+    public static final class OfDouble extends CallbackInfoReturnable<Double> {
+
+        private double value;
+
+        private boolean isNull;
+
+        public OfDouble(String name, boolean cancellable, double returnValue) {
+            super(name, cancellable);
+            this.value = returnValue;
+        }
+
+        @Override
+        public void setReturnValue(Double returnValue) throws CancellationException {
+            this.cancel();
+            this.isNull = returnValue == null;
+            this.value = this.isNull ? 0.0 : returnValue.doubleValue();
+        }
+
+        @Override
+        public void setReturnValueD(double returnValue) throws CancellationException {
+            this.cancel();
+            this.isNull = false;
+            this.value = returnValue;
+        }
+
+        @Override
+        public Double getReturnValue() {
+            return this.isNull ? null : Double.valueOf(this.value);
+        }
+
+        @Override
+        public double getReturnValueD() {
+            return this.value;
+        }
+
+    }
+
+    /**
+     * Specialisation for <tt>float</tt> return values which stores the value
+     * unboxed, instantiated by injected code at <tt>RETURN</tt> in place of
+     * the generic type. The value is only boxed if the handler calls the
+     * generic {@link #getReturnValue} or {@link #setReturnValue}.
+     */
+    public static final class OfFloat extends CallbackInfoReturnable<Float> {
+
+        private float value;
+
+        private boolean isNull;
+
+        public OfFloat(String name, boolean cancellable, float returnValue) {
+            super(name, cancellable);
+            this.value = returnValue;
+        }
+
+        @Override
+        public void setReturnValue(Float returnValue) throws CancellationException {
+            this.cancel();
+            this.isNull = returnValue == null;
+            this.value = this.isNull ? 0.0F : returnValue.floatValue();
+        }
+
+        @Override
+        public void setReturnValueF(float returnValue) throws CancellationException {
+            this.cancel();
+            this.isNull = false;
+            this.value = returnValue;
+        }
+
+        @Override
+        public Float getReturnValue() {
+            return this.isNull ? null : Float.valueOf(this.value);
+        }
+
+        @Override
+        public float getReturnValueF() {
+            return this.value;
+        }
+
+    }
+
+    /**
+     * Specialisation for <tt>int</tt> return values which stores the value
+     * unboxed, instantiated by injected code at <tt>RETURN</tt> in place of
+     * the generic type. The value is only boxed if the handler calls the
+     * generic {@link #getReturnValue} or {@link #setReturnValue}.
+     */
+    public static final class OfInt extends CallbackInfoReturnable<Integer> {
+
+        private int value;
+
+        private boolean isNull;
+
+        public OfInt(String name, boolean cancellable, int returnValue) {
+            super(name, cancellable);
+            this.value = returnValue;
+        }
+
+        @Override
+        public void setReturnValue(Integer returnValue) throws CancellationException {
+            this.cancel();
+            this.isNull = returnValue == null;
+            this.value = this.isNull ? 0 : returnValue.intValue();
+        }
+
+        @Override
+        public void setReturnValueI(int returnValue) throws CancellationException {
+            this.cancel();
+            this.isNull = false;
+            this.value = returnValue;
+        }
+
+        @Override
+        public Integer getReturnValue() {
+            return this.isNull ? null : Integer.valueOf(this.value);
+        }
+
+        @Override
+        public int getReturnValueI() {
+            return this.value;
+        }
+
+    }
+
+    /**
+     * Specialisation for <tt>long</tt> return values which stores the value
+     * unboxed, instantiated by injected code at <tt>RETURN</tt> in place of
+     * the generic type. The value is only boxed if the handler calls the
+     * generic {@link #getReturnValue} or {@link #setReturnValue}.
+     */
+    public static final class OfLong extends CallbackInfoReturnable<Long> {
+
+        private long value;
+
+        private boolean isNull;
+
+        public OfLong(String name, boolean cancellable, long returnValue) {
+            super(name, cancellable);
+            this.value = returnValue;
+        }
+
+        @Override
+        public void setReturnValue(Long returnValue) throws CancellationException {
+            this.cancel();
+            this.isNull = returnValue == null;
+            this.value = this.isNull ? 0L : returnValue.longValue();
+        }
+
+        @Override
+        public void setReturnValueJ(long returnValue) throws CancellationException {
+            this.cancel();
+            this.isNull = false;
+            this.value = returnValue;
+        }
+
+        @Override
+        public Long getReturnValue() {
+            return this.isNull ? null : Long.valueOf(this.value);
+        }
+
+        @Override
+        public long getReturnValueJ() {
+            return this.value;
+        }
+
+    }
+
+    /**
+     * Specialisation for <tt>short</tt> return values which stores the value
+     * unboxed, instantiated by injected code at <tt>RETURN</tt> in place of
+     * the generic type. The value is only boxed if the handler calls the
+     * generic {@link #getReturnValue} or {@link #setReturnValue}.
+     */
+    public static final class OfShort extends CallbackInfoReturnable<Short> {
+
+        private short value;
+
+        private boolean isNull;
+
+        public OfShort(String name, boolean cancellable, short returnValue) {
+            super(name, cancellable);
+            this.value = returnValue;
+        }
+
+        @Override
+        public void setReturnValue(Short returnValue) throws CancellationException {
+            this.cancel();
+            this.isNull = returnValue == null;
+            this.value = this.isNull ? 0 : returnValue.shortValue();
+        }
+
+        @Override
+        public void setReturnValueS(short returnValue) throws CancellationException {
+            this.cancel();
+            this.isNull = false;
+            this.value = returnValue;
+        }
+
+        @Override
+        public Short getReturnValue() {
+            return this.isNull ? null : Short.valueOf(this.value);
+        }
+
+        @Override
+        public short getReturnValueS() {
+            return this.value;
+        }
+
+    }
+
+    /**
+     * Specialisation for <tt>boolean</tt> return values which stores the value
+     * unboxed, instantiated by injected code at <tt>RETURN</tt> in place of
+     * the generic type. The value is only boxed if the handler calls the
+     * generic {@link #getReturnValue} or {@link #setReturnValue}.
+     */
+    public static final class OfBoolean extends CallbackInfoReturnable<Boolean> {
+
+        private boolean value;
+
+        private boolean isNull;
+
+        public OfBoolean(String name, boolean cancellable, boolean returnValue) {
+            super(name, cancellable);
+            this.value = returnValue;
+        }
+
+        @Override
+        public void setReturnValue(Boolean returnValue) throws CancellationException {
+            this.cancel();
+            this.isNull = returnValue == null;
+            this.value = this.isNull ? false : returnValue.booleanValue();
+        }
+
+        @Override
+        public void setReturnValueZ(boolean returnValue) throws CancellationException {
+            this.cancel();
+            this.isNull = false;
+            this.value = returnValue;
+        }
+
+        @Override
+        public Boolean getReturnValue() {
+            return this.isNull ? null : Boolean.valueOf(this.value);
+        }
+
+        @Override
+        public boolean getReturnValueZ() {
+            return this.value;
+        }
+
+    }
+
 }
@@ -33,6 +33,8 @@ import java.util.Set;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.*;
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.MixinEnvironment.Option;
 import org.spongepowered.asm.mixin.injection.Coerce;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
@@ -63,6 +65,116 @@ import com.google.common.base.Strings;
  */
 public class CallbackInjector extends Injector {
     
+    /**
+     * Shared block at the end of a target method containing the callback for
+     * all coalesced RETURN sites in that target. Each site stores the return
+     * value and its own index, jumps to the epilogue, and is returned to by
+     * the switch at the end of the epilogue.
+     */
+    static final class Epilogue {
+        
+        /**
+         * Label at the start of the epilogue
+         */
+        final LabelNode label = new LabelNode();
+        
+        /**
+         * Switch which returns to the originating site
+         */
+        final TableSwitchInsnNode sites;
+        
+        /**
+         * Local holding the return value, -1 for void targets
+         */
+        final int returnValueVar;
+        
+        /**
+         * Local holding the index of the originating site
+         */
+        final int siteVar;
+        
+        Epilogue(Target target, LabelNode firstSite) {
+            this.sites = new TableSwitchInsnNode(0, 0, firstSite, firstSite);
+            this.returnValueVar = target.returnType.equals(Type.VOID_TYPE) ? -1 : target.allocateLocals(target.returnType.getSize());
+            this.siteVar = target.allocateLocal();
+        }
+        
+        /**
+         * Add a site to this epilogue
+         * 
+         * @param site label to return to
+         * @return index of the site
+         */
+        int addSite(LabelNode site) {
+            if (this.sites.labels.get(0) == site) {
+                return 0;
+            }
+            this.sites.labels.add(site);
+            return ++this.sites.max;
+        }
+        
+    }
+    
+    /**
+     * Decoration applied to an injection node once a callback has been
+     * injected there, allowing callbacks from subsequent injectors at the same
+     * node to share its callback info and return code
+     */
+    static final class FusedCallback {
+        
+        /**
+         * Callback info id
+         */
+        final String id;
+        
+        /**
+         * Callback info constructor descriptor
+         */
+        final String desc;
+        
+        /**
+         * Whether the callback info is cancellable
+         */
+        final boolean cancellable;
+        
+        /**
+         * Local holding the callback info, -1 until a second callback joins
+         * the group if the first callback created its callback info on the
+         * stack
+         */
+        int callbackInfoVar;
+        
+        /**
+         * Insn after which the callback info created on the stack by the first
+         * callback is on top of the stack, used to store it when a second
+         * callback joins the group
+         */
+        final AbstractInsnNode created;
+        
+        /**
+         * Label at the start of the return code executed when the callback is
+         * cancelled, null if not cancellable
+         */
+        final LabelNode cancelled;
+        
+        /**
+         * Last insn of the most recently injected callback in the group
+         */
+        AbstractInsnNode end;
+        
+        FusedCallback(String id, String desc, boolean cancellable, int callbackInfoVar, AbstractInsnNode created, LabelNode cancelled,
+                AbstractInsnNode end) {
+            this.id = id;
+            this.desc = desc;
+            this.cancellable = cancellable;
+            this.callbackInfoVar = callbackInfoVar;
+            this.created = created;
+            this.cancelled = cancelled;
+            this.end = end;
+        }
+        
+    }
+    
     /**
      * Struct to replace all the horrible state variables from before 
      */
@@ -168,6 +280,23 @@ public class CallbackInjector extends Injector {
          * the "simple" descriptor matches. 
          */
         private boolean captureArgs = true;
+        
+        /**
+         * True if this callback shares the callback info of a previous callback
+         * at the same node
+         */
+        boolean fused;
+        
+        /**
+         * Label at the start of the return code for a cancelled callback
+         */
+        LabelNode cancelled;
+        
+        /**
+         * Insn which leaves the callback info on the stack, if the callback
+         * info was created at the handler invocation rather than stored
+         */
+        AbstractInsnNode callbackInfoCreated;
 
         /**
          * Whether {@link #handler} uses the {@link CallbackInfo}/
@@ -308,6 +437,19 @@ public class CallbackInjector extends Injector {
             this.invoke.apply();
             this.ctor.apply();
         }
+        
+        /**
+         * Append our generated code to the supplied epilogue instead of
+         * injecting it at the target node, and set the max stack size for the
+         * method based on our calculated values
+         * 
+         * @param epilogue epilogue insns to append to
+         */
+        void inject(InsnList epilogue) {
+            epilogue.add(this);
+            this.invoke.apply();
+            this.ctor.apply();
+        }
 
         boolean checkDescriptor(String desc) {
             if (this.getDescriptor().equals(desc)) {
@@ -370,6 +512,8 @@ public class CallbackInjector extends Injector {
      * Decorator key for local variables decoration
      */
     private static final String LOCALS_KEY = "locals";
+    
+    private static final String FUSION_KEY = "callbackFusion";
 
     /**
      * True if cancellable 
@@ -386,6 +530,46 @@ public class CallbackInjector extends Injector {
      */
     private final String identifier;
     
+    /**
+     * True if callback info for void targets should be obtained from the
+     * per-thread pool rather than allocated for each invocation
+     */
+    private final boolean poolCallbackInfo;
+    
+    /**
+     * Estimated target size above which callbacks are outlined into stub
+     * methods, zero if outlining is disabled
+     */
+    private final int outlineThreshold;
+    
+    /**
+     * Number of stub methods generated by this injector, used to generate
+     * unique stub names
+     */
+    private int stubCount = 0;
+    
+    /**
+     * True if RETURN injections should be coalesced into a shared epilogue
+     */
+    private final boolean coalesceReturns;
+    
+    /**
+     * Number of RETURN sites in each target, used to decide whether to
+     * coalesce the callbacks
+     */
+    private final Map<Target, Integer> returnSites = new HashMap<Target, Integer>();
+    
+    /**
+     * Coalesced epilogues by target
+     */
+    private final Map<Target, Epilogue> epilogues = new HashMap<Target, Epilogue>();
+    
+    /**
+     * True if callbacks from different injectors at the same node should share
+     * callback info
+     */
+    private final boolean fuseCallbacks;
+    
     /**
      * Injection point ids
      */
@@ -414,6 +598,10 @@ public class CallbackInjector extends Injector {
         this.cancellable = cancellable;
         this.localCapture = localCapture;
         this.identifier = identifier;
+        this.poolCallbackInfo = info.getMixin().getOption(Option.POOL_CALLBACK_INFO);
+        this.outlineThreshold = CallbackInjector.getOutlineThreshold(info.getMixin().getEnvironment());
+        this.coalesceReturns = info.getMixin().getOption(Option.COALESCE_RETURN_INJECTIONS);
+        this.fuseCallbacks = info.getMixin().getOption(Option.FUSE_CALLBACKS);
     }
 
     /* (non-Javadoc)
@@ -465,6 +653,11 @@ public class CallbackInjector extends Injector {
         
         myNodes.add(injectionNode);
         this.totalInjections++;
+        
+        if (CallbackInjector.isReturn(node)) {
+            Integer sites = this.returnSites.get(injectorTarget.getTarget());
+            this.returnSites.put(injectorTarget.getTarget(), Integer.valueOf(sites != null ? sites.intValue() + 1 : 1));
+        }
     }
     
     @Override
@@ -472,7 +665,7 @@ public class CallbackInjector extends Injector {
         int fabricCompatibility = org.spongepowered.asm.mixin.FabricUtil.getCompatibility(info);
         String decorationKey = CallbackInjector.LOCALS_KEY + ":" + fabricCompatibility;
         if ((this.localCapture.isCaptureLocals() || this.localCapture.isPrintLocals()) && !node.hasDecoration(decorationKey)) {
-            LocalVariableNode[] locals = Locals.getLocalsAt(this.classNode, target.method, node.getCurrentTarget(), fabricCompatibility);
+            LocalVariableNode[] locals = target.getLocalsAt(node.getCurrentTarget(), fabricCompatibility);
             for (int j = 0; j < locals.length; j++) {
                 if (locals[j] != null && locals[j].desc != null && locals[j].desc.startsWith("Lorg/spongepowered/asm/mixin/injection/callback/")) {
                     locals[j] = null;
@@ -566,19 +759,462 @@ public class CallbackInjector extends Injector {
             }
         }
         
+        boolean coalesce = this.shouldCoalesce(callback);
+        if (coalesce && this.epilogues.containsKey(callback.target)) {
+            // Callback was already generated for another site
+            this.jumpToEpilogue(callback, this.epilogues.get(callback.target));
+            this.info.addCallbackInvocation(callbackMethod);
+            this.info.notifyInjected(callback.target);
+            return;
+        }
+        
+        if (this.shouldOutline(callback)) {
+            this.injectStub(callback, callbackMethod);
+            this.inject(callback, coalesce);
+            return;
+        }
+        
+        boolean fuse = this.fuseCallbacks && callback.usesCallbackInfo && !coalesce && !this.isPooled(callback);
+        FusedCallback fused = fuse ? this.getFusedCallback(callback) : null;
+        if (fused != null) {
+            this.injectFused(callback, callbackMethod, fused);
+            return;
+        }
+        
         if (callback.usesCallbackInfo) {
             this.dupReturnValue(callback);
-            if (this.cancellable || this.totalInjections > 1) {
+            if (this.isStored(callback)) {
                 this.createCallbackInfo(callback, true);
             }
         }
+        LabelNode handlerStart = null;
+        if (callback.usesCallbackInfo && this.isPooled(callback)) {
+            handlerStart = new LabelNode();
+            callback.add(handlerStart);
+        }
         this.invokeCallback(callback, callbackMethod);
+        if (handlerStart != null) {
+            this.releaseOnThrow(callback, handlerStart);
+        }
         if (callback.usesCallbackInfo) {
             this.injectCancellationCode(callback);
         }
         
+        AbstractInsnNode end = callback.getLast();
+        this.inject(callback, coalesce);
+        
+        if (fuse) {
+            int callbackInfoVar = this.isStored(callback) ? this.callbackInfoVar : -1;
+            callback.node.decorate(CallbackInjector.FUSION_KEY, new FusedCallback(this.getIdentifier(callback),
+                    callback.getCallbackInfoConstructorDescriptor(), this.cancellable, callbackInfoVar, callback.callbackInfoCreated,
+                    callback.cancelled, end));
+        }
+    }
+
+    /**
+     * Get the fused callback at the callback's node if it is compatible with
+     * the callback. The callback info must have the same id, type and
+     * cancellability, and no other code may have been injected between the
+     * previous callback and the node, since such code could change the state
+     * (eg. the return value) which the callback info was created with.
+     * 
+     * @param callback callback handle
+     * @return compatible fused callback or null
+     */
+    private FusedCallback getFusedCallback(final Callback callback) {
+        FusedCallback fused = callback.node.<FusedCallback>getDecoration(CallbackInjector.FUSION_KEY);
+        if (fused == null || fused.cancellable != this.cancellable || fused.end == null
+                || fused.end.getNext() != callback.node.getCurrentTarget()
+                || !fused.desc.equals(callback.getCallbackInfoConstructorDescriptor())
+                || !fused.id.equals(this.getIdentifier(callback))
+                || (fused.callbackInfoVar < 0 && fused.created == null)) {
+            return null;
+        }
+        return fused;
+    }
+
+    /**
+     * Store the callback info which the first callback in a fused group
+     * created on the stack, so that it is available to the callback joining
+     * the group. This is deferred until a second callback joins so that
+     * callbacks which are never fused do not pay for the local.
+     * 
+     * @param callback callback joining the group
+     * @param fused fused callback at the node
+     */
+    private void storeFusedCallbackInfo(final Callback callback, final FusedCallback fused) {
+        fused.callbackInfoVar = callback.target.allocateLocal();
+        callback.target.addLocalVariable(fused.callbackInfoVar, "callbackInfo" + fused.callbackInfoVar, "L" + this.callbackInfoClass + ";");
+        InsnList insns = new InsnList();
+        insns.add(new InsnNode(Opcodes.DUP));
+        insns.add(new VarInsnNode(Opcodes.ASTORE, fused.callbackInfoVar));
+        callback.target.insert(fused.created, insns);
+    }
+
+    /**
+     * Inject a callback which shares the callback info of the previous
+     * callback at the same node. The handler is passed the existing callback
+     * info and, if cancellable, a cancelled callback branches to the return
+     * code of the previous callback instead of generating its own.
+     * 
+     * @param callback callback handle
+     * @param callbackMethod handler method to invoke
+     * @param fused fused callback at the node
+     */
+    private void injectFused(final Callback callback, final MethodNode callbackMethod, final FusedCallback fused) {
+        int callbackInfoVar = this.callbackInfoVar;
+        this.callbackInfoClass = callback.target.getCallbackInfoClass();
+        if (fused.callbackInfoVar < 0) {
+            this.storeFusedCallbackInfo(callback, fused);
+        }
+        this.callbackInfoVar = fused.callbackInfoVar;
+        callback.fused = true;
+        
+        this.invokeCallback(callback, callbackMethod);
+        if (this.cancellable) {
+            callback.add(new VarInsnNode(Opcodes.ALOAD, this.callbackInfoVar));
+            callback.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, this.callbackInfoClass, CallbackInfo.getIsCancelledMethodName(),
+                    CallbackInfo.getIsCancelledMethodSig(), false));
+            callback.add(new JumpInsnNode(Opcodes.IFNE, fused.cancelled));
+        }
+        
+        fused.end = callback.getLast();
         callback.inject();
         this.info.notifyInjected(callback.target);
+        
+        // Don't leak the fused local into this injector's own callback info reuse
+        this.callbackInfoVar = callbackInfoVar;
+    }
+
+    /**
+     * Get whether the callback info for the specified callback is stored in a
+     * local rather than created on the stack when the handler is invoked
+     * 
+     * @param callback callback handle
+     * @return true if the callback info is stored
+     */
+    private boolean isStored(final Callback callback) {
+        return this.cancellable || this.totalInjections > 1 || this.isPooled(callback) || callback.fused;
+    }
+
+    /**
+     * Inject the generated callback code, either at the target node or into a
+     * new epilogue for the target
+     * 
+     * @param callback callback handle
+     * @param coalesce true to create an epilogue for the callback
+     */
+    private void inject(final Callback callback, boolean coalesce) {
+        if (!coalesce || !this.createEpilogue(callback)) {
+            callback.inject();
+        }
+        this.info.notifyInjected(callback.target);
+    }
+
+    /**
+     * Get whether the specified callback should be coalesced into a shared
+     * epilogue with the other RETURN sites in the same target. Sites which
+     * capture locals are excluded since the locals differ between sites, as
+     * are sites inside a try block since moving the callback out of the block
+     * would change which exceptions are handled.
+     * 
+     * @param callback callback handle
+     * @return true to coalesce this callback
+     */
+    private boolean shouldCoalesce(final Callback callback) {
+        if (!this.coalesceReturns || callback.canCaptureLocals || !CallbackInjector.isReturn(callback.node.getCurrentTarget())) {
+            return false;
+        }
+        
+        Integer sites = this.returnSites.get(callback.target);
+        if (sites == null || sites.intValue() < 2) {
+            return false;
+        }
+        
+        return !CallbackInjector.isInTryBlock(callback.target, callback.node.getCurrentTarget());
+    }
+
+    /**
+     * Create the epilogue for the target using the generated callback code and
+     * redirect the callback's site to it. The epilogue reloads the return
+     * value, runs the callback (which returns directly if cancelled), discards
+     * the return value again and switches back to the originating site.
+     * 
+     * <p>The epilogue is placed directly after a RETURN which is outside any
+     * try block, so that it can only be reached by jumping to it. The final
+     * RETURN is never used so that it remains the final RETURN for later
+     * <tt>TAIL</tt> injections.</p>
+     * 
+     * @param callback callback handle
+     * @return false if no suitable location for the epilogue was found
+     */
+    private boolean createEpilogue(final Callback callback) {
+        AbstractInsnNode location = CallbackInjector.findEpilogueLocation(callback.target);
+        if (location == null) {
+            return false;
+        }
+        
+        LabelNode site = new LabelNode();
+        Epilogue epilogue = new Epilogue(callback.target, site);
+        this.epilogues.put(callback.target, epilogue);
+        
+        InsnList insns = new InsnList();
+        insns.add(epilogue.label);
+        if (epilogue.returnValueVar > -1) {
+            insns.add(new VarInsnNode(callback.target.returnType.getOpcode(Opcodes.ILOAD), epilogue.returnValueVar));
+        }
+        callback.inject(insns);
+        if (epilogue.returnValueVar > -1) {
+            insns.add(new InsnNode(callback.target.returnType.getSize() == 2 ? Opcodes.POP2 : Opcodes.POP));
+        }
+        insns.add(new VarInsnNode(Opcodes.ILOAD, epilogue.siteVar));
+        insns.add(epilogue.sites);
+        callback.target.insns.insert(location, insns);
+        
+        this.jumpToEpilogue(callback, epilogue, site);
+        return true;
+    }
+
+    /**
+     * Find the first RETURN in the target which is not the final RETURN and
+     * is not inside a try block
+     */
+    private static AbstractInsnNode findEpilogueLocation(Target target) {
+        int returnOpcode = target.returnType.getOpcode(Opcodes.IRETURN);
+        List<AbstractInsnNode> returns = new ArrayList<AbstractInsnNode>(target.getInsnIndex().get(returnOpcode));
+        for (int index = 0; index < returns.size() - 1; index++) {
+            AbstractInsnNode insn = returns.get(index);
+            if (insn instanceof InsnNode && !CallbackInjector.isInTryBlock(target, insn)) {
+                return insn;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get whether the supplied insn is inside any try block in the target
+     */
+    private static boolean isInTryBlock(Target target, AbstractInsnNode insn) {
+        InsnList insns = target.insns;
+        int pos = insns.indexOf(insn);
+        for (TryCatchBlockNode tryCatchBlock : target.method.tryCatchBlocks) {
+            if (pos >= insns.indexOf(tryCatchBlock.start) && pos < insns.indexOf(tryCatchBlock.end)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Redirect the callback's site to the epilogue
+     * 
+     * @param callback callback handle
+     * @param epilogue epilogue to jump to
+     */
+    private void jumpToEpilogue(final Callback callback, Epilogue epilogue) {
+        this.jumpToEpilogue(callback, epilogue, new LabelNode());
+    }
+
+    private void jumpToEpilogue(final Callback callback, Epilogue epilogue, LabelNode site) {
+        Type returnType = callback.target.returnType;
+        InsnList insns = new InsnList();
+        if (epilogue.returnValueVar > -1) {
+            insns.add(new VarInsnNode(returnType.getOpcode(Opcodes.ISTORE), epilogue.returnValueVar));
+        }
+        insns.add(Bytecode.loadIntConstant(epilogue.addSite(site)));
+        insns.add(new VarInsnNode(Opcodes.ISTORE, epilogue.siteVar));
+        insns.add(new JumpInsnNode(Opcodes.GOTO, epilogue.label));
+        insns.add(site);
+        if (epilogue.returnValueVar > -1) {
+            insns.add(new VarInsnNode(returnType.getOpcode(Opcodes.ILOAD), epilogue.returnValueVar));
+        }
+        callback.target.insertBefore(callback.node, insns);
+    }
+
+    /**
+     * Get whether the supplied insn is a RETURN opcode
+     */
+    private static boolean isReturn(AbstractInsnNode insn) {
+        return insn instanceof InsnNode && insn.getOpcode() >= Opcodes.IRETURN && insn.getOpcode() <= Opcodes.RETURN;
+    }
+
+    /**
+     * Get whether the specified callback should be outlined into a stub
+     * method. Only callbacks which use their callback info are outlined since
+     * the handler invocation is otherwise no larger than the call to the stub.
+     * Constructors are excluded because <tt>this</tt> may not be initialised,
+     * and interfaces because they cannot declare private static methods on
+     * all supported class versions. The callback is outlined if the target
+     * would exceed the threshold once the callback was injected inline, so
+     * that outlining keeps the target below the threshold rather than only
+     * taking effect once it is already past it.
+     * 
+     * @param callback callback handle
+     * @return true to generate a stub for this callback
+     */
+    private boolean shouldOutline(final Callback callback) {
+        return this.outlineThreshold > 0
+                && callback.usesCallbackInfo
+                && !(callback.target instanceof Constructor)
+                && !Bytecode.hasFlag(this.classNode, Opcodes.ACC_INTERFACE)
+                && callback.target.getCodeSize() + this.getInlineSize(callback) > this.outlineThreshold;
+    }
+    
+    /**
+     * Estimate the size in bytes of the code generated for the specified
+     * callback when it is injected inline.
+     * 
+     * @param callback callback handle
+     * @return estimated code size
+     */
+    private int getInlineSize(final Callback callback) {
+        int loads = (this.isStatic ? 0 : 1) + (callback.isAtReturn ? 1 : 0);
+        if (callback.captureArgs()) {
+            loads += callback.target.arguments.length;
+        }
+        if (callback.canCaptureLocals) {
+            loads += callback.extraArgs;
+        }
+        
+        // Callback info construction and store (NEW, DUP, LDC_W, ICONST, INVOKESPECIAL, ASTORE) and handler invocation
+        int size = 16 + 3 + loads * 2;
+        if (this.cancellable) {
+            // ALOAD, INVOKEVIRTUAL isCancelled, IFEQ and the return code
+            size += 18;
+        }
+        return size;
+    }
+
+    /**
+     * Inject a call to a generated stub method which creates the callback
+     * info and invokes the handler. For cancellable callbacks the stub returns
+     * the callback info, which is stored in the usual local so that the
+     * regular cancellation code can be used. If the callback info is pooled,
+     * the stub acquires and releases it (including when the handler throws)
+     * and returns the cancellation state instead.
+     * 
+     * @param callback callback handle
+     * @param callbackMethod handler method to invoke from the stub
+     */
+    private void injectStub(final Callback callback, final MethodNode callbackMethod) {
+        this.dupReturnValue(callback);
+        
+        List<Type> stubArgs = new ArrayList<Type>();
+        if (!this.isStatic) {
+            stubArgs.add(Type.getObjectType(this.classNode.name));
+            callback.add(new VarInsnNode(Opcodes.ALOAD, 0), false, true);
+        }
+        int firstArg = stubArgs.size();
+        if (callback.captureArgs()) {
+            for (Type arg : callback.target.arguments) {
+                stubArgs.add(arg);
+            }
+            Bytecode.loadArgs(callback.target.arguments, callback, callback.target.isStatic ? 0 : 1, -1);
+        }
+        int argsEnd = stubArgs.size();
+        if (callback.isAtReturn) {
+            stubArgs.add(callback.target.returnType);
+            callback.add(new VarInsnNode(callback.target.returnType.getOpcode(Opcodes.ILOAD), callback.marshalVar()));
+            callback.invoke.add(callback.target.returnType.getSize());
+        }
+        int localsStart = stubArgs.size();
+        if (callback.canCaptureLocals) {
+            for (int pos = callback.frameSize, limit = callback.extraArgs; pos < callback.localTypes.length && limit > 0; pos++) {
+                if (callback.localTypes[pos] != null) {
+                    stubArgs.add(callback.localTypes[pos]);
+                    limit--;
+                }
+            }
+            Locals.loadLocals(callback.localTypes, callback, callback.frameSize, callback.extraArgs);
+        }
+        
+        this.callbackInfoClass = callback.target.getCallbackInfoClass();
+        boolean pooled = this.isPooled(callback);
+        Type[] args = stubArgs.toArray(new Type[stubArgs.size()]);
+        String returnType = !this.cancellable ? "V" : pooled ? "Z" : "L" + this.callbackInfoClass + ";";
+        String desc = Bytecode.generateDescriptor(returnType, (Object[])args);
+        MethodNode stub = this.info.addMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, this.methodNode.name + "$stub" + this.stubCount++, desc);
+        
+        // The stub creates the callback info, invokes the handler and returns
+        // the callback info if the callback is cancellable
+        int argsSize = Bytecode.getArgsSize(args);
+        int callbackInfoVar = argsSize;
+        InsnList insns = stub.instructions;
+        if (pooled) {
+            insns.add(new LdcInsnNode(this.getIdentifier(callback)));
+            insns.add(new InsnNode(this.cancellable ? Opcodes.ICONST_1 : Opcodes.ICONST_0));
+            insns.add(new MethodInsnNode(Opcodes.INVOKESTATIC, this.callbackInfoClass, CallbackInfo.getAcquireMethodName(),
+                    CallbackInfo.getAcquireMethodSig(), false));
+        } else {
+            String instanceClass = callback.isAtReturn ? CallbackInfoReturnable.getInstanceClassName(callback.target.returnType) : null;
+            if (instanceClass == null) {
+                instanceClass = this.callbackInfoClass;
+            }
+            insns.add(new TypeInsnNode(Opcodes.NEW, instanceClass));
+            insns.add(new InsnNode(Opcodes.DUP));
+            insns.add(new LdcInsnNode(this.getIdentifier(callback)));
+            insns.add(new InsnNode(this.cancellable ? Opcodes.ICONST_1 : Opcodes.ICONST_0));
+            if (callback.isAtReturn) {
+                insns.add(new VarInsnNode(callback.target.returnType.getOpcode(Opcodes.ILOAD), Bytecode.getArgsSize(args, 0, localsStart - 1)));
+            }
+            insns.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, instanceClass, Constants.CTOR, callback.getCallbackInfoConstructorDescriptor(),
+                    false));
+        }
+        insns.add(new VarInsnNode(Opcodes.ASTORE, callbackInfoVar));
+        LabelNode handlerStart = new LabelNode();
+        insns.add(handlerStart);
+        if (!this.isStatic) {
+            insns.add(new VarInsnNode(Opcodes.ALOAD, 0));
+        }
+        CallbackInjector.loadStubArgs(args, insns, firstArg, argsEnd);
+        insns.add(new VarInsnNode(Opcodes.ALOAD, callbackInfoVar));
+        CallbackInjector.loadStubArgs(args, insns, localsStart, args.length);
+        this.invokeHandler(insns, callbackMethod);
+        if (pooled) {
+            LabelNode handlerEnd = new LabelNode();
+            LabelNode onThrow = new LabelNode();
+            insns.add(handlerEnd);
+            insns.add(new VarInsnNode(Opcodes.ALOAD, callbackInfoVar));
+            insns.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, this.callbackInfoClass, CallbackInfo.getReleaseMethodName(),
+                    CallbackInfo.getReleaseMethodSig(), false));
+            if (this.cancellable) {
+                insns.add(new InsnNode(Opcodes.IRETURN));
+            } else {
+                insns.add(new InsnNode(Opcodes.POP));
+                insns.add(new InsnNode(Opcodes.RETURN));
+            }
+            insns.add(onThrow);
+            insns.add(new VarInsnNode(Opcodes.ALOAD, callbackInfoVar));
+            insns.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, this.callbackInfoClass, CallbackInfo.getReleaseMethodName(),
+                    CallbackInfo.getReleaseMethodSig(), false));
+            insns.add(new InsnNode(Opcodes.POP));
+            insns.add(new InsnNode(Opcodes.ATHROW));
+            stub.tryCatchBlocks.add(new TryCatchBlockNode(handlerStart, handlerEnd, onThrow, null));
+        } else if (this.cancellable) {
+            insns.add(new VarInsnNode(Opcodes.ALOAD, callbackInfoVar));
+            insns.add(new InsnNode(Opcodes.ARETURN));
+        } else {
+            insns.add(new InsnNode(Opcodes.RETURN));
+        }
+        stub.maxLocals = argsSize + 1;
+        stub.maxStack = Math.max(6, argsSize + 1);
+
+        callback.add(new MethodInsnNode(Opcodes.INVOKESTATIC, this.classNode.name, stub.name, stub.desc, false));
+        
+        if (this.cancellable && pooled) {
+            // The stub returns the cancellation state of the released instance
+            LabelNode notCancelled = new LabelNode();
+            callback.add(new JumpInsnNode(Opcodes.IFEQ, notCancelled));
+            callback.cancelled = new LabelNode();
+            callback.add(callback.cancelled);
+            this.injectReturnCode(callback);
+            callback.add(notCancelled);
+        } else if (this.cancellable) {
+            this.callbackInfoVar = callback.marshalVar();
+            callback.target.addLocalVariable(this.callbackInfoVar, "callbackInfo" + this.callbackInfoVar, returnType);
+            callback.add(new VarInsnNode(Opcodes.ASTORE, this.callbackInfoVar));
+            this.injectCancellationCode(callback);
+        }
     }
 
     /**
@@ -676,10 +1312,15 @@ public class CallbackInjector extends Injector {
         String desc = callback.getCallbackInfoConstructorDescriptor();
         
         // If ID and descriptor match, and if we're not handling a returnable or cancellable CI, just re-use the last one
-        if (id.equals(this.lastId) && desc.equals(this.lastDesc) && !callback.isAtReturn && !this.cancellable) {
+        if (id.equals(this.lastId) && desc.equals(this.lastDesc) && !callback.isAtReturn && !this.cancellable && !this.isPooled(callback)) {
             return;
         }
 
+        if (this.isPooled(callback)) {
+            this.acquireCallbackInfo(callback, id);
+            return;
+        }
+        
         this.instanceCallbackInfo(callback, id, desc, store);
     }
 
@@ -689,10 +1330,11 @@ public class CallbackInjector extends Injector {
     private void loadOrCreateCallbackInfo(final Callback callback) {
         if (!callback.usesCallbackInfo) {
             callback.add(new InsnNode(Opcodes.ACONST_NULL));
-        } else if (this.cancellable || this.totalInjections > 1) {
+        } else if (this.isStored(callback)) {
             callback.add(new VarInsnNode(Opcodes.ALOAD, this.callbackInfoVar), false, true);
         } else {
             this.createCallbackInfo(callback, false);
+            callback.callbackInfoCreated = callback.getLast();
         }
     }
 
@@ -731,7 +1373,13 @@ public class CallbackInjector extends Injector {
         // return or cancellable, inject the CI creation at the method head so that it's available everywhere
         boolean head = store && this.totalInjections > 1 && !callback.isAtReturn && !this.cancellable;
         
-        callback.add(new TypeInsnNode(Opcodes.NEW, this.callbackInfoClass), true, !store, head);
+        // At return the value is known to be present, so primitive return types can use an unboxed specialisation
+        String instanceClass = callback.isAtReturn ? CallbackInfoReturnable.getInstanceClassName(callback.target.returnType) : null;
+        if (instanceClass == null) {
+            instanceClass = this.callbackInfoClass;
+        }
+        
+        callback.add(new TypeInsnNode(Opcodes.NEW, instanceClass), true, !store, head);
         callback.add(new InsnNode(Opcodes.DUP), true, true, head);
         callback.add(new LdcInsnNode(id), true, !store, head);
         callback.add(new InsnNode(this.cancellable ? Opcodes.ICONST_1 : Opcodes.ICONST_0), true, !store, head);
@@ -739,10 +1387,10 @@ public class CallbackInjector extends Injector {
         if (callback.isAtReturn) {
             callback.add(new VarInsnNode(callback.target.returnType.getOpcode(Opcodes.ILOAD), callback.marshalVar()), true, !store);
             callback.add(new MethodInsnNode(Opcodes.INVOKESPECIAL,
-                    this.callbackInfoClass, Constants.CTOR, desc, false));
+                    instanceClass, Constants.CTOR, desc, false));
         } else {
             callback.add(new MethodInsnNode(Opcodes.INVOKESPECIAL,
-                    this.callbackInfoClass, Constants.CTOR, desc, false), false, false, head);
+                    instanceClass, Constants.CTOR, desc, false), false, false, head);
         }
         
         if (store) {
@@ -753,6 +1401,70 @@ public class CallbackInjector extends Injector {
         }
     }
 
+    /**
+     * Obtain the callback info from the per-thread pool and store it in a
+     * local, used in place of {@link #instanceCallbackInfo} when pooling is
+     * enabled. The instance is returned to the pool by
+     * {@link #injectCancellationCode} once the handler has been invoked, so
+     * unlike allocated instances it is never shared between callbacks.
+     * 
+     * @param callback callback handle
+     * @param id callback id
+     */
+    private void acquireCallbackInfo(final Callback callback, String id) {
+        this.lastId = null;
+        this.lastDesc = null;
+        this.callbackInfoVar = callback.marshalVar();
+        this.callbackInfoClass = callback.target.getCallbackInfoClass();
+        
+        callback.add(new LdcInsnNode(id), true, false);
+        callback.add(new InsnNode(this.cancellable ? Opcodes.ICONST_1 : Opcodes.ICONST_0), true, false);
+        callback.add(new MethodInsnNode(Opcodes.INVOKESTATIC, this.callbackInfoClass, CallbackInfo.getAcquireMethodName(),
+                CallbackInfo.getAcquireMethodSig(), false));
+        callback.target.addLocalVariable(this.callbackInfoVar, "callbackInfo" + this.callbackInfoVar, "L" + this.callbackInfoClass + ";");
+        callback.add(new VarInsnNode(Opcodes.ASTORE, this.callbackInfoVar));
+    }
+
+    /**
+     * Release the pooled callback info if the handler invoked since
+     * <tt>handlerStart</tt> throws, and rethrow. Without this a handler which
+     * throws would leave its pooled instance held for the lifetime of the
+     * thread. The handler range is added ahead of the existing exception table
+     * entries since it is nested inside any range which contains it.
+     * 
+     * @param callback callback handle
+     * @param handlerStart label before the handler invocation
+     */
+    private void releaseOnThrow(final Callback callback, LabelNode handlerStart) {
+        LabelNode handlerEnd = new LabelNode();
+        LabelNode onThrow = new LabelNode();
+        LabelNode resume = new LabelNode();
+        callback.add(handlerEnd);
+        callback.add(new JumpInsnNode(Opcodes.GOTO, resume));
+        callback.add(onThrow);
+        callback.add(new VarInsnNode(Opcodes.ALOAD, this.callbackInfoVar));
+        callback.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, this.callbackInfoClass, CallbackInfo.getReleaseMethodName(),
+                CallbackInfo.getReleaseMethodSig(), false));
+        callback.add(new InsnNode(Opcodes.POP));
+        callback.add(new InsnNode(Opcodes.ATHROW));
+        callback.add(resume);
+        callback.target.method.tryCatchBlocks.add(0, new TryCatchBlockNode(handlerStart, handlerEnd, onThrow, null));
+    }
+
+    /**
+     * Get whether the callback info for the specified callback is obtained
+     * from the per-thread pool. Only plain {@link CallbackInfo} is pooled,
+     * since returnable callback info carries the return value. Constructors
+     * are excluded since the handler range which releases the instance on
+     * throw may not span code where <tt>this</tt> is not initialised.
+     * 
+     * @param callback callback handle
+     * @return true if the callback info is pooled
+     */
+    private boolean isPooled(final Callback callback) {
+        return this.poolCallbackInfo && callback.target.returnType.equals(Type.VOID_TYPE) && !(callback.target instanceof Constructor);
+    }
+
     /**
      * @param callback callback handle
      */
@@ -799,19 +1511,31 @@ public class CallbackInjector extends Injector {
      * @param callback callback handle
      */
     protected void injectCancellationCode(final Callback callback) {
-        if (!this.cancellable) {
+        if (this.isPooled(callback)) {
+            // Pooled instances must always be released, release() returns the
+            // cancellation state so it doubles as the isCancelled() check
+            callback.add(new VarInsnNode(Opcodes.ALOAD, this.callbackInfoVar));
+            callback.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, this.callbackInfoClass, CallbackInfo.getReleaseMethodName(),
+                    CallbackInfo.getReleaseMethodSig(), false));
+            if (!this.cancellable) {
+                callback.add(new InsnNode(Opcodes.POP));
+                return;
+            }
+        } else if (!this.cancellable) {
             return;
+        } else {
+            callback.add(new VarInsnNode(Opcodes.ALOAD, this.callbackInfoVar));
+            callback.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, this.callbackInfoClass, CallbackInfo.getIsCancelledMethodName(),
+                    CallbackInfo.getIsCancelledMethodSig(), false));
         }
-        
-        callback.add(new VarInsnNode(Opcodes.ALOAD, this.callbackInfoVar));
-        callback.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, this.callbackInfoClass, CallbackInfo.getIsCancelledMethodName(),
-                CallbackInfo.getIsCancelledMethodSig(), false));
 
         LabelNode notCancelled = new LabelNode();
         callback.add(new JumpInsnNode(Opcodes.IFEQ, notCancelled));
 
         // If this is a void method, just injects a RETURN opcode, otherwise we
         // need to get the return value from the EventInfo
+        callback.cancelled = new LabelNode();
+        callback.add(callback.cancelled);
         this.injectReturnCode(callback);
 
         callback.add(notCancelled);
@@ -849,6 +1573,25 @@ public class CallbackInjector extends Injector {
         return this.isStatic;
     }
 
+    /**
+     * Load the stub arguments from <tt>start</tt> (inclusive) to <tt>end</tt>
+     * (exclusive), indices are argument indices and not local variable slots
+     */
+    private static void loadStubArgs(Type[] args, InsnList insns, int start, int end) {
+        for (int index = start, pos = Bytecode.getArgsSize(args, 0, start); index < end; index++) {
+            insns.add(new VarInsnNode(args[index].getOpcode(Opcodes.ILOAD), pos));
+            pos += args[index].getSize();
+        }
+    }
+
+    private static int getOutlineThreshold(MixinEnvironment environment) {
+        try {
+            return Integer.parseInt(environment.getOptionValue(Option.OUTLINE_CALLBACKS_THRESHOLD));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
     private static List<String> summariseLocals(String desc, int pos, int count) {
         return CallbackInjector.summariseLocals(Type.getArgumentTypes(desc), pos, count);
     }
@@ -0,0 +1,86 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.injection.callback;
+
+/**
+ * {@link CallbackInfo} obtained from the per-thread pool by
+ * {@link CallbackInfo#acquire}. A pooled instance can be reused by any
+ * callback, the id and cancellability are replaced each time the instance is
+ * acquired and the values passed to the superclass constructor are unused.
+ */
+final class PooledCallbackInfo extends CallbackInfo {
+
+    /**
+     * Id of the callback currently holding this instance
+     */
+    private String id;
+
+    /**
+     * True if the callback currently holding this instance is cancellable
+     */
+    private boolean cancellable;
+
+    /**
+     * True while this instance is held by an injected callback
+     */
+    boolean acquired;
+
+    PooledCallbackInfo() {
+        super(null, false);
+    }
+
+    @Override
+    public String getId() {
+        return this.id;
+    }
+
+    @Override
+    public boolean isCancellable() {
+        return this.cancellable;
+    }
+
+    /**
+     * Mark this instance as held by the specified callback and clear its
+     * cancellation state
+     * 
+     * @param id calling method name
+     * @param cancellable true if the callback can be cancelled
+     * @return this instance
+     */
+    PooledCallbackInfo reuse(String id, boolean cancellable) {
+        this.reset();
+        this.id = id;
+        this.cancellable = cancellable;
+        this.acquired = true;
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        this.acquired = false;
+        return super.release();
+    }
+
+}
@@ -0,0 +1,313 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.injection.code;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.MethodInsnNode;
+
+/**
+ * Index of the instructions in a target method, bucketed by opcode and, for
+ * field and method instructions, by member name. The index for a target is
+ * built the first time it is requested and shared by all injection points
+ * which query the target until the target's instructions are modified.
+ * 
+ * <p>Injection points can obtain the index for the list passed to
+ * {@link org.spongepowered.asm.mixin.injection.InjectionPoint#find find} by
+ * calling {@link #of}, if the list is a slice then the index only returns
+ * instructions within the slice. All queries return instructions in the order
+ * they appear in the method.</p>
+ */
+public final class InsnIndex {
+    
+    /**
+     * Instructions with a common opcode or member name, and their positions in
+     * the instruction list
+     */
+    static final class Bucket {
+        
+        AbstractInsnNode[] nodes = new AbstractInsnNode[4];
+        
+        int[] positions = new int[4];
+        
+        int size;
+        
+        void add(AbstractInsnNode node, int position) {
+            if (this.size == this.nodes.length) {
+                this.nodes = Arrays.copyOf(this.nodes, this.size * 2);
+                this.positions = Arrays.copyOf(this.positions, this.size * 2);
+            }
+            this.nodes[this.size] = node;
+            this.positions[this.size++] = position;
+        }
+        
+        /**
+         * Index of the first entry at or after the specified position
+         */
+        int lowerBound(int position) {
+            int low = 0, high = this.size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (this.positions[mid] < position) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+        
+    }
+    
+    /**
+     * Opcodes of field instructions
+     */
+    private static final int[] FIELD_OPCODES = {
+        Opcodes.GETSTATIC, Opcodes.PUTSTATIC, Opcodes.GETFIELD, Opcodes.PUTFIELD
+    };
+    
+    /**
+     * Opcodes of method instructions
+     */
+    private static final int[] METHOD_OPCODES = {
+        Opcodes.INVOKEVIRTUAL, Opcodes.INVOKESPECIAL, Opcodes.INVOKESTATIC, Opcodes.INVOKEINTERFACE
+    };
+
+    /**
+     * Instruction list this index was built from
+     */
+    private final InsnList insns;
+    
+    /**
+     * Size of the list when the index was built
+     */
+    private final int size;
+    
+    /**
+     * Modification count of the target when the index was built
+     */
+    private final int modCount;
+    
+    /**
+     * Instructions by opcode
+     */
+    private final Bucket[] opcodes;
+    
+    /**
+     * Field and method instructions by member name 
+     */
+    private final Map<String, Bucket> fields, methods;
+    
+    /**
+     * Range of positions visible through this index, inclusive 
+     */
+    private final int start, end;
+    
+    /**
+     * Build an index for the supplied instruction list
+     * 
+     * @param insns instructions to index
+     * @param modCount current modification count of the owning target
+     */
+    public InsnIndex(InsnList insns, int modCount) {
+        this.insns = insns;
+        this.size = insns.size();
+        this.modCount = modCount;
+        this.opcodes = new Bucket[256];
+        this.fields = new HashMap<String, Bucket>();
+        this.methods = new HashMap<String, Bucket>();
+        this.start = 0;
+        this.end = this.size - 1;
+
+        int position = 0;
+        for (ListIterator<AbstractInsnNode> iter = insns.iterator(); iter.hasNext(); position++) {
+            AbstractInsnNode insn = iter.next();
+            int opcode = insn.getOpcode();
+            if (opcode < 0) {
+                continue;
+            }
+            InsnIndex.getBucket(this.opcodes, opcode).add(insn, position);
+            if (insn instanceof MethodInsnNode) {
+                InsnIndex.getBucket(this.methods, ((MethodInsnNode)insn).name).add(insn, position);
+            } else if (insn instanceof FieldInsnNode) {
+                InsnIndex.getBucket(this.fields, ((FieldInsnNode)insn).name).add(insn, position);
+            }
+        }
+    }
+    
+    private InsnIndex(InsnIndex parent, int start, int end) {
+        this.insns = parent.insns;
+        this.size = parent.size;
+        this.modCount = parent.modCount;
+        this.opcodes = parent.opcodes;
+        this.fields = parent.fields;
+        this.methods = parent.methods;
+        this.start = Math.max(start, parent.start);
+        this.end = Math.min(end, parent.end);
+    }
+    
+    /**
+     * Get whether this index still describes the supplied instruction list.
+     * Inserting instructions changes the size of the list, other modifications
+     * made via the target change its modification count.
+     * 
+     * @param insns instruction list
+     * @param modCount current modification count of the owning target
+     * @return true if the index can be used
+     */
+    public boolean isCurrent(InsnList insns, int modCount) {
+        return this.insns == insns && this.size == insns.size() && this.modCount == modCount;
+    }
+    
+    /**
+     * Get a view of this index which is restricted to the specified range
+     * 
+     * @param start first position (inclusive)
+     * @param end last position (inclusive)
+     * @return restricted index
+     */
+    public InsnIndex slice(int start, int end) {
+        return new InsnIndex(this, start, end);
+    }
+    
+    /**
+     * Get all instructions with the specified opcode
+     * 
+     * @param opcode opcode to fetch
+     * @return matching instructions
+     */
+    public List<AbstractInsnNode> get(int opcode) {
+        return opcode >= 0 && opcode < this.opcodes.length ? this.select(this.opcodes[opcode]) : Collections.<AbstractInsnNode>emptyList();
+    }
+    
+    /**
+     * Get all instructions with any of the specified opcodes
+     * 
+     * @param opcodes opcodes to fetch
+     * @return matching instructions
+     */
+    public List<AbstractInsnNode> get(int... opcodes) {
+        Bucket[] buckets = new Bucket[opcodes.length];
+        for (int i = 0; i < opcodes.length; i++) {
+            buckets[i] = opcodes[i] >= 0 && opcodes[i] < this.opcodes.length ? this.opcodes[opcodes[i]] : null;
+        }
+        return this.merge(buckets);
+    }
+    
+    /**
+     * Get all method instructions invoking a method with the specified name
+     * 
+     * @param name method name, or null to fetch all method instructions
+     * @return matching instructions
+     */
+    public List<AbstractInsnNode> getMethodInsns(String name) {
+        return name != null ? this.select(this.methods.get(name)) : this.get(InsnIndex.METHOD_OPCODES);
+    }
+    
+    /**
+     * Get all field instructions accessing a field with the specified name
+     * 
+     * @param name field name, or null to fetch all field instructions
+     * @return matching instructions
+     */
+    public List<AbstractInsnNode> getFieldInsns(String name) {
+        return name != null ? this.select(this.fields.get(name)) : this.get(InsnIndex.FIELD_OPCODES);
+    }
+    
+    private List<AbstractInsnNode> select(Bucket bucket) {
+        if (bucket == null) {
+            return Collections.<AbstractInsnNode>emptyList();
+        }
+        int from = bucket.lowerBound(this.start);
+        int to = bucket.lowerBound(this.end + 1);
+        if (from >= to) {
+            return Collections.<AbstractInsnNode>emptyList();
+        }
+        return Collections.unmodifiableList(Arrays.asList(bucket.nodes).subList(from, to));
+    }
+    
+    private List<AbstractInsnNode> merge(Bucket[] buckets) {
+        int[] cursors = new int[buckets.length];
+        int[] limits = new int[buckets.length];
+        int total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] != null) {
+                cursors[i] = buckets[i].lowerBound(this.start);
+                limits[i] = buckets[i].lowerBound(this.end + 1);
+                total += Math.max(limits[i] - cursors[i], 0);
+            }
+        }
+        
+        AbstractInsnNode[] merged = new AbstractInsnNode[total];
+        for (int count = 0; count < total; count++) {
+            int next = -1;
+            for (int i = 0; i < buckets.length; i++) {
+                if (cursors[i] < limits[i] && (next < 0 || buckets[i].positions[cursors[i]] < buckets[next].positions[cursors[next]])) {
+                    next = i;
+                }
+            }
+            merged[count] = buckets[next].nodes[cursors[next]++];
+        }
+        return Collections.unmodifiableList(Arrays.asList(merged));
+    }
+    
+    /**
+     * Get the index for the supplied instruction list, if the list was
+     * supplied by a target
+     * 
+     * @param insns instruction list passed to an injection point
+     * @return index or null if the list does not support indexing
+     */
+    public static InsnIndex of(InsnList insns) {
+        return insns instanceof InsnListEx ? ((InsnListEx)insns).getIndex() : null;
+    }
+    
+    private static Bucket getBucket(Bucket[] buckets, int opcode) {
+        Bucket bucket = buckets[opcode];
+        if (bucket == null) {
+            bucket = buckets[opcode] = new Bucket();
+        }
+        return bucket;
+    }
+    
+    private static Bucket getBucket(Map<String, Bucket> buckets, String name) {
+        Bucket bucket = buckets.get(name);
+        if (bucket == null) {
+            bucket = new Bucket();
+            buckets.put(name, bucket);
+        }
+        return bucket;
+    }
+
+}
@@ -164,6 +164,15 @@ public class InsnListEx extends InsnListReadOnly implements IInsnListEx {
         }
     }
     
+    /**
+     * Get the instruction index for this list, see {@link InsnIndex#of}
+     * 
+     * @return instruction index
+     */
+    public InsnIndex getIndex() {
+        return this.target.getInsnIndex();
+    }
+    
     /**
      * Decorate this insn list with arbitrary metadata for use by
      * context-specific injection points
@@ -206,6 +206,15 @@ public final class MethodSlice {
             return new SliceIterator(super.iterator(this.start + index), this.start, this.end, this.start + index);
         }
 
+        /* (non-Javadoc)
+         * @see org.spongepowered.asm.mixin.injection.code.InsnListEx
+         *      #getIndex()
+         */
+        @Override
+        public InsnIndex getIndex() {
+            return super.getIndex().slice(this.start, this.end);
+        }
+
         /* (non-Javadoc)
          * @see org.spongepowered.asm.mixin.injection.code.ReadOnlyInsnList
          *      #toArray()
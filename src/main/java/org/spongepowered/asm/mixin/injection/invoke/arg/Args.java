@@ -34,10 +34,29 @@ import org.spongepowered.asm.mixin.injection.ModifyArgs;
 public abstract class Args {
     
     /**
-     * Argument values
+     * Argument values, <tt>null</tt> for subclasses which store the arguments
+     * in typed fields
+     * 
+     * @deprecated Generated subclasses store the arguments in typed fields and
+     *      no longer populate this array, so it is always <tt>null</tt> for
+     *      them. Use {@link #size} and {@link #get} (or the typed accessors
+     *      such as {@link #getInt}) to read argument values instead.
      */
+    @Deprecated
     protected final Object[] values;
 
+    /**
+     * Ctor for subclasses which store the argument values in typed fields
+     * rather than in the {@link #values} array, which is left <tt>null</tt>.
+     * This is the ctor used by all generated subclasses, so code which reads
+     * {@link #values} directly will not see the argument values. Subclasses
+     * using this ctor must override {@link #size} and {@link #get} as well as
+     * the abstract setters.
+     */
+    protected Args() {
+        this.values = null;
+    }
+
     /**
      * Ctor.
      * 
@@ -62,7 +81,7 @@ public abstract class Args {
      * @param index argument index to retrieve
      * @param <T> the argument type
      * @return the argument value
-     * @throws ArrayIndexOutOfBoundsException if a value outside the range of
+     * @throws IndexOutOfBoundsException if a value outside the range of
      *      available arguments is accessed
      */
     @SuppressWarnings("unchecked")
@@ -98,5 +117,28 @@ public abstract class Args {
      * @param values Argument values to set
      */
     public abstract void setAll(Object... values);
+
+    // Typed accessors for primitive arguments. These are overridden by the
+    // generated subclasses to read and write the argument fields directly so
+    // that no boxing takes place, for arguments of a different type they fall
+    // back to the boxed accessors above.
+    // CHECKSTYLE:OFF
+    public boolean getBoolean(int index) { return this.<Boolean>get(index).booleanValue(); }
+    public byte    getByte(int index) { return this.<Byte>get(index).byteValue(); }
+    public char    getChar(int index) { return this.<Character>get(index).charValue(); }
+    public short   getShort(int index) { return this.<Short>get(index).shortValue(); }
+    public int     getInt(int index) { return this.<Integer>get(index).intValue(); }
+    public long    getLong(int index) { return this.<Long>get(index).longValue(); }
+    public float   getFloat(int index) { return this.<Float>get(index).floatValue(); }
+    public double  getDouble(int index) { return this.<Double>get(index).doubleValue(); }
+    public void    setBoolean(int index, boolean value) { this.set(index, Boolean.valueOf(value)); }
+    public void    setByte(int index, byte    value) { this.set(index, Byte.valueOf(value)); }
+    public void    setChar(int index, char    value) { this.set(index, Character.valueOf(value)); }
+    public void    setShort(int index, short   value) { this.set(index, Short.valueOf(value)); }
+    public void    setInt(int index, int     value) { this.set(index, Integer.valueOf(value)); }
+    public void    setLong(int index, long    value) { this.set(index, Long.valueOf(value)); }
+    public void    setFloat(int index, float   value) { this.set(index, Float.valueOf(value)); }
+    public void    setDouble(int index, double  value) { this.set(index, Double.valueOf(value)); }
+    // CHECKSTYLE:ON
     
 }
\ No newline at end of file
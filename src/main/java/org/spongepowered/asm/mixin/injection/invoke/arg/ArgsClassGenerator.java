@@ -53,7 +53,9 @@ import org.spongepowered.asm.util.asm.MethodVisitorEx;
  * Class generator which creates subclasses of {@link Args} to be used by the
  * {@link ModifyArgs} injector. The subclasses contain getter and setter logic
  * to provide access to a particular configuration of arguments and classes are
- * only generated for each unique argument combination.
+ * only generated for each unique argument combination. Arguments are held in
+ * typed fields so that primitive arguments are only boxed when consumer code
+ * uses the boxed accessors.
  */
 public final class ArgsClassGenerator implements IClassGenerator {
     
@@ -66,12 +68,13 @@ public final class ArgsClassGenerator implements IClassGenerator {
 
     private static final String CLASS_NAME_BASE = ArgsClassGenerator.SYNTHETIC_PACKAGE + ".Args$";
 
-    private static final String OBJECT = "java/lang/Object";
-    private static final String OBJECT_ARRAY = "[L" + ArgsClassGenerator.OBJECT + ";";
+    private static final String FIELD_PREFIX = "arg";
     
-    private static final String VALUES_FIELD = "values";
+    private static final String SIZE = "size";
+    private static final String SIZE_DESC = "()I";
     
-    private static final String CTOR_DESC = "(" + ArgsClassGenerator.OBJECT_ARRAY + ")V";
+    private static final String GET = "get";
+    private static final String GET_DESC = "(I)Ljava/lang/Object;";
     
     private static final String SET = "set";
     private static final String SET_DESC = "(ILjava/lang/Object;)V";
@@ -171,7 +174,7 @@ public final class ArgsClassGenerator implements IClassGenerator {
      *      debugging only anyway
      * @return name of the Args subclass to use
      */
-    public ISyntheticClassInfo getArgsClass(String desc, IMixinInfo mixin) {
+    public synchronized ISyntheticClassInfo getArgsClass(String desc, IMixinInfo mixin) {
         String voidDesc = Bytecode.changeDescriptorReturnType(desc, "V");
         ArgsClassInfo info = this.descToClass.get(voidDesc);
         if (info == null) {
@@ -190,7 +193,7 @@ public final class ArgsClassGenerator implements IClassGenerator {
      *      #generate(java.lang.String, org.objectweb.asm.tree.ClassNode)
      */
     @Override
-    public boolean generate(String name, ClassNode classNode) {
+    public synchronized boolean generate(String name, ClassNode classNode) {
         ArgsClassInfo info = this.nameToClass.get(name);
         if (info == null) {
             return false;
@@ -209,11 +212,15 @@ public final class ArgsClassGenerator implements IClassGenerator {
                 ArgsClassGenerator.ARGS_REF, null);
         visitor.visitSource(name.substring(name.lastIndexOf('.') + 1) + ".java", null);
         
+        this.generateFields(info, visitor);
         this.generateCtor(info, visitor);
         this.generateToString(info, visitor);
         this.generateFactory(info, visitor);
+        this.generateSize(info, visitor);
+        this.generateIndexedGetter(info, visitor);
         this.generateSetters(info, visitor);
         this.generateGetters(info, visitor);
+        this.generateTypedAccessors(info, visitor);
         
         visitor.visitEnd();
         info.loaded++;
@@ -222,31 +229,47 @@ public final class ArgsClassGenerator implements IClassGenerator {
     }
 
     /**
-     * Generate the constructor for the subclass, the ctor simply calls the
-     * superclass ctor and does nothing else besides
+     * Generate a typed field for each argument. The fields are read by the
+     * getters and written by the setters directly, so that the argument values
+     * are never boxed unless consumer code uses the boxed accessors.
      * 
-     * @param ref Class ref being generated
-     * @param desc Argument descriptor
-     * @param args Parsed argument list from descriptor
+     * @param info Args class being generated
+     * @param writer Class writer
+     */
+    private void generateFields(ArgsClassInfo info, ClassVisitor writer) {
+        for (int index = 0; index < info.args.length; index++) {
+            writer.visitField(Opcodes.ACC_PRIVATE, ArgsClassGenerator.FIELD_PREFIX + index, info.args[index].getDescriptor(), null, null).visitEnd();
+        }
+    }
+
+    /**
+     * Generate the constructor for the subclass, the ctor calls the
+     * superclass ctor and then stores each argument in its field
+     * 
+     * @param info Args class being generated
      * @param writer Class writer
      */
     private void generateCtor(ArgsClassInfo info, ClassVisitor writer) {
-        MethodVisitor ctor = writer.visitMethod(Opcodes.ACC_PRIVATE, Constants.CTOR, ArgsClassGenerator.CTOR_DESC, null, null);
+        MethodVisitor ctor = writer.visitMethod(Opcodes.ACC_PRIVATE, Constants.CTOR, info.desc, null, null);
         ctor.visitCode();
         ctor.visitVarInsn(Opcodes.ALOAD, 0);
-        ctor.visitVarInsn(Opcodes.ALOAD, 1);
-        ctor.visitMethodInsn(Opcodes.INVOKESPECIAL, ArgsClassGenerator.ARGS_REF, Constants.CTOR, ArgsClassGenerator.CTOR_DESC, false);
+        ctor.visitMethodInsn(Opcodes.INVOKESPECIAL, ArgsClassGenerator.ARGS_REF, Constants.CTOR, "()V", false);
+        for (int index = 0, argIndex = 1; index < info.args.length; index++) {
+            Type arg = info.args[index];
+            ctor.visitVarInsn(Opcodes.ALOAD, 0);
+            ctor.visitVarInsn(arg.getOpcode(Opcodes.ILOAD), argIndex);
+            ctor.visitFieldInsn(Opcodes.PUTFIELD, info.getName(), ArgsClassGenerator.FIELD_PREFIX + index, arg.getDescriptor());
+            argIndex += arg.getSize();
+        }
         ctor.visitInsn(Opcodes.RETURN);
-        ctor.visitMaxs(2, 2);
+        ctor.visitMaxs(3, Bytecode.getArgsSize(info.args) + 1);
         ctor.visitEnd();
     }
 
     /**
      * Generate a toString method for this Args class.
      * 
-     * @param ref Class ref being generated
-     * @param desc Argument descriptor
-     * @param args Parsed argument list from descriptor
+     * @param info Args class being generated
      * @param writer Class writer
      */
     private void generateToString(ArgsClassInfo info, ClassVisitor writer) {
@@ -261,12 +284,9 @@ public final class ArgsClassGenerator implements IClassGenerator {
     /**
      * Generate the factory method (<tt>of</tt>) for the subclass, the factory
      * method takes the arguments which would have been passed to the target
-     * method, marshals them into an <tt>Object[]</tt> array, and then calls the
-     * constructor.
+     * method and passes them straight to the constructor.
      * 
-     * @param ref Class ref being generated
-     * @param desc Argument descriptor
-     * @param args Parsed argument list from descriptor
+     * @param info Args class being generated
      * @param writer Class writer
      */
     private void generateFactory(ArgsClassInfo info, ClassVisitor writer) {
@@ -279,28 +299,18 @@ public final class ArgsClassGenerator implements IClassGenerator {
         of.visitTypeInsn(Opcodes.NEW, ref);
         of.visitInsn(Opcodes.DUP);
         
-        // Create Object[] array to contain args
-        of.visitConstant((byte)info.args.length);
-        of.visitTypeInsn(Opcodes.ANEWARRAY, ArgsClassGenerator.OBJECT);
-
-        // Iterate over args and stuff them into the array
-        for (byte index = 0, argIndex = 0; index < info.args.length; index++) {
+        // Push the args in order
+        for (int index = 0, argIndex = 0; index < info.args.length; index++) {
             Type arg = info.args[index];
-            of.visitInsn(Opcodes.DUP);
-            of.visitConstant(index);
             of.visitVarInsn(arg.getOpcode(Opcodes.ILOAD), argIndex);
-            ArgsClassGenerator.box(of, arg);
-            of.visitInsn(Opcodes.AASTORE);
             argIndex += arg.getSize();
         }
 
-        // Call the constructor passing in the generated array
-        of.visitMethodInsn(Opcodes.INVOKESPECIAL, ref, Constants.CTOR, ArgsClassGenerator.CTOR_DESC, false);
-        
-        // Return the new object
+        // Call the constructor and return the new object
+        of.visitMethodInsn(Opcodes.INVOKESPECIAL, ref, Constants.CTOR, info.desc, false);
         of.visitInsn(Opcodes.ARETURN);
 
-        of.visitMaxs(6, Bytecode.getArgsSize(info.args));
+        of.visitMaxs(Bytecode.getArgsSize(info.args) + 2, Bytecode.getArgsSize(info.args));
         of.visitEnd();
     }
 
@@ -310,44 +320,70 @@ public final class ArgsClassGenerator implements IClassGenerator {
      * retrieve each argument in turn for passing to the method invocation being
      * modified.
      * 
-     * @param ref Class ref being generated
-     * @param desc Argument descriptor
-     * @param args Parsed argument list from descriptor
+     * @param info Args class being generated
      * @param writer Class writer
      */
     private void generateGetters(ArgsClassInfo info, ClassVisitor writer) {
-        byte argIndex = 0;
-        for (Type arg : info.args) {
-            String name = ArgsClassGenerator.GETTER_PREFIX + argIndex;
-            String sig = "()" + arg.getDescriptor();
-            MethodVisitorEx get = new MethodVisitorEx(writer.visitMethod(Opcodes.ACC_PUBLIC, name, sig, null, null));
+        for (int index = 0; index < info.args.length; index++) {
+            Type arg = info.args[index];
+            String name = ArgsClassGenerator.GETTER_PREFIX + index;
+            MethodVisitor get = writer.visitMethod(Opcodes.ACC_PUBLIC, name, "()" + arg.getDescriptor(), null, null);
             get.visitCode();
-            
-            // Read the value from the values field
             get.visitVarInsn(Opcodes.ALOAD, 0);
-            get.visitFieldInsn(Opcodes.GETFIELD, info.getName(), ArgsClassGenerator.VALUES_FIELD, ArgsClassGenerator.OBJECT_ARRAY);
-            get.visitConstant(argIndex);
-            get.visitInsn(Opcodes.AALOAD);
-            
-            // Unbox (if primitive) or cast down the value
-            ArgsClassGenerator.unbox(get, arg);
-            
-            // Return the value
+            get.visitFieldInsn(Opcodes.GETFIELD, info.getName(), ArgsClassGenerator.FIELD_PREFIX + index, arg.getDescriptor());
             get.visitInsn(arg.getOpcode(Opcodes.IRETURN));
-            
             get.visitMaxs(2, 1);
             get.visitEnd();
-            argIndex++;
         }
     }
     
+    /**
+     * Generate the <tt>size</tt> method, which returns the argument count
+     * 
+     * @param info Args class being generated
+     * @param writer Class writer
+     */
+    private void generateSize(ArgsClassInfo info, ClassVisitor writer) {
+        MethodVisitorEx size = new MethodVisitorEx(writer.visitMethod(Opcodes.ACC_PUBLIC,
+                ArgsClassGenerator.SIZE, ArgsClassGenerator.SIZE_DESC, null, null));
+        size.visitCode();
+        size.visitConstant((byte)info.args.length);
+        size.visitInsn(Opcodes.IRETURN);
+        size.visitMaxs(1, 1);
+        size.visitEnd();
+    }
+    
+    /**
+     * Generate the indexed <tt>get</tt> method, which reads the field for the
+     * requested argument index and boxes it if the argument is primitive. 
+     * 
+     * @param info Args class being generated
+     * @param writer Class writer
+     */
+    private void generateIndexedGetter(ArgsClassInfo info, ClassVisitor writer) {
+        MethodVisitorEx get = new MethodVisitorEx(writer.visitMethod(Opcodes.ACC_PUBLIC,
+                ArgsClassGenerator.GET, ArgsClassGenerator.GET_DESC, null, null));
+        get.visitCode();
+        
+        Label[] labels = ArgsClassGenerator.visitIndexSwitch(get, info.args.length);
+        for (int index = 0; index < info.args.length; index++) {
+            Type arg = info.args[index];
+            get.visitLabel(labels[index]);
+            get.visitVarInsn(Opcodes.ALOAD, 0);
+            get.visitFieldInsn(Opcodes.GETFIELD, info.getName(), ArgsClassGenerator.FIELD_PREFIX + index, arg.getDescriptor());
+            ArgsClassGenerator.box(get, arg);
+            get.visitInsn(Opcodes.ARETURN);
+        }
+        
+        get.visitMaxs(3, 2);
+        get.visitEnd();
+    }
+    
     /**
      * Generate the setter methods. These methods implement the abstract
      * {@link Args#set} and {@link Args#setAll} methods. 
      * 
-     * @param ref Class ref being generated
-     * @param desc Argument descriptor
-     * @param args Parsed argument list from descriptor
+     * @param info Args class being generated
      * @param writer Class writer
      */
     private void generateSetters(ArgsClassInfo info, ClassVisitor writer) {
@@ -356,14 +392,13 @@ public final class ArgsClassGenerator implements IClassGenerator {
     }
     
     /**
-     * Generate the <tt>set</tt> method body. The <tt>set</tt> method performs a
-     * <tt>CHECKCAST</tt> on all incoming arguments, checks that the argument
-     * index is not out of bounds, and also ensures that primitive types are not
-     * assigned <tt>null</tt> by the consumer code. 
+     * Generate the <tt>set</tt> method body. The <tt>set</tt> method checks
+     * that the argument index is not out of bounds, performs a
+     * <tt>CHECKCAST</tt> on the incoming argument, ensures that primitive types
+     * are not assigned <tt>null</tt> by the consumer code, and then unboxes the
+     * value (if primitive) into the argument field. 
      * 
-     * @param ref Class ref being generated
-     * @param desc Argument descriptor
-     * @param args Parsed argument list from descriptor
+     * @param info Args class being generated
      * @param writer Class writer
      */
     private void generateIndexedSetter(ArgsClassInfo info, ClassVisitor writer) {
@@ -371,50 +406,21 @@ public final class ArgsClassGenerator implements IClassGenerator {
                 ArgsClassGenerator.SET, ArgsClassGenerator.SET_DESC, null, null));
         set.visitCode();
         
-        Label store = new Label(), checkNull = new Label();
-        Label[] labels = new Label[info.args.length];
-        for (int label = 0; label < labels.length; label++) {
-            labels[label] = new Label();
-        }
-        
-        // Put the values array on the stack to begin with
-        set.visitVarInsn(Opcodes.ALOAD, 0);
-        set.visitFieldInsn(Opcodes.GETFIELD, info.getName(), ArgsClassGenerator.VALUES_FIELD, ArgsClassGenerator.OBJECT_ARRAY);
-
-        // Each argument index will jump to its own label
-        for (byte index = 0; index < info.args.length; index++) {
-            set.visitVarInsn(Opcodes.ILOAD, 1);
-            set.visitConstant(index);
-            set.visitJumpInsn(Opcodes.IF_ICMPEQ, labels[index]);
-        }
-        
-        // No argument was matched, so we throw an out of bounds exception
-        ArgsClassGenerator.throwAIOOBE(set, 1);
-        
-        // For each arg we do a CHECKCAST to ensure the supplied type is
-        // assignable to the arg type, we leave the index and value on the stack
-        // and jump to the next stage
+        Label nullPrimitive = new Label();
+        Label[] labels = ArgsClassGenerator.visitIndexSwitch(set, info.args.length);
         for (int index = 0; index < info.args.length; index++) {
-            String boxingType = Bytecode.getBoxingType(info.args[index]);
+            Type arg = info.args[index];
             set.visitLabel(labels[index]);
-            set.visitVarInsn(Opcodes.ILOAD, 1);
+            set.visitVarInsn(Opcodes.ALOAD, 0);
             set.visitVarInsn(Opcodes.ALOAD, 2);
-            set.visitTypeInsn(Opcodes.CHECKCAST, boxingType != null ? boxingType : info.args[index].getInternalName());
-            set.visitJumpInsn(Opcodes.GOTO, boxingType != null ? checkNull : store);
+            ArgsClassGenerator.storeField(set, info, index, nullPrimitive);
+            set.visitInsn(Opcodes.RETURN);
         }
         
-        // For primitive types, we check that the supplied value is not null
-        set.visitLabel(checkNull);
-        set.visitInsn(Opcodes.DUP);
-        set.visitJumpInsn(Opcodes.IFNONNULL, store);
-        
         // If the arg type is primitive but the user supplied NULL, throw an exception
+        set.visitLabel(nullPrimitive);
         ArgsClassGenerator.throwNPE(set, "Argument with primitive type cannot be set to NULL");
         
-        // Everything above succeeded, so we just assign the value into the array
-        set.visitLabel(store);
-        set.visitInsn(Opcodes.AASTORE);
-        set.visitInsn(Opcodes.RETURN);
         set.visitMaxs(6, 3);
         set.visitEnd();
     }
@@ -424,9 +430,7 @@ public final class ArgsClassGenerator implements IClassGenerator {
      * performs a <tt>CHECKCAST</tt> on all incoming arguments, and also ensures
      * that primitive types are not assigned <tt>null</tt> by the consumer code.
      * 
-     * @param ref Class ref being generated
-     * @param desc Argument descriptor
-     * @param args Parsed argument list from descriptor
+     * @param info Args class being generated
      * @param writer Class writer
      */
     private void generateMultiSetter(ArgsClassInfo info, ClassVisitor writer) {
@@ -435,7 +439,6 @@ public final class ArgsClassGenerator implements IClassGenerator {
         set.visitCode();
         
         Label lengthOk = new Label(), nullPrimitive = new Label();
-        int maxStack = 6;
         
         // Compare the length of the varargs array to the expected argument count
         set.visitVarInsn(Opcodes.ALOAD, 1);
@@ -460,44 +463,168 @@ public final class ArgsClassGenerator implements IClassGenerator {
         set.visitLabel(lengthOk);
         set.visitInsn(Opcodes.POP); // Pop the remaining length value
         
-        // Put the values array on the stack to begin with
-        set.visitVarInsn(Opcodes.ALOAD, 0);
-        set.visitFieldInsn(Opcodes.GETFIELD, info.getName(), ArgsClassGenerator.VALUES_FIELD, ArgsClassGenerator.OBJECT_ARRAY);
-
         for (byte index = 0; index < info.args.length; index++) {
-            // Dup the member array reference and target index
-            set.visitInsn(Opcodes.DUP);
-            set.visitConstant(index);
-            
-            // Read the value from the varargs array
+            // Read the value from the varargs array and store it in the field
+            set.visitVarInsn(Opcodes.ALOAD, 0);
             set.visitVarInsn(Opcodes.ALOAD, 1);
             set.visitConstant(index);
             set.visitInsn(Opcodes.AALOAD);
-            
-            // Check the argument type
-            String boxingType = Bytecode.getBoxingType(info.args[index]);
-            set.visitTypeInsn(Opcodes.CHECKCAST, boxingType != null ? boxingType : info.args[index].getInternalName());
-            
-            // For primitives, check the value is not null
-            if (boxingType != null) {
-                set.visitInsn(Opcodes.DUP);
-                set.visitJumpInsn(Opcodes.IFNULL, nullPrimitive);
-                maxStack = 7;
-            }
-     
-            // Everything succeeded, assign the value
-            set.visitInsn(Opcodes.AASTORE);
+            ArgsClassGenerator.storeField(set, info, index, nullPrimitive);
         }
 
         set.visitInsn(Opcodes.RETURN);
         
         set.visitLabel(nullPrimitive);
         ArgsClassGenerator.throwNPE(set, "Argument with primitive type cannot be set to NULL");
-        set.visitInsn(Opcodes.RETURN);
         
-        set.visitMaxs(maxStack, 2);
+        set.visitMaxs(6, 2);
         set.visitEnd();
     }
+    
+    /**
+     * Generate overrides of the typed accessors in {@link Args} for each
+     * primitive type present in the argument list. The overrides read and
+     * write the argument fields directly for arguments of the matching type,
+     * and defer to the boxing implementation in {@link Args} for any other
+     * index.
+     * 
+     * @param info Args class being generated
+     * @param writer Class writer
+     */
+    private void generateTypedAccessors(ArgsClassInfo info, ClassVisitor writer) {
+        for (int sort = Type.BOOLEAN; sort <= Type.DOUBLE; sort++) {
+            Type type = null;
+            for (Type arg : info.args) {
+                if (arg.getSort() == sort) {
+                    type = arg;
+                    break;
+                }
+            }
+            if (type != null) {
+                this.generateTypedGetter(info, writer, type);
+                this.generateTypedSetter(info, writer, type);
+            }
+        }
+    }
+
+    /**
+     * Generate the typed getter for the specified primitive type
+     * 
+     * @param info Args class being generated
+     * @param writer Class writer
+     * @param type Primitive type to generate the getter for
+     */
+    private void generateTypedGetter(ArgsClassInfo info, ClassVisitor writer, Type type) {
+        String name = "get" + ArgsClassGenerator.getAccessorSuffix(type);
+        String desc = "(I)" + type.getDescriptor();
+        MethodVisitorEx get = new MethodVisitorEx(writer.visitMethod(Opcodes.ACC_PUBLIC, name, desc, null, null));
+        get.visitCode();
+        
+        for (byte index = 0; index < info.args.length; index++) {
+            if (info.args[index].getSort() != type.getSort()) {
+                continue;
+            }
+            Label next = new Label();
+            get.visitVarInsn(Opcodes.ILOAD, 1);
+            get.visitConstant(index);
+            get.visitJumpInsn(Opcodes.IF_ICMPNE, next);
+            get.visitVarInsn(Opcodes.ALOAD, 0);
+            get.visitFieldInsn(Opcodes.GETFIELD, info.getName(), ArgsClassGenerator.FIELD_PREFIX + index, type.getDescriptor());
+            get.visitInsn(type.getOpcode(Opcodes.IRETURN));
+            get.visitLabel(next);
+        }
+        
+        get.visitVarInsn(Opcodes.ALOAD, 0);
+        get.visitVarInsn(Opcodes.ILOAD, 1);
+        get.visitMethodInsn(Opcodes.INVOKESPECIAL, ArgsClassGenerator.ARGS_REF, name, desc, false);
+        get.visitInsn(type.getOpcode(Opcodes.IRETURN));
+        get.visitMaxs(2, 2);
+        get.visitEnd();
+    }
+
+    /**
+     * Generate the typed setter for the specified primitive type
+     * 
+     * @param info Args class being generated
+     * @param writer Class writer
+     * @param type Primitive type to generate the setter for
+     */
+    private void generateTypedSetter(ArgsClassInfo info, ClassVisitor writer, Type type) {
+        String name = "set" + ArgsClassGenerator.getAccessorSuffix(type);
+        String desc = "(I" + type.getDescriptor() + ")V";
+        MethodVisitorEx set = new MethodVisitorEx(writer.visitMethod(Opcodes.ACC_PUBLIC, name, desc, null, null));
+        set.visitCode();
+        
+        for (byte index = 0; index < info.args.length; index++) {
+            if (info.args[index].getSort() != type.getSort()) {
+                continue;
+            }
+            Label next = new Label();
+            set.visitVarInsn(Opcodes.ILOAD, 1);
+            set.visitConstant(index);
+            set.visitJumpInsn(Opcodes.IF_ICMPNE, next);
+            set.visitVarInsn(Opcodes.ALOAD, 0);
+            set.visitVarInsn(type.getOpcode(Opcodes.ILOAD), 2);
+            set.visitFieldInsn(Opcodes.PUTFIELD, info.getName(), ArgsClassGenerator.FIELD_PREFIX + index, type.getDescriptor());
+            set.visitInsn(Opcodes.RETURN);
+            set.visitLabel(next);
+        }
+        
+        set.visitVarInsn(Opcodes.ALOAD, 0);
+        set.visitVarInsn(Opcodes.ILOAD, 1);
+        set.visitVarInsn(type.getOpcode(Opcodes.ILOAD), 2);
+        set.visitMethodInsn(Opcodes.INVOKESPECIAL, ArgsClassGenerator.ARGS_REF, name, desc, false);
+        set.visitInsn(Opcodes.RETURN);
+        set.visitMaxs(4, 2 + type.getSize());
+        set.visitEnd();
+    }
+
+    /**
+     * Add insns which compare the index in local 1 with each argument index
+     * in turn and jump to the corresponding label, throwing an
+     * {@link ArgumentIndexOutOfBoundsException} if no argument was matched
+     * 
+     * @return labels for each argument index
+     */
+    private static Label[] visitIndexSwitch(MethodVisitorEx method, int argCount) {
+        Label[] labels = new Label[argCount];
+        for (byte index = 0; index < argCount; index++) {
+            labels[index] = new Label();
+            method.visitVarInsn(Opcodes.ILOAD, 1);
+            method.visitConstant(index);
+            method.visitJumpInsn(Opcodes.IF_ICMPEQ, labels[index]);
+        }
+        
+        // No argument was matched, so we throw an out of bounds exception
+        ArgsClassGenerator.throwAIOOBE(method, 1);
+        return labels;
+    }
+
+    /**
+     * Add insns which store the boxed value on the top of the stack into the
+     * field for the specified argument, expects the stack to contain the args
+     * instance and the value. For primitive arguments a <tt>null</tt> value
+     * jumps to <tt>nullPrimitive</tt>, otherwise a <tt>CHECKCAST</tt> ensures
+     * the value is assignable to the argument type.
+     */
+    private static void storeField(MethodVisitorEx method, ArgsClassInfo info, int index, Label nullPrimitive) {
+        Type arg = info.args[index];
+        if (Bytecode.getBoxingType(arg) != null) {
+            method.visitInsn(Opcodes.DUP);
+            method.visitJumpInsn(Opcodes.IFNULL, nullPrimitive);
+        }
+        ArgsClassGenerator.unbox(method, arg);
+        method.visitFieldInsn(Opcodes.PUTFIELD, info.getName(), ArgsClassGenerator.FIELD_PREFIX + index, arg.getDescriptor());
+    }
+
+    /**
+     * Get the suffix of the typed accessor in {@link Args} for the specified
+     * primitive type, eg. <tt>Int</tt> for <tt>getInt</tt> and <tt>setInt</tt>
+     */
+    private static String getAccessorSuffix(Type type) {
+        String name = type.getClassName();
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
 
     /**
      * Add insns to throw a null pointer exception with the specified message
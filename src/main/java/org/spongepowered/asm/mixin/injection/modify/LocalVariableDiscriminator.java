@@ -151,7 +151,7 @@ public class LocalVariableDiscriminator {
 
         private Local[] initLocals(Target target, boolean argsOnly, AbstractInsnNode node) {
             if (!argsOnly) {
-                LocalVariableNode[] locals = Locals.getLocalsAt(target.classNode, target.method, node, org.spongepowered.asm.mixin.FabricUtil.getCompatibility(info));
+                LocalVariableNode[] locals = target.getLocalsAt(node, org.spongepowered.asm.mixin.FabricUtil.getCompatibility(info));
                 if (locals != null) {
                     return getLocals(locals);
                 }
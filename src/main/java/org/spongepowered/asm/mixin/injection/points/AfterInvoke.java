@@ -141,6 +141,11 @@ public class AfterInvoke extends BeforeInvoke {
         this.skip = data.getOpcodeList("skip", AfterInvoke.DEFAULT_SKIP);
     }
 
+    @Override
+    protected boolean isIndexable() {
+        return this.getClass() == AfterInvoke.class;
+    }
+
     @Override
     protected boolean addInsn(InsnList insns, Collection<AbstractInsnNode> nodes, AbstractInsnNode insn) {
         MethodInsnNode methodNode = (MethodInsnNode)insn;
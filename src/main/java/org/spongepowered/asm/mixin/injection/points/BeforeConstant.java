@@ -28,7 +28,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Set;
 
@@ -45,6 +45,7 @@ import org.spongepowered.asm.mixin.injection.Constant;
 import org.spongepowered.asm.mixin.injection.Constant.Condition;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
 import org.spongepowered.asm.mixin.injection.InjectionPoint.AtCode;
+import org.spongepowered.asm.mixin.injection.code.InsnIndex;
 import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
 import org.spongepowered.asm.mixin.injection.throwables.InvalidInjectionException;
 import org.spongepowered.asm.mixin.refmap.IMixinContext;
@@ -228,7 +229,10 @@ public class BeforeConstant extends InjectionPoint {
 
         this.log("BeforeConstant is searching for constants in method with descriptor {}", desc);
         
-        ListIterator<AbstractInsnNode> iter = insns.iterator();
+        // Conditional expansion inspects the insn preceding each candidate so
+        // it always visits every insn, otherwise only constants are considered
+        InsnIndex index = this.expand ? null : InsnIndex.of(insns);
+        Iterator<AbstractInsnNode> iter = index != null ? index.get(Bytecode.CONSTANTS_ALL).iterator() : insns.iterator();
         for (int ordinal = 0, last = 0; iter.hasNext();) {
             AbstractInsnNode insn = iter.next();
 
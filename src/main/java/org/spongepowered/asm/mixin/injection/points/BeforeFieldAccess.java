@@ -26,6 +26,7 @@ package org.spongepowered.asm.mixin.injection.points;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -35,6 +36,7 @@ import org.objectweb.asm.tree.InsnList;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.InjectionPoint.AtCode;
 import org.spongepowered.asm.mixin.injection.Redirect;
+import org.spongepowered.asm.mixin.injection.code.InsnIndex;
 import org.spongepowered.asm.mixin.injection.selectors.ITargetSelector;
 import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
 import org.spongepowered.asm.util.Bytecode;
@@ -152,6 +154,16 @@ public class BeforeFieldAccess extends BeforeInvoke {
         return this.arrOpcode;
     }
 
+    @Override
+    protected boolean isIndexable() {
+        return this.getClass() == BeforeFieldAccess.class;
+    }
+    
+    @Override
+    protected List<AbstractInsnNode> getCandidates(InsnIndex index, ITargetSelector target) {
+        return index.getFieldInsns(BeforeInvoke.getMemberName(target));
+    }
+
     @Override
     protected boolean matchesInsn(AbstractInsnNode insn) {
         if (insn instanceof FieldInsnNode && (((FieldInsnNode) insn).getOpcode() == this.opcode || this.opcode == -1)) {
@@ -25,11 +25,13 @@
 package org.spongepowered.asm.mixin.injection.points;
 
 import java.util.Collection;
-import java.util.ListIterator;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 
 import org.spongepowered.asm.logging.ILogger;
 import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
 import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.spongepowered.asm.mixin.MixinEnvironment.Option;
@@ -37,6 +39,7 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.IInjectionPointContext;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
 import org.spongepowered.asm.mixin.injection.InjectionPoint.AtCode;
+import org.spongepowered.asm.mixin.injection.code.InsnIndex;
 import org.spongepowered.asm.mixin.injection.selectors.ElementNode;
 import org.spongepowered.asm.mixin.injection.selectors.ITargetSelector;
 import org.spongepowered.asm.mixin.injection.selectors.ITargetSelectorByName;
@@ -180,15 +183,17 @@ public class BeforeInvoke extends InjectionPoint {
         
         int ordinal = 0, found = 0, matchCount = 0;
         
-        ListIterator<AbstractInsnNode> iter = insns.iterator();
+        InsnIndex index = this.isIndexable() ? InsnIndex.of(insns) : null;
+        Iterator<AbstractInsnNode> iter = index != null ? this.getCandidates(index, target).iterator() : insns.iterator();
         while (iter.hasNext()) {
             AbstractInsnNode insn = iter.next();
 
             if (this.matchesInsn(insn)) {
-                MemberInfo nodeInfo = new MemberInfo(insn);
-                this.log("{}->{} is considering {}", this.context, this.className, nodeInfo);
+                if (this.log) {
+                    this.log("{}->{} is considering {}", this.context, this.className, new MemberInfo(insn));
+                }
 
-                if (target.match(ElementNode.<AbstractInsnNode>of(insn)).isExactMatch()) {
+                if (BeforeInvoke.isExactMatch(target, insn)) {
                     this.log("{}->{} > found a matching insn, checking preconditions...", this.context, this.className);
                     if (++matchCount > target.getMaxMatchCount()) {
                         break;
@@ -218,6 +223,54 @@ public class BeforeInvoke extends InjectionPoint {
         return found > 0;
     }
 
+    /**
+     * Get whether this injection point can visit only the candidate insns
+     * returned by {@link #getCandidates} instead of every insn in the target.
+     * Only true for the built-in injection points, since subclasses may match
+     * other insns or rely on {@link #inspectInsn} seeing every insn.
+     */
+    protected boolean isIndexable() {
+        return this.getClass() == BeforeInvoke.class;
+    }
+    
+    /**
+     * Get the candidate insns for this injection point from the target's insn
+     * index, only called when {@link #isIndexable} returns true
+     * 
+     * @param index insn index
+     * @param target configured target selector
+     * @return insns to consider, in order
+     */
+    protected List<AbstractInsnNode> getCandidates(InsnIndex index, ITargetSelector target) {
+        return index.getMethodInsns(BeforeInvoke.getMemberName(target));
+    }
+    
+    /**
+     * Get the member name the supplied selector requires an exact match on, or
+     * null if the selector can match any name
+     */
+    protected static String getMemberName(ITargetSelector target) {
+        return target instanceof MemberInfo ? ((MemberInfo)target).getName() : null;
+    }
+
+    /**
+     * Test whether the selector matches the supplied insn exactly. Member
+     * selectors are matched directly against the insn to avoid wrapping every
+     * candidate in an {@link ElementNode}.
+     */
+    private static boolean isExactMatch(ITargetSelector target, AbstractInsnNode insn) {
+        if (target instanceof MemberInfo) {
+            if (insn instanceof MethodInsnNode) {
+                MethodInsnNode methodInsn = (MethodInsnNode)insn;
+                return ((MemberInfo)target).isExactMatch(methodInsn.owner, methodInsn.name, methodInsn.desc);
+            } else if (insn instanceof FieldInsnNode) {
+                FieldInsnNode fieldInsn = (FieldInsnNode)insn;
+                return ((MemberInfo)target).isExactMatch(fieldInsn.owner, fieldInsn.name, fieldInsn.desc);
+            }
+        }
+        return target.match(ElementNode.<AbstractInsnNode>of(insn)).isExactMatch();
+    }
+
     protected boolean addInsn(InsnList insns, Collection<AbstractInsnNode> nodes, AbstractInsnNode insn) {
         nodes.add(insn);
         return true;
@@ -27,7 +27,6 @@ package org.spongepowered.asm.mixin.injection.points;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.ListIterator;
 
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
@@ -36,6 +35,7 @@ import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.TypeInsnNode;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
 import org.spongepowered.asm.mixin.injection.InjectionPoint.AtCode;
+import org.spongepowered.asm.mixin.injection.code.InsnIndex;
 import org.spongepowered.asm.mixin.injection.selectors.ITargetSelector;
 import org.spongepowered.asm.mixin.injection.selectors.ITargetSelectorConstructor;
 import org.spongepowered.asm.mixin.injection.selectors.TargetSelector;
@@ -143,7 +143,8 @@ public class BeforeNew extends InjectionPoint {
 
         Collection<TypeInsnNode> newNodes = new ArrayList<TypeInsnNode>();
         Collection<AbstractInsnNode> candidates = (Collection<AbstractInsnNode>) (this.desc != null ? newNodes : nodes);
-        ListIterator<AbstractInsnNode> iter = insns.iterator();
+        InsnIndex index = InsnIndex.of(insns);
+        Iterator<AbstractInsnNode> iter = index != null ? index.get(Opcodes.NEW).iterator() : insns.iterator();
         while (iter.hasNext()) {
             AbstractInsnNode insn = iter.next();
 
@@ -25,7 +25,7 @@
 package org.spongepowered.asm.mixin.injection.points;
 
 import java.util.Collection;
-import java.util.ListIterator;
+import java.util.Iterator;
 
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -35,6 +35,7 @@ import org.objectweb.asm.tree.InsnNode;
 import org.spongepowered.asm.mixin.injection.IInjectionPointContext;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
 import org.spongepowered.asm.mixin.injection.InjectionPoint.AtCode;
+import org.spongepowered.asm.mixin.injection.code.InsnIndex;
 import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
 
 /**
@@ -98,7 +99,8 @@ public class BeforeReturn extends InjectionPoint {
         int returnOpcode = Type.getReturnType(desc).getOpcode(Opcodes.IRETURN);
         int ordinal = 0;
 
-        ListIterator<AbstractInsnNode> iter = insns.iterator();
+        InsnIndex index = InsnIndex.of(insns);
+        Iterator<AbstractInsnNode> iter = index != null ? index.get(returnOpcode).iterator() : insns.iterator();
         while (iter.hasNext()) {
             AbstractInsnNode insn = iter.next();
 
@@ -25,7 +25,7 @@
 package org.spongepowered.asm.mixin.injection.points;
 
 import java.util.Collection;
-import java.util.ListIterator;
+import java.util.Iterator;
 
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.tree.AbstractInsnNode;
@@ -33,6 +33,7 @@ import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.JumpInsnNode;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
 import org.spongepowered.asm.mixin.injection.InjectionPoint.AtCode;
+import org.spongepowered.asm.mixin.injection.code.InsnIndex;
 import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
 
 /**
@@ -69,6 +70,15 @@ import org.spongepowered.asm.mixin.injection.struct.InjectionPointData;
  */
 @AtCode("JUMP")
 public class JumpInsnPoint extends InjectionPoint {
+    
+    /**
+     * Opcodes of all jump insns, used when no opcode is specified
+     */
+    private static final int[] JUMP_OPCODES = {
+        Opcodes.IFEQ, Opcodes.IFNE, Opcodes.IFLT, Opcodes.IFGE, Opcodes.IFGT, Opcodes.IFLE, Opcodes.IF_ICMPEQ, Opcodes.IF_ICMPNE,
+        Opcodes.IF_ICMPLT, Opcodes.IF_ICMPGE, Opcodes.IF_ICMPGT, Opcodes.IF_ICMPLE, Opcodes.IF_ACMPEQ, Opcodes.IF_ACMPNE, Opcodes.GOTO,
+        Opcodes.JSR, Opcodes.IFNULL, Opcodes.IFNONNULL
+    };
 
     private final int opCode;
 
@@ -86,7 +96,9 @@ public class JumpInsnPoint extends InjectionPoint {
         boolean found = false;
         int ordinal = 0;
 
-        ListIterator<AbstractInsnNode> iter = insns.iterator();
+        InsnIndex index = InsnIndex.of(insns);
+        Iterator<AbstractInsnNode> iter = index == null ? insns.iterator()
+                : (this.opCode == -1 ? index.get(JumpInsnPoint.JUMP_OPCODES) : index.get(this.opCode)).iterator();
         while (iter.hasNext()) {
             AbstractInsnNode insn = iter.next();
 
@@ -69,6 +69,7 @@ import org.spongepowered.asm.mixin.throwables.MixinError;
 import org.spongepowered.asm.mixin.throwables.MixinException;
 import org.spongepowered.asm.mixin.transformer.ActivityStack;
 import org.spongepowered.asm.mixin.transformer.MixinTargetContext;
+import org.spongepowered.asm.mixin.transformer.ext.extensions.ExtensionCodeSize;
 import org.spongepowered.asm.mixin.transformer.throwables.InvalidMixinException;
 import org.spongepowered.asm.util.Annotations;
 import org.spongepowered.asm.util.Bytecode;
@@ -499,8 +500,15 @@ public abstract class InjectionInfo extends SpecialMethodInfo implements ISliceC
      * Perform injections
      */
     public void inject() {
+        ExtensionCodeSize codeSize = this.mixin.getOption(Option.DEBUG_CODE_SIZE)
+                ? this.mixin.getExtensions().<ExtensionCodeSize>getExtension(ExtensionCodeSize.class) : null;
         for (Entry<Target, List<InjectionNode>> entry : this.targetNodes.entrySet()) {
-            this.injector.inject(entry.getKey(), entry.getValue());
+            Target target = entry.getKey();
+            int size = codeSize != null ? target.getCodeSize() : 0;
+            this.injector.inject(target, entry.getValue());
+            if (codeSize != null) {
+                codeSize.record(this.classNode, target.method, this.toString(), target.getCodeSize() - size);
+            }
         }
         this.targets.clear();
     }
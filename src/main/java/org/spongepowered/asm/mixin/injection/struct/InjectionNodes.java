@@ -27,6 +27,7 @@ package org.spongepowered.asm.mixin.injection.struct;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.spongepowered.asm.util.Bytecode;
@@ -55,7 +56,7 @@ public class InjectionNodes extends ArrayList<InjectionNodes.InjectionNode> {
         /**
          * Next unique id 
          */
-        private static int nextId = 0;
+        private static final AtomicInteger nextId = new AtomicInteger();
         
         /**
          * Injection node unique id
@@ -86,7 +87,7 @@ public class InjectionNodes extends ArrayList<InjectionNodes.InjectionNode> {
          */
         public InjectionNode(AbstractInsnNode node) {
             this.currentTarget = this.originalTarget = node;
-            this.id = InjectionNode.nextId++;
+            this.id = InjectionNode.nextId.getAndIncrement();
         }
         
         /**
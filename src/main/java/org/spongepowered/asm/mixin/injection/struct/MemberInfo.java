@@ -24,6 +24,11 @@
  */
 package org.spongepowered.asm.mixin.injection.struct;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.FieldInsnNode;
@@ -217,11 +222,75 @@ import com.google.common.base.Strings;
  */
 public final class MemberInfo implements ITargetSelectorRemappable, ITargetSelectorConstructor {
     
+    /**
+     * Snapshot of the selector parse cache counters
+     */
+    public static final class ParseCacheStats {
+        
+        private final int size;
+        private final long hits, misses;
+        
+        ParseCacheStats(int size, long hits, long misses) {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+        }
+        
+        /**
+         * Get the number of parsed selectors in the cache
+         */
+        public int getSize() {
+            return this.size;
+        }
+        
+        /**
+         * Get the number of parses which were satisfied from the cache
+         */
+        public long getHits() {
+            return this.hits;
+        }
+        
+        /**
+         * Get the number of parses which were not in the cache
+         */
+        public long getMisses() {
+            return this.misses;
+        }
+        
+        /**
+         * Get the proportion of parses satisfied from the cache
+         */
+        public double getHitRate() {
+            long total = this.hits + this.misses;
+            return total > 0 ? (double)this.hits / total : 0.0;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%d entries, %d hits, %d misses (%.1f%% hit rate)", this.size, this.hits, this.misses, this.getHitRate() * 100.0);
+        }
+        
+    }
+    
     /**
      * Separator for elements in the path
      */
     private static final String ARROW = "->";
     
+    private static final Pattern WHITESPACE = Pattern.compile("\\s");
+    
+    /**
+     * Maximum number of parsed selectors to retain
+     */
+    private static final int MAX_PARSE_CACHE_SIZE = 4096;
+    
+    /**
+     * Parsed selectors, by input and remapped name
+     */
+    private static final Map<String, MemberInfo> parseCache = new ConcurrentHashMap<String, MemberInfo>();
+    
+    private static final AtomicLong parseHits = new AtomicLong(), parseMisses = new AtomicLong();
+    
     /**
      * Member owner in internal form but without L;, can be null
      */
@@ -737,6 +806,32 @@ public final class MemberInfo implements ITargetSelectorRemappable, ITargetSelec
         return MatchResult.EXACT_MATCH;
     }
 
+    /**
+     * Allocation-free equivalent of <tt>matches(owner, name, desc)
+     * .isExactMatch()</tt> for use when scanning instructions. The name is
+     * checked first since it is the most selective, and strings are compared
+     * by reference and then by their (cached) hash codes before comparing
+     * characters so that most candidates are rejected cheaply.
+     * 
+     * @param owner Owner to compare with, null to skip
+     * @param name Name to compare with, null to skip
+     * @param desc Signature to compare with, null to skip
+     * @return true if this selector matches the supplied values exactly
+     */
+    public boolean isExactMatch(String owner, String name, String desc) {
+        if (this.name != null && name != null && !MemberInfo.equal(this.name, name)) {
+            return false;
+        }
+        if (this.desc != null && desc != null && !MemberInfo.equal(this.desc, desc)) {
+            return false;
+        }
+        return this.owner == null || owner == null || MemberInfo.equal(this.owner, owner);
+    }
+    
+    private static boolean equal(String a, String b) {
+        return a == b || (a.hashCode() == b.hashCode() && a.equals(b));
+    }
+
     /* (non-Javadoc)
      * @see java.lang.Object#equals(java.lang.Object)
      */
@@ -869,9 +964,7 @@ public final class MemberInfo implements ITargetSelectorRemappable, ITargetSelec
      * @return parsed MemberInfo
      */
     public static MemberInfo parse(final String input, final ISelectorContext context) {
-        String desc = null;
-        String owner = null;
-        String name = Strings.nullToEmpty(input).replaceAll("\\s", "");
+        String name = MemberInfo.WHITESPACE.matcher(Strings.nullToEmpty(input)).replaceAll("");
         String tail = null;
         
         int arrowPos = name.indexOf(MemberInfo.ARROW);
@@ -883,6 +976,28 @@ public final class MemberInfo implements ITargetSelectorRemappable, ITargetSelec
         if (context != null) {
             name = context.remap(name);
         }
+        
+        // The result only depends on the input and the remapped name, and is
+        // immutable, so identical selectors can share a single instance
+        String key = input + '\u0000' + name;
+        MemberInfo parsed = MemberInfo.parseCache.get(key);
+        if (parsed != null) {
+            MemberInfo.parseHits.incrementAndGet();
+            return parsed;
+        }
+        
+        MemberInfo.parseMisses.incrementAndGet();
+        parsed = MemberInfo.parse(input, name, tail);
+        if (MemberInfo.parseCache.size() >= MemberInfo.MAX_PARSE_CACHE_SIZE) {
+            MemberInfo.parseCache.clear();
+        }
+        MemberInfo.parseCache.put(key, parsed);
+        return parsed;
+    }
+    
+    private static MemberInfo parse(String input, String name, String tail) {
+        String desc = null;
+        String owner = null;
 
         int parenPos = name.indexOf('(');
         int colonPos = name.indexOf(':');
@@ -945,6 +1060,13 @@ public final class MemberInfo implements ITargetSelectorRemappable, ITargetSelec
         return new MemberInfo(name, owner, desc, quantifier, tail, input);
     }
 
+    /**
+     * Get a snapshot of the parse cache counters
+     */
+    public static ParseCacheStats getParseCacheStats() {
+        return new ParseCacheStats(MemberInfo.parseCache.size(), MemberInfo.parseHits.get(), MemberInfo.parseMisses.get());
+    }
+
     /**
      * Return the supplied mapping parsed as a MemberInfo
      * 
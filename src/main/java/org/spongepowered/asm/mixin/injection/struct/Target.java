@@ -38,13 +38,16 @@ import org.objectweb.asm.tree.LocalVariableNode;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
 import org.objectweb.asm.tree.TypeInsnNode;
+import org.spongepowered.asm.mixin.FabricUtil;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import org.spongepowered.asm.mixin.injection.code.InsnIndex;
 import org.spongepowered.asm.mixin.injection.points.BeforeNew;
 import org.spongepowered.asm.mixin.injection.struct.InjectionNodes.InjectionNode;
 import org.spongepowered.asm.mixin.transformer.ClassInfo;
 import org.spongepowered.asm.util.Bytecode;
 import org.spongepowered.asm.util.Constants;
 import org.spongepowered.asm.util.Counter;
+import org.spongepowered.asm.util.Locals;
 import org.spongepowered.asm.util.Locals.SyntheticLocalVariableNode;
 
 /**
@@ -233,6 +236,35 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
      * Labels for LVT ranges, generated as needed 
      */
     private LabelNode start, end;
+    
+    /**
+     * Count of modifications which remove instructions from the target or
+     * change its local variable table, used to invalidate the instruction
+     * index and locals timeline
+     */
+    private int modCount;
+    
+    /**
+     * Instruction index, built on demand
+     */
+    private InsnIndex insnIndex;
+    
+    /**
+     * Locals timeline, built on demand
+     */
+    private Locals.Timeline localsTimeline;
+    
+    /**
+     * Fabric compatibility level, instruction count and modification count
+     * when the locals timeline was built
+     */
+    private int localsCompatibility, localsSize, localsModCount;
+    
+    /**
+     * Estimated code size, and the instruction count and modification count
+     * when it was calculated
+     */
+    private int codeSize = -1, codeSizeInsns, codeSizeModCount;
 
     /**
      * Make a new Target for the supplied method
@@ -659,6 +691,62 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
         return this.insns.iterator();
     }
 
+    /**
+     * Get the estimated size in bytes of the code in this target, see
+     * {@link Bytecode#getCodeSize(InsnList)}. The value is recalculated if the
+     * instructions have changed since it was last calculated.
+     * 
+     * @return estimated code size
+     */
+    public int getCodeSize() {
+        if (this.codeSize < 0 || this.codeSizeInsns != this.insns.size() || this.codeSizeModCount != this.modCount) {
+            this.codeSize = Bytecode.getCodeSize(this.insns);
+            this.codeSizeInsns = this.insns.size();
+            this.codeSizeModCount = this.modCount;
+        }
+        return this.codeSize;
+    }
+
+    /**
+     * Get the instruction index for this target, the index is rebuilt if the
+     * instructions have changed since it was last built
+     * 
+     * @return instruction index
+     */
+    public InsnIndex getInsnIndex() {
+        if (this.insnIndex == null || !this.insnIndex.isCurrent(this.insns, this.modCount)) {
+            this.insnIndex = new InsnIndex(this.insns, this.modCount);
+        }
+        return this.insnIndex;
+    }
+
+    /**
+     * Get the locals available at the specified instruction in this target,
+     * see {@link Locals#getLocalsAt(ClassNode, MethodNode, AbstractInsnNode,
+     * int)}. Successive queries share a timeline of the locals in the method
+     * which is rebuilt if the target is modified.
+     * 
+     * @param node Node indicating the position at which to determine the
+     *      locals state
+     * @param fabricCompatibility Fabric compatibility level
+     * @return A sparse array containing a view (hopefully) of the locals at the
+     *      specified location
+     */
+    public LocalVariableNode[] getLocalsAt(AbstractInsnNode node, int fabricCompatibility) {
+        if (fabricCompatibility < FabricUtil.COMPATIBILITY_0_10_0) {
+            return Locals.getLocalsAt(this.classNode, this.method, node, fabricCompatibility);
+        }
+        
+        if (this.localsTimeline == null || this.localsCompatibility != fabricCompatibility || this.localsSize != this.insns.size()
+                || this.localsModCount != this.modCount) {
+            this.localsTimeline = new Locals.Timeline(this.classNode, this.method, fabricCompatibility);
+            this.localsCompatibility = fabricCompatibility;
+            this.localsSize = this.insns.size();
+            this.localsModCount = this.modCount;
+        }
+        return this.localsTimeline.getLocalsAt(node);
+    }
+
     /**
      * Find the first <tt>&lt;init&gt;</tt> invocation after the specified
      * <tt>NEW</tt> insn
@@ -775,6 +863,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
     public void replaceNode(AbstractInsnNode location, AbstractInsnNode insn) {
         this.insns.insertBefore(location, insn);
         this.insns.remove(location);
+        this.modCount++;
         this.injectionNodes.replace(location, insn);
     }
     
@@ -789,6 +878,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
     public void replaceNode(AbstractInsnNode location, AbstractInsnNode champion, InsnList insns) {
         this.insns.insertBefore(location, insns);
         this.insns.remove(location);
+        this.modCount++;
         this.injectionNodes.replace(location, champion);
     }
     
@@ -827,6 +917,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
      */
     public void removeNode(AbstractInsnNode insn) {
         this.insns.remove(insn);
+        this.modCount++;
         this.injectionNodes.remove(insn);
     }
 
@@ -871,6 +962,7 @@ public class Target implements Comparable<Target>, Iterable<AbstractInsnNode> {
         }
         
         this.method.localVariables.add(new SyntheticLocalVariableNode(name, desc, null, from, to, index));
+        this.modCount++;
     }
 
     /**
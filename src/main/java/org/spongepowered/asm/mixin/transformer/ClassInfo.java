@@ -27,14 +27,23 @@ package org.spongepowered.asm.mixin.transformer;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.spongepowered.asm.logging.Level;
 import org.spongepowered.asm.logging.ILogger;
@@ -59,6 +68,7 @@ import org.spongepowered.asm.mixin.gen.Accessor;
 import org.spongepowered.asm.mixin.gen.Invoker;
 import org.spongepowered.asm.mixin.transformer.ClassInfo.Member.Type;
 import org.spongepowered.asm.mixin.transformer.MixinInfo.MixinClassNode;
+import org.spongepowered.asm.mixin.transformer.meta.MixinMerged;
 import org.spongepowered.asm.service.MixinService;
 import org.spongepowered.asm.util.Annotations;
 import org.spongepowered.asm.util.Bytecode;
@@ -445,12 +455,17 @@ public final class ClassInfo {
          * @return the passed-in argument, for fluency
          */
         public String renameTo(String name) {
+            String previousName = this.currentName;
             this.currentName = name;
+            if (!name.equals(previousName)) {
+                this.getOwner().onMemberRenamed(this, previousName);
+            }
             return name;
         }
         
         public String remapTo(String desc) {
             this.currentDesc = desc;
+            this.getOwner().invalidateLookups();
             return desc;
         }
 
@@ -491,7 +506,19 @@ public final class ClassInfo {
      */
     public class Method extends Member {
 
-        private final List<FrameData> frames;
+        /**
+         * Method this method was copied from, frames are taken from the
+         * source method since they may not be loaded yet
+         */
+        private final Method source;
+
+        private volatile List<FrameData> frames;
+        
+        /**
+         * True if this method was read from a skeleton class and its frames
+         * have not been loaded yet
+         */
+        private volatile boolean framesPending;
         
         private boolean isAccessor;
         
@@ -499,7 +526,7 @@ public final class ClassInfo {
 
         public Method(Member member) {
             super(member);
-            this.frames = member instanceof Method ? ((Method)member).frames : null;
+            this.source = member instanceof Method ? (Method)member : null;
         }
 
         public Method(MethodNode method) {
@@ -509,7 +536,12 @@ public final class ClassInfo {
         @SuppressWarnings("unchecked")
         public Method(MethodNode method, boolean injected) {
             super(Type.METHOD, method.name, method.desc, method.access, injected);
-            this.frames = this.gatherFrames(method);
+            this.source = null;
+            if (ClassInfo.this.skeleton && !injected) {
+                this.framesPending = true;
+            } else {
+                this.frames = ClassInfo.gatherFrames(method);
+            }
             this.setUnique(Annotations.getVisible(method, Unique.class) != null);
             this.isAccessor = Annotations.getSingleVisible(method, Accessor.class, Invoker.class) != null;
             boolean decoratedFinal = Annotations.getVisible(method, Final.class) != null;
@@ -519,34 +551,35 @@ public final class ClassInfo {
 
         public Method(String name, String desc) {
             super(Type.METHOD, name, desc, Opcodes.ACC_PUBLIC, false);
-            this.frames = null;
+            this.source = null;
         }
 
         public Method(String name, String desc, int access) {
             super(Type.METHOD, name, desc, access, false);
-            this.frames = null;
+            this.source = null;
         }
 
         public Method(String name, String desc, int access, boolean injected) {
             super(Type.METHOD, name, desc, access, injected);
-            this.frames = null;
+            this.source = null;
         }
 
-        private List<FrameData> gatherFrames(MethodNode method) {
-            List<FrameData> frames = new ArrayList<FrameData>();
-            for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
-                AbstractInsnNode insn = iter.next();
-                if (insn instanceof FrameNode) {
-                    frames.add(new FrameData(method.instructions.indexOf(insn), (FrameNode)insn, Bytecode.getFirstNonArgLocalIndex(method)));
-                }
-            }
-            return frames;
-        }
 
         public List<FrameData> getFrames() {
+            if (this.source != null) {
+                return this.source.getFrames();
+            }
+            if (this.framesPending) {
+                ClassInfo.this.loadFrames();
+            }
             return this.frames;
         }
         
+        void setFrames(List<FrameData> frames) {
+            this.frames = frames;
+            this.framesPending = false;
+        }
+        
         @Override
         public ClassInfo getOwner() {
             return ClassInfo.this;
@@ -672,6 +705,322 @@ public final class ClassInfo {
         }
     }
 
+    /**
+     * Categories of entry in the metadata cache, used for memory accounting
+     */
+    public static enum CacheCategory {
+
+        /**
+         * Metadata for mixin classes, never evicted
+         */
+        MIXIN,
+
+        /**
+         * Metadata for mixin targets and classes modified by mixins, never
+         * evicted
+         */
+        TARGET,
+
+        /**
+         * Metadata which was supplied directly rather than loaded, for
+         * example for generated classes, never evicted since it cannot be
+         * rebuilt
+         */
+        SUPPLIED,
+
+        /**
+         * Metadata loaded for library classes, can be evicted and rebuilt
+         */
+        LIBRARY,
+
+        /**
+         * Negative entries for classes which could not be loaded, can be
+         * evicted
+         */
+        FAILED
+
+    }
+
+    /**
+     * Snapshot of the metadata cache memory accounting
+     */
+    public static final class MemoryStats {
+
+        private final int[] counts;
+        private final long[] bytes;
+        private final long evictions;
+
+        MemoryStats(int[] counts, long[] bytes, long evictions) {
+            this.counts = counts;
+            this.bytes = bytes;
+            this.evictions = evictions;
+        }
+
+        /**
+         * Get the number of cache entries in the specified category
+         */
+        public int getCount(CacheCategory category) {
+            return this.counts[category.ordinal()];
+        }
+
+        /**
+         * Get the approximate number of bytes retained by the cache entries in
+         * the specified category. This is an estimate based on the number and
+         * size of members and frames and does not account for sharing.
+         */
+        public long getRetainedBytes(CacheCategory category) {
+            return this.bytes[category.ordinal()];
+        }
+
+        /**
+         * Get the total number of entries evicted from the cache
+         */
+        public long getEvictions() {
+            return this.evictions;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (CacheCategory category : CacheCategory.values()) {
+                sb.append(String.format("%s=%d (~%dKB), ", category.name().toLowerCase(Locale.ROOT), this.getCount(category),
+                        this.getRetainedBytes(category) / 1024));
+            }
+            return sb.append(this.evictions).append(" evicted").toString();
+        }
+
+    }
+
+    /**
+     * Snapshot of the metadata cache counters
+     */
+    public static final class CacheStats {
+
+        private final int size;
+        private final long hits, misses, failures, loadTime;
+
+        CacheStats(int size, long hits, long misses, long failures, long loadTime) {
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.failures = failures;
+            this.loadTime = loadTime;
+        }
+
+        /**
+         * Get the number of entries in the cache, including negative entries
+         */
+        public int getSize() {
+            return this.size;
+        }
+
+        /**
+         * Get the number of lookups which were satisfied from the cache
+         */
+        public long getHits() {
+            return this.hits;
+        }
+
+        /**
+         * Get the number of lookups which caused the class to be loaded
+         */
+        public long getMisses() {
+            return this.misses;
+        }
+
+        /**
+         * Get the number of loads which failed and were cached as negative
+         * results
+         */
+        public long getFailures() {
+            return this.failures;
+        }
+
+        /**
+         * Get the total time spent loading class metadata, in milliseconds
+         */
+        public long getLoadTime() {
+            return this.loadTime;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d entries, %d hits, %d misses, %d failed, %dms loading", this.size, this.hits, this.misses, this.failures,
+                    this.loadTime);
+        }
+
+    }
+
+    /**
+     * Key for a memoised hierarchy lookup
+     */
+    static final class LookupKey {
+
+        private final String name, desc;
+        private final SearchType searchType;
+        private final Traversal traversal;
+        private final int flags;
+        private final Type type;
+        private final int hashCode;
+
+        LookupKey(String name, String desc, SearchType searchType, Traversal traversal, int flags, Type type) {
+            this.name = name;
+            this.desc = desc;
+            this.searchType = searchType;
+            this.traversal = traversal;
+            this.flags = flags;
+            this.type = type;
+            this.hashCode = Arrays.hashCode(new Object[] { name, desc, searchType, traversal, flags, type });
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof LookupKey)) {
+                return false;
+            }
+            LookupKey other = (LookupKey)obj;
+            return this.hashCode == other.hashCode && this.name.equals(other.name) && this.desc.equals(other.desc)
+                    && this.searchType == other.searchType && this.traversal == other.traversal && this.flags == other.flags
+                    && this.type == other.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+
+    }
+
+    /**
+     * Ancestor closures for a single class, as seen by a superclass search
+     * with {@link Traversal#NONE}. Maps each ancestor name to the class which
+     * the search would return for that name, in search order. Valid only for
+     * the hierarchy generation it was created in.
+     */
+    static final class Ancestors {
+
+        final int generation;
+
+        volatile Map<String, ClassInfo> superClasses, superClassesAndInterfaces;
+
+        Ancestors(int generation) {
+            this.generation = generation;
+        }
+
+    }
+
+    /**
+     * Memoised common superclass results, valid only for the hierarchy
+     * generation it was created in
+     */
+    static final class CommonSuperClasses {
+
+        final int generation;
+
+        final Map<String, ClassInfo> results = new ConcurrentHashMap<String, ClassInfo>();
+
+        CommonSuperClasses(int generation) {
+            this.generation = generation;
+        }
+
+    }
+
+    /**
+     * Memoised hierarchy lookups for a single class, valid only while the
+     * lookup stamp of the class hierarchy matches the one it was created with
+     */
+    static final class LookupCache {
+
+        /**
+         * Marker for lookups which did not resolve a member
+         */
+        static final Object NOT_FOUND = new Object();
+
+        final int stamp;
+
+        final Map<LookupKey, Object> results = new ConcurrentHashMap<LookupKey, Object>();
+
+        LookupCache(int stamp) {
+            this.stamp = stamp;
+        }
+
+    }
+
+    /**
+     * Entry in the metadata cache. The first thread to resolve an entry
+     * performs the load, concurrent requests for the same class wait for the
+     * result rather than loading the class again. A <tt>null</tt> result is
+     * retained so that failed lookups are not retried.
+     */
+    static final class CacheEntry {
+
+        private final String name;
+
+        private volatile boolean resolved;
+
+        private ClassInfo info;
+
+        /**
+         * Value of the access tick when this entry was last used, races when
+         * updating this are harmless since it is only used to order eviction
+         */
+        private long lastAccess;
+
+        CacheEntry(String name) {
+            this.name = name;
+        }
+
+        CacheEntry(ClassInfo info) {
+            this.name = info.getName();
+            this.info = info;
+            this.resolved = true;
+        }
+
+        ClassInfo get() {
+            if (this.resolved) {
+                ClassInfo.cacheHits.incrementAndGet();
+                return this.info;
+            }
+
+            synchronized (this) {
+                if (!this.resolved) {
+                    ClassInfo.cacheMisses.incrementAndGet();
+                    ClassInfo info = ClassInfo.load(this.name);
+                    // Loading on this thread may have re-entered and already
+                    // resolved the entry, in which case the first result wins
+                    if (!this.resolved) {
+                        this.info = info;
+                        this.resolved = true;
+                    }
+                } else {
+                    ClassInfo.cacheHits.incrementAndGet();
+                }
+                return this.info;
+            }
+        }
+
+        ClassInfo getIfResolved() {
+            return this.resolved ? this.info : null;
+        }
+
+        void touch() {
+            this.lastAccess = ClassInfo.accessTick;
+        }
+
+        CacheCategory getCategory() {
+            return this.info != null ? this.info.getCacheCategory() : CacheCategory.FAILED;
+        }
+
+        boolean isEvictable() {
+            if (!this.resolved) {
+                return false;
+            }
+            CacheCategory category = this.getCategory();
+            return category == CacheCategory.LIBRARY || category == CacheCategory.FAILED;
+        }
+
+    }
+
     private static final ILogger logger = MixinService.getService().getLogger("mixin");
     
     private static final Profiler profiler = Profiler.getProfiler("meta");
@@ -682,12 +1031,48 @@ public final class ClassInfo {
      * Loading and parsing classes is expensive, so keep a cache of all the
      * information we generate
      */
-    private static final Map<String, ClassInfo> cache = new HashMap<String, ClassInfo>();
+    private static final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+
+    /**
+     * Cache counters
+     */
+    private static final AtomicLong cacheHits = new AtomicLong(), cacheMisses = new AtomicLong(), cacheFailures = new AtomicLong(),
+            cacheLoadTime = new AtomicLong(), cacheEvictions = new AtomicLong();
+
+    /**
+     * Coarse clock used to order cache entries for eviction, advanced each
+     * time an entry is added to the cache
+     */
+    private static volatile long accessTick;
+
+    /**
+     * Set while the cache is being trimmed so that only one thread trims at
+     * a time
+     */
+    private static final AtomicBoolean trimming = new AtomicBoolean();
+
+    /**
+     * Incremented whenever a change is made to the shape of the hierarchy (an
+     * interface or mixin is added to a class), invalidates all memoised
+     * ancestor closures and common superclass results
+     */
+    private static final AtomicInteger hierarchyGeneration = new AtomicInteger();
+
+    /**
+     * Maximum number of memoised common superclass results
+     */
+    private static final int MAX_COMMON_SUPER_CLASSES = 4096;
+
+    /**
+     * Memoised common superclass results, discarded when the hierarchy
+     * changes or the cache grows beyond {@link #MAX_COMMON_SUPER_CLASSES}
+     */
+    private static volatile CommonSuperClasses commonSuperClasses = new CommonSuperClasses(0);
 
     private static final ClassInfo OBJECT = new ClassInfo();
 
     static {
-        ClassInfo.cache.put(ClassInfo.JAVA_LANG_OBJECT, ClassInfo.OBJECT);
+        ClassInfo.cache.put(ClassInfo.JAVA_LANG_OBJECT, new CacheEntry(ClassInfo.OBJECT));
     }
 
     /**
@@ -736,6 +1121,35 @@ public final class ClassInfo {
      */
     private final Set<Field> fields;
 
+    /**
+     * Methods in this class indexed by name. Members which have been renamed
+     * are indexed under both their original and current names.
+     */
+    private final Map<String, Member[]> methodIndex = new ConcurrentHashMap<String, Member[]>();
+
+    /**
+     * Fields in this class indexed by name, as for {@link #methodIndex}
+     */
+    private final Map<String, Member[]> fieldIndex = new ConcurrentHashMap<String, Member[]>();
+
+    /**
+     * Memoised ancestor closures for this class, see {@link Ancestors}
+     */
+    private volatile Ancestors ancestors;
+
+    /**
+     * Memoised hierarchy lookup results, only used when the
+     * hierarchyLookupCache tunable is enabled
+     */
+    private volatile LookupCache lookups;
+
+    /**
+     * Incremented whenever a change is made to this class after it was
+     * created which could affect the result of a hierarchy lookup, see
+     * {@link #getLookupStamp}
+     */
+    private final AtomicInteger lookupStamp = new AtomicInteger();
+
     /**
      * Mixins which target this class
      */
@@ -745,7 +1159,7 @@ public final class ClassInfo {
      * Map of mixin types to corresponding supertypes, to avoid repeated
      * lookups
      */
-    private final Map<ClassInfo, ClassInfo> correspondingTypes = new HashMap<ClassInfo, ClassInfo>();
+    private final Map<ClassInfo, ClassInfo> correspondingTypes = new ConcurrentHashMap<ClassInfo, ClassInfo>();
 
     /**
      * Mixin info if this class is a mixin itself
@@ -772,22 +1186,40 @@ public final class ClassInfo {
     /**
      * Superclass reference, not initialised until required
      */
-    private ClassInfo superClass;
+    private volatile ClassInfo superClass;
 
     /**
      * Outer class reference, not initialised until required
      */
-    private ClassInfo outerClass;
+    private volatile ClassInfo outerClass;
     
     /**
      * Class signature, lazy-loaded where possible
      */
     private ClassSignature signature;
 
+    /**
+     * True if this class was loaded without method bodies, frames for its
+     * methods are loaded on demand
+     */
+    private final boolean skeleton;
+
     /**
      * Mixins which have been applied this class
      */
-    private Set<MixinInfo> appliedMixins;
+    private volatile Set<MixinInfo> appliedMixins;
+
+    /**
+     * True if this info was loaded by {@link #load} and can therefore be
+     * rebuilt if it is evicted from the cache
+     */
+    private volatile boolean loaded;
+
+    /**
+     * True if members or interfaces have been added to this class by mixins,
+     * such classes are never evicted from the cache
+     */
+    private volatile boolean modified;
     
     /**
      * Declared nest host
@@ -808,6 +1240,7 @@ public final class ClassInfo {
         this.outerName = null;
         this.isInner = false;
         this.isProbablyStatic = true;
+        this.skeleton = false;
         this.initialisers = ImmutableSet.<Method>of(
             new Method("<init>", "()V")
         );
@@ -825,6 +1258,9 @@ public final class ClassInfo {
             new Method("finalize", "()V")
         );
         this.fields = Collections.<Field>emptySet();
+        for (Method method : this.methods) {
+            ClassInfo.addToIndex(this.methodIndex, method.getOriginalName(), method);
+        }
         this.isInterface = false;
         this.interfaces = Collections.<String>emptySet();
         this.access = Opcodes.ACC_PUBLIC;
@@ -840,18 +1276,29 @@ public final class ClassInfo {
      * @param classNode Class node to inspect
      */
     private ClassInfo(ClassNode classNode) {
+        this(classNode, false);
+    }
+
+    /**
+     * Initialise a ClassInfo from the supplied {@link ClassNode}
+     *
+     * @param classNode Class node to inspect
+     * @param skeleton True if the class node was read without method bodies
+     */
+    private ClassInfo(ClassNode classNode, boolean skeleton) {
         Section timer = ClassInfo.profiler.begin(Profiler.ROOT, "class.meta");
         try {
             this.name = classNode.name;
+            this.skeleton = skeleton;
             this.superName = classNode.superName != null ? classNode.superName : ClassInfo.JAVA_LANG_OBJECT;
-            this.initialisers = new HashSet<Method>();
-            this.methods = new HashSet<Method>();
-            this.fields = new HashSet<Field>();
+            this.initialisers = ConcurrentHashMap.<Method>newKeySet();
+            this.methods = ConcurrentHashMap.<Method>newKeySet();
+            this.fields = ConcurrentHashMap.<Field>newKeySet();
             this.isInterface = ((classNode.access & Opcodes.ACC_INTERFACE) != 0);
-            this.interfaces = new HashSet<String>();
+            this.interfaces = ConcurrentHashMap.<String>newKeySet();
             this.isMixin = classNode instanceof MixinClassNode;
             this.mixin = this.isMixin ? ((MixinClassNode)classNode).getMixin() : null;
-            this.mixins = this.isMixin ? Collections.<MixinInfo>emptySet() : new HashSet<MixinInfo>();
+            this.mixins = this.isMixin ? Collections.<MixinInfo>emptySet() : ConcurrentHashMap.<MixinInfo>newKeySet();
 
             this.interfaces.addAll(classNode.interfaces);
 
@@ -874,7 +1321,7 @@ public final class ClassInfo {
                     }
                 }
 
-                this.fields.add(new Field(field, this.isMixin));
+                this.addMember(this.fields, new Field(field, this.isMixin));
             }
 
             this.isProbablyStatic = isProbablyStatic;
@@ -911,13 +1358,14 @@ public final class ClassInfo {
 
     private ClassInfo(Class<?> cls) {
         this.name = getName(cls);
+        this.skeleton = false;
         this.superName = cls.getSuperclass() != null ? getName(cls.getSuperclass()) : ClassInfo.JAVA_LANG_OBJECT;
-        this.initialisers = new HashSet<Method>();
-        this.methods = new HashSet<Method>();
-        this.fields = new HashSet<Field>();
+        this.initialisers = ConcurrentHashMap.<Method>newKeySet();
+        this.methods = ConcurrentHashMap.<Method>newKeySet();
+        this.fields = ConcurrentHashMap.<Field>newKeySet();
         this.isInterface = cls.isInterface();
         Class<?>[] interfaces = cls.getInterfaces();
-        this.interfaces = new HashSet<String>(interfaces.length);
+        this.interfaces = ConcurrentHashMap.<String>newKeySet();
         this.isMixin = false;
         this.mixin = null;
         this.mixins = Collections.emptySet();
@@ -939,7 +1387,7 @@ public final class ClassInfo {
                 continue;
             }
 
-            this.methods.add(new Method(method.getName(), org.objectweb.asm.Type.getMethodDescriptor(method), method.getModifiers()));
+            this.addMember(this.methods, new Method(method.getName(), org.objectweb.asm.Type.getMethodDescriptor(method), method.getModifiers()));
         }
 
         for (java.lang.reflect.Field field : cls.getDeclaredFields()) {
@@ -947,7 +1395,7 @@ public final class ClassInfo {
                 continue;
             }
 
-            this.fields.add(new Field(field.getName(), org.objectweb.asm.Type.getDescriptor(field.getType()), field.getModifiers()));
+            this.addMember(this.fields, new Field(field.getName(), org.objectweb.asm.Type.getDescriptor(field.getType()), field.getModifiers()));
         }
 
         this.isProbablyStatic = cls.getEnclosingClass() == null || Modifier.isStatic(cls.getModifiers());
@@ -963,20 +1411,192 @@ public final class ClassInfo {
     }
 
     void addInterface(String iface) {
+        this.modified = true;
         this.interfaces.add(iface);
         this.getSignature().addInterface(iface);
+        this.invalidateLookups();
+        ClassInfo.hierarchyGeneration.incrementAndGet();
     }
 
     void addMethod(MethodNode method) {
+        this.modified = true;
         this.addMethod(method, true);
+        this.invalidateLookups();
+    }
+
+    private static List<FrameData> gatherFrames(MethodNode method) {
+        List<FrameData> frames = new ArrayList<FrameData>();
+        for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
+            AbstractInsnNode insn = iter.next();
+            if (insn instanceof FrameNode) {
+                frames.add(new FrameData(method.instructions.indexOf(insn), (FrameNode)insn, Bytecode.getFirstNonArgLocalIndex(method)));
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Load frames for methods of this class which were read as a skeleton.
+     * The class is read again with method bodies, if this fails the methods
+     * are given empty frame lists.
+     */
+    void loadFrames() {
+        ClassNode classNode = null;
+        try {
+            classNode = MixinService.getService().getBytecodeProvider().getClassNode(this.name, true, ClassInfo.getReaderFlags());
+        } catch (Exception ex) {
+            ClassInfo.logger.catching(Level.TRACE, ex);
+            ClassInfo.logger.warn("Error loading frames for class: {} ({}: {})", this.name, ex.getClass().getName(), ex.getMessage());
+        }
+        this.resolveFrames(classNode);
+    }
+
+    /**
+     * Fill in pending frames from the supplied class node, which must be the
+     * same class this info was read from but with method bodies, read with
+     * the same reader flags as a class which is not read as a skeleton
+     *
+     * @param classNode class node to read frames from, or <tt>null</tt> to
+     *      give pending methods empty frame lists
+     */
+    private synchronized void resolveFrames(ClassNode classNode) {
+        Map<String, MethodNode> methodNodes = new HashMap<String, MethodNode>();
+        if (classNode != null) {
+            for (MethodNode method : classNode.methods) {
+                methodNodes.put(method.name.concat(method.desc), method);
+            }
+        }
+        
+        for (Set<Method> methods : ImmutableList.<Set<Method>>of(this.methods, this.initialisers)) {
+            for (Method method : methods) {
+                if (!method.framesPending) {
+                    continue;
+                }
+                MethodNode methodNode = methodNodes.get(method.getOriginalName().concat(method.getOriginalDesc()));
+                method.setFrames(methodNode != null ? ClassInfo.gatherFrames(methodNode) : new ArrayList<FrameData>());
+            }
+        }
     }
 
     private void addMethod(MethodNode method, boolean injected) {
         if (method.name.startsWith("<")) {
             this.initialisers.add(new Method(method, injected));
         } else {
-            this.methods.add(new Method(method, injected));
+            this.addMember(this.methods, new Method(method, injected));
+        }
+    }
+
+    private <M extends Member> void addMember(Set<M> members, M member) {
+        if (members.add(member)) {
+            ClassInfo.addToIndex(this.getIndex(member), member.getOriginalName(), member);
+        }
+    }
+
+    private Map<String, Member[]> getIndex(Member member) {
+        return member.type == Type.METHOD ? this.methodIndex : this.fieldIndex;
+    }
+
+    /**
+     * Callback from {@link Member#renameTo} to update the member index. Only
+     * members which belong to this class are re-indexed, members which are
+     * copies (eg. those returned for interface and mixin lookups) are
+     * ignored.
+     */
+    void onMemberRenamed(Member member, String previousName) {
+        this.invalidateLookups();
+        Map<String, Member[]> index = this.getIndex(member);
+        String originalName = member.getOriginalName();
+        if (!ClassInfo.isIndexed(index, originalName, member)) {
+            return;
+        }
+        if (!previousName.equals(originalName)) {
+            ClassInfo.removeFromIndex(index, previousName, member);
+        }
+        if (!member.getName().equals(originalName)) {
+            ClassInfo.addToIndex(index, member.getName(), member);
+        }
+    }
+
+    private static boolean isIndexed(Map<String, Member[]> index, String name, Member member) {
+        Member[] bucket = index.get(name);
+        if (bucket != null) {
+            for (Member indexed : bucket) {
+                if (indexed == member) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void addToIndex(Map<String, Member[]> index, String name, Member member) {
+        while (true) {
+            Member[] bucket = index.get(name);
+            if (bucket == null) {
+                if (index.putIfAbsent(name, new Member[] { member }) == null) {
+                    return;
+                }
+                continue;
+            }
+            Member[] updated = Arrays.copyOf(bucket, bucket.length + 1);
+            updated[bucket.length] = member;
+            if (index.replace(name, bucket, updated)) {
+                return;
+            }
+        }
+    }
+
+    private static void removeFromIndex(Map<String, Member[]> index, String name, Member member) {
+        while (true) {
+            Member[] bucket = index.get(name);
+            if (bucket == null) {
+                return;
+            }
+            List<Member> remaining = new ArrayList<Member>(bucket.length);
+            for (Member indexed : bucket) {
+                if (indexed != member) {
+                    remaining.add(indexed);
+                }
+            }
+            if (remaining.size() == bucket.length) {
+                return;
+            }
+            boolean updated = remaining.isEmpty() ? index.remove(name, bucket)
+                    : index.replace(name, bucket, remaining.toArray(new Member[remaining.size()]));
+            if (updated) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Add interfaces and merged methods and fields from a previously
+     * transformed copy of this class. Used when the result of applying mixins is taken from the
+     * transform cache, so that the metadata matches what applying the mixins
+     * would have produced.
+     *
+     * @param classNode Transformed class
+     */
+    void addTransformedMembers(ClassNode classNode) {
+        this.modified = true;
+        for (String iface : classNode.interfaces) {
+            if (!this.interfaces.contains(iface)) {
+                this.addInterface(iface);
+            }
+        }
+
+        for (MethodNode method : classNode.methods) {
+            if (Annotations.getVisible(method, MixinMerged.class) != null) {
+                this.addMethod(method, true);
+            }
+        }
+
+        for (FieldNode field : classNode.fields) {
+            if (Annotations.getVisible(field, MixinMerged.class) != null) {
+                this.addMember(this.fields, new Field(field, true));
+            }
         }
+        this.invalidateLookups();
     }
 
     /**
@@ -987,16 +1607,24 @@ public final class ClassInfo {
             throw new IllegalArgumentException("Cannot add target " + this.name + " for " + mixin.getClassName() + " because the target is a mixin");
         }
         this.mixins.add(mixin);
+        this.invalidateLookups();
+        ClassInfo.hierarchyGeneration.incrementAndGet();
     }
     
     /**
      * Add a mixin which has been applied to this class
      */
     void addAppliedMixin(MixinInfo mixin) {
-        if (this.appliedMixins == null) {
-            this.appliedMixins = new HashSet<MixinInfo>(); 
+        Set<MixinInfo> appliedMixins = this.appliedMixins;
+        if (appliedMixins == null) {
+            synchronized (this) {
+                if (this.appliedMixins == null) {
+                    this.appliedMixins = ConcurrentHashMap.<MixinInfo>newKeySet();
+                }
+                appliedMixins = this.appliedMixins;
+            }
         }
-        this.appliedMixins.add(mixin);
+        appliedMixins.add(mixin);
     }
 
     /**
@@ -1010,7 +1638,8 @@ public final class ClassInfo {
      * Get all mixins which have been successfully applied to this class
      */
     public Set<IMixinInfo> getAppliedMixins() {
-        return this.appliedMixins != null ? Collections.<IMixinInfo>unmodifiableSet(this.appliedMixins) : Collections.<IMixinInfo>emptySet();
+        Set<MixinInfo> appliedMixins = this.appliedMixins;
+        return appliedMixins != null ? Collections.<IMixinInfo>unmodifiableSet(appliedMixins) : Collections.<IMixinInfo>emptySet();
     }
     
     /**
@@ -1471,6 +2100,9 @@ public final class ClassInfo {
      * @return Matched superclass or null if not found
      */
     public ClassInfo findSuperClass(String superClass, Traversal traversal) {
+        if (traversal == Traversal.NONE) {
+            return this.getAncestors(false).get(superClass);
+        }
         return this.findSuperClass(superClass, traversal, false, new HashSet<String>());
     }
     
@@ -1488,8 +2120,65 @@ public final class ClassInfo {
             return null;
         }
         
+        if (traversal == Traversal.NONE) {
+            return this.getAncestors(includeInterfaces).get(superClass);
+        }
         return this.findSuperClass(superClass, traversal, includeInterfaces, new HashSet<String>());
     }
+
+    /**
+     * Get the memoised ancestor closure for this class, computing it if it is
+     * not available for the current hierarchy generation. The closure is
+     * built in the same order as {@link #findSuperClass} searches, so the
+     * first match for each name is the one retained.
+     */
+    private Map<String, ClassInfo> getAncestors(boolean includeInterfaces) {
+        int generation = ClassInfo.hierarchyGeneration.get();
+        Ancestors ancestors = this.ancestors;
+        if (ancestors == null || ancestors.generation != generation) {
+            this.ancestors = ancestors = new Ancestors(generation);
+        }
+        
+        Map<String, ClassInfo> closure = includeInterfaces ? ancestors.superClassesAndInterfaces : ancestors.superClasses;
+        if (closure == null) {
+            closure = new LinkedHashMap<String, ClassInfo>();
+            ClassInfo superClassInfo = this.getSuperClass();
+            if (superClassInfo != null) {
+                for (ClassInfo superTarget : superClassInfo.getTargets()) {
+                    ClassInfo.putIfAbsent(closure, superTarget.getName(), superClassInfo);
+                    for (Map.Entry<String, ClassInfo> entry : superTarget.getAncestors(includeInterfaces).entrySet()) {
+                        ClassInfo.putIfAbsent(closure, entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            if (includeInterfaces) {
+                this.collectInterfaces(closure);
+            }
+            closure = Collections.<String, ClassInfo>unmodifiableMap(closure);
+            if (includeInterfaces) {
+                ancestors.superClassesAndInterfaces = closure;
+            } else {
+                ancestors.superClasses = closure;
+            }
+        }
+        return closure;
+    }
+
+    private void collectInterfaces(Map<String, ClassInfo> closure) {
+        for (String ifaceName : this.getInterfaces()) {
+            ClassInfo iface = ClassInfo.forName(ifaceName);
+            ClassInfo.putIfAbsent(closure, ifaceName, iface);
+            if (iface != null) {
+                iface.collectInterfaces(closure);
+            }
+        }
+    }
+
+    private static void putIfAbsent(Map<String, ClassInfo> closure, String name, ClassInfo info) {
+        if (!closure.containsKey(name)) {
+            closure.put(name, info);
+        }
+    }
     
     private ClassInfo findSuperClass(String superClass, Traversal traversal, boolean includeInterfaces, Set<String> traversed) {
         ClassInfo superClassInfo = this.getSuperClass();
@@ -1566,7 +2255,9 @@ public final class ClassInfo {
         ClassInfo correspondingType = this.correspondingTypes.get(mixin);
         if (correspondingType == null) {
             correspondingType = this.findSuperTypeForMixin(mixin);
-            this.correspondingTypes.put(mixin, correspondingType);
+            if (correspondingType != null) {
+                this.correspondingTypes.put(mixin, correspondingType);
+            }
         }
         return correspondingType;
     }
@@ -1748,7 +2439,7 @@ public final class ClassInfo {
      * @return the method object or null if the method could not be resolved
      */
     public Method findMethodInHierarchy(String name, String desc, SearchType searchType, Traversal traversal, int flags) {
-        return this.findInHierarchy(name, desc, searchType, traversal, flags, Type.METHOD);
+        return this.findInHierarchyCached(name, desc, searchType, traversal, flags, Type.METHOD);
     }
 
     /**
@@ -1846,7 +2537,76 @@ public final class ClassInfo {
      * @return the field object or null if the field could not be resolved
      */
     public Field findFieldInHierarchy(String name, String desc, SearchType searchType, Traversal traversal, int flags) {
-        return this.findInHierarchy(name, desc, searchType, traversal, flags, Type.FIELD);
+        return this.findInHierarchyCached(name, desc, searchType, traversal, flags, Type.FIELD);
+    }
+
+    /**
+     * Finds a member in the hierarchy, using the memoised result if the
+     * hierarchyLookupCache tunable is enabled and no members, interfaces or
+     * mixins have been added or renamed in this class, its mixins or its
+     * ancestors since the result was computed
+     */
+    @SuppressWarnings("unchecked")
+    private <M extends Member> M findInHierarchyCached(String name, String desc, SearchType searchType, Traversal traversal, int flags,
+            Type type) {
+        if (!MixinEnvironment.getCurrentEnvironment().getOption(Option.HIERARCHY_LOOKUP_CACHE)) {
+            return this.findInHierarchy(name, desc, searchType, traversal, flags, type);
+        }
+        
+        int stamp = this.getLookupStamp();
+        LookupCache lookups = this.lookups;
+        if (lookups == null || lookups.stamp != stamp) {
+            this.lookups = lookups = new LookupCache(stamp);
+        }
+        
+        LookupKey key = new LookupKey(name, desc, searchType, traversal, flags, type);
+        Object result = lookups.results.get(key);
+        if (result == null) {
+            M member = this.findInHierarchy(name, desc, searchType, traversal, flags, type);
+            lookups.results.put(key, member != null ? member : LookupCache.NOT_FOUND);
+            return member;
+        }
+        return result != LookupCache.NOT_FOUND ? (M)result : null;
+    }
+
+    /**
+     * Invalidate memoised hierarchy lookups which depend on this class. Only
+     * called for changes made after the class was created, members added
+     * while the class is being read cannot invalidate any existing lookups.
+     */
+    void invalidateLookups() {
+        this.lookupStamp.incrementAndGet();
+    }
+
+    /**
+     * Get the combined lookup stamp of this class, its mixins and its
+     * ancestors and their mixins. Where an ancestor is a mixin its targets are
+     * included as well, since they are searched in its place. Stamps only ever
+     * increase, so the combined stamp changes whenever any class a hierarchy
+     * lookup could visit is changed.
+     */
+    private int getLookupStamp() {
+        int stamp = this.getLocalLookupStamp();
+        for (ClassInfo ancestor : this.getAncestors(true).values()) {
+            if (ancestor == null) {
+                continue;
+            }
+            stamp += ancestor.getLocalLookupStamp();
+            if (ancestor.mixin != null) {
+                for (ClassInfo target : ancestor.mixin.getTargets()) {
+                    stamp += target.getLocalLookupStamp();
+                }
+            }
+        }
+        return stamp;
+    }
+
+    private int getLocalLookupStamp() {
+        int stamp = this.lookupStamp.get();
+        for (MixinInfo mixin : this.mixins) {
+            stamp += mixin.getClassInfo().lookupStamp.get();
+        }
+        return stamp;
     }
 
     /**
@@ -2024,11 +2784,12 @@ public final class ClassInfo {
      */
     @SuppressWarnings("unchecked")
     private <M extends Member> M findMember(String name, String desc, int flags, Type memberType) {
-        Set<M> members = (Set<M>)(memberType == Type.METHOD ? this.methods : this.fields);
-
-        for (M member : members) {
-            if (member.equals(name, desc) && member.matchesFlags(flags)) {
-                return member;
+        Member[] candidates = (memberType == Type.METHOD ? this.methodIndex : this.fieldIndex).get(name);
+        if (candidates != null) {
+            for (Member member : candidates) {
+                if (member.equals(name, desc) && member.matchesFlags(flags)) {
+                    return (M)member;
+                }
             }
         }
         
@@ -2072,18 +2833,37 @@ public final class ClassInfo {
      * @return ClassInfo instance for the supplied classNode
      */
     static ClassInfo fromClassNode(ClassNode classNode) {
-        ClassInfo info = ClassInfo.cache.get(classNode.name);
-        if (info == null) {
-            info = new ClassInfo(classNode);
-            ClassInfo.cache.put(classNode.name, info);
-        }
+        CacheEntry entry = ClassInfo.cache.get(classNode.name);
+        ClassInfo info = entry != null ? entry.get() : null;
+        if (info != null) {
+            return info;
+        }
+
+        // No entry, or a negative entry, replace it with the supplied class
+        CacheEntry newEntry = new CacheEntry(new ClassInfo(classNode));
+        while (true) {
+            if (entry == null) {
+                entry = ClassInfo.cache.putIfAbsent(classNode.name, newEntry);
+                if (entry == null) {
+                    return newEntry.info;
+                }
+            } else if (ClassInfo.cache.replace(classNode.name, entry, newEntry)) {
+                return newEntry.info;
+            } else {
+                entry = ClassInfo.cache.get(classNode.name);
+            }
 
-        return info;
+            info = entry != null ? entry.get() : null;
+            if (info != null) {
+                return info;
+            }
+        }
     }
 
     /**
      * Return a ClassInfo for the specified class name, fetches the ClassInfo
-     * from the cache where possible.
+     * from the cache where possible. If another thread is already loading the
+     * class then this method waits for the result of that load.
      *
      * @param className Binary name of the class to look up
      * @return ClassInfo for the specified class name or null if the specified
@@ -2092,29 +2872,195 @@ public final class ClassInfo {
     public static ClassInfo forName(String className) {
         className = className.replace('.', '/');
 
-        ClassInfo info = ClassInfo.cache.get(className);
-        if (!ClassInfo.cache.containsKey(className)) {
-            try {
-                if (className.startsWith("java/")) { // this would ideally check the platform class loader for other jdk classes, but needs extra api to do so
-                    info = new ClassInfo(Class.forName(className.replace('/', '.'), false, ClassInfo.class.getClassLoader()));
+        CacheEntry entry = ClassInfo.cache.get(className);
+        if (entry == null) {
+            CacheEntry newEntry = new CacheEntry(className);
+            entry = ClassInfo.cache.putIfAbsent(className, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+                ClassInfo.accessTick++;
+                ClassInfo.trimCache();
+            }
+        }
+
+        entry.touch();
+        return entry.get();
+    }
+
+    /**
+     * Get the category of this info for memory accounting and eviction
+     */
+    CacheCategory getCacheCategory() {
+        if (this.isMixin) {
+            return CacheCategory.MIXIN;
+        } else if (this.modified || !this.mixins.isEmpty() || this.appliedMixins != null) {
+            return CacheCategory.TARGET;
+        } else if (!this.loaded) {
+            return CacheCategory.SUPPLIED;
+        }
+        return CacheCategory.LIBRARY;
+    }
+
+    /**
+     * Get the approximate number of bytes retained by this info
+     */
+    long getApproximateSize() {
+        long size = 256 + this.name.length() * 2L;
+        for (String iface : this.interfaces) {
+            size += 48 + iface.length() * 2L;
+        }
+        for (Set<? extends Member> members : ImmutableList.<Set<? extends Member>>of(this.methods, this.initialisers, this.fields)) {
+            for (Member member : members) {
+                size += 96 + (member.getOriginalName().length() + member.getOriginalDesc().length()) * 2L;
+                if (member instanceof Method) {
+                    List<FrameData> frames = ((Method)member).frames;
+                    size += frames != null ? 48 + frames.size() * 40L : 0;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Evict least-recently used library metadata if the cache has grown
+     * beyond the size set by the classInfoCacheSize tunable
+     */
+    private static void trimCache() {
+        int limit = ClassInfo.getCacheLimit();
+        if (limit < 1 || ClassInfo.cache.size() <= limit) {
+            return;
+        }
+        ClassInfo.evict(limit - limit / 4);
+    }
+
+    private static int getCacheLimit() {
+        try {
+            return Integer.parseInt(MixinEnvironment.getCurrentEnvironment().getOptionValue(Option.CLASSINFO_CACHE_SIZE));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Evict all metadata for library classes and failed lookups from the
+     * cache. Metadata for mixins, mixin targets and classes modified by mixins
+     * is always retained. Evicted metadata is reloaded if it is requested
+     * again.
+     *
+     * @return number of entries evicted
+     */
+    public static int evictLibraryClasses() {
+        return ClassInfo.evict(0);
+    }
+
+    private static int evict(int targetSize) {
+        if (!ClassInfo.trimming.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            List<CacheEntry> candidates = new ArrayList<CacheEntry>();
+            for (CacheEntry entry : ClassInfo.cache.values()) {
+                if (entry.isEvictable()) {
+                    candidates.add(entry);
+                }
+            }
+            Collections.sort(candidates, new Comparator<CacheEntry>() {
+                @Override
+                public int compare(CacheEntry a, CacheEntry b) {
+                    return Long.compare(a.lastAccess, b.lastAccess);
+                }
+            });
+
+            int evicted = 0;
+            for (CacheEntry entry : candidates) {
+                if (ClassInfo.cache.size() <= targetSize) {
+                    break;
+                }
+                if (ClassInfo.cache.remove(entry.name, entry)) {
+                    evicted++;
+                }
+            }
+            ClassInfo.cacheEvictions.addAndGet(evicted);
+            return evicted;
+        } finally {
+            ClassInfo.trimming.set(false);
+        }
+    }
+
+    /**
+     * Get a snapshot of the entry counts and approximate retained size of
+     * the metadata cache, by category
+     */
+    public static MemoryStats getMemoryStats() {
+        int[] counts = new int[CacheCategory.values().length];
+        long[] bytes = new long[counts.length];
+        for (CacheEntry entry : ClassInfo.cache.values()) {
+            if (!entry.resolved) {
+                continue;
+            }
+            int category = entry.getCategory().ordinal();
+            counts[category]++;
+            bytes[category] += entry.info != null ? entry.info.getApproximateSize() : 64 + entry.name.length() * 2L;
+        }
+        return new MemoryStats(counts, bytes, ClassInfo.cacheEvictions.get());
+    }
+
+    /**
+     * Load and parse the metadata for the specified class, called when a cache
+     * entry is first resolved
+     *
+     * @param className Binary name of the class to load
+     * @return ClassInfo for the class or null if the class could not be loaded
+     */
+    static ClassInfo load(String className) {
+        long startTime = System.nanoTime();
+        ClassInfo info = null;
+        try {
+            if (className.startsWith("java/")) { // this would ideally check the platform class loader for other jdk classes, but needs extra api to do so
+                info = new ClassInfo(Class.forName(className.replace('/', '.'), false, ClassInfo.class.getClassLoader()));
+                info.loaded = true;
+            } else {
+                ClassInfoSnapshot snapshot = ClassInfoSnapshot.getInstance();
+                ClassNode restored = snapshot != null ? snapshot.restore(className) : null;
+                if (restored != null) {
+                    info = new ClassInfo(restored, true);
                 } else {
-                    int flags = MixinEnvironment.getCurrentEnvironment().getOption(Option.CLASSREADER_EXPAND_FRAMES) ? ClassReader.EXPAND_FRAMES : 0;
+                    boolean skeleton = MixinEnvironment.getCurrentEnvironment().getOption(Option.SKELETON_CLASS_INFO);
+                    int flags = skeleton ? ClassReader.SKIP_CODE : ClassInfo.getReaderFlags();
                     ClassNode classNode = MixinService.getService().getBytecodeProvider().getClassNode(className, true, flags);
-                    info = new ClassInfo(classNode);
+                    info = new ClassInfo(classNode, skeleton);
+                    if (snapshot != null) {
+                        snapshot.record(className, classNode);
+                    }
                 }
-            } catch (Exception ex) {
-                ClassInfo.logger.catching(Level.TRACE, ex);
-                ClassInfo.logger.warn("Error loading class: {} ({}: {})", className, ex.getClass().getName(), ex.getMessage());
-//                ex.printStackTrace();
+                info.loaded = true;
             }
+        } catch (Exception ex) {
+            ClassInfo.logger.catching(Level.TRACE, ex);
+            ClassInfo.logger.warn("Error loading class: {} ({}: {})", className, ex.getClass().getName(), ex.getMessage());
+//            ex.printStackTrace();
+        }
 
-            // Put null in the cache if load failed
-            ClassInfo.cache.put(className, info);
-            ClassInfo.logger.trace("Added class metadata for {} to metadata cache", className);
+        ClassInfo.cacheLoadTime.addAndGet(System.nanoTime() - startTime);
+        if (info == null) {
+            ClassInfo.cacheFailures.incrementAndGet();
         }
+        ClassInfo.logger.trace("Added class metadata for {} to metadata cache", className);
 
         return info;
     }
+
+    private static int getReaderFlags() {
+        return MixinEnvironment.getCurrentEnvironment().getOption(Option.CLASSREADER_EXPAND_FRAMES) ? ClassReader.EXPAND_FRAMES : 0;
+    }
+
+    /**
+     * Get a snapshot of the metadata cache counters
+     */
+    public static CacheStats getCacheStats() {
+        return new CacheStats(ClassInfo.cache.size(), ClassInfo.cacheHits.get(), ClassInfo.cacheMisses.get(), ClassInfo.cacheFailures.get(),
+                TimeUnit.NANOSECONDS.toMillis(ClassInfo.cacheLoadTime.get()));
+    }
     
     /**
      * Return a ClassInfo for the specified type descriptor, fetches the
@@ -2169,7 +3115,8 @@ public final class ClassInfo {
      *      class does not have an entry in the cache
      */
     public static ClassInfo fromCache(String className) {
-        return ClassInfo.cache.get(className.replace('.', '/'));
+        CacheEntry entry = ClassInfo.cache.get(className.replace('.', '/'));
+        return entry != null ? entry.getIfResolved() : null;
     }
 
     /**
@@ -2287,6 +3234,22 @@ public final class ClassInfo {
     }
 
     private static ClassInfo getCommonSuperClass(ClassInfo type1, ClassInfo type2, boolean includeInterfaces) {
+        int generation = ClassInfo.hierarchyGeneration.get();
+        CommonSuperClasses cache = ClassInfo.commonSuperClasses;
+        if (cache.generation != generation || cache.results.size() > ClassInfo.MAX_COMMON_SUPER_CLASSES) {
+            ClassInfo.commonSuperClasses = cache = new CommonSuperClasses(generation);
+        }
+        
+        String key = type1.name + (includeInterfaces ? "|" : ";") + type2.name;
+        ClassInfo commonSuperClass = cache.results.get(key);
+        if (commonSuperClass == null) {
+            commonSuperClass = ClassInfo.computeCommonSuperClass(type1, type2, includeInterfaces);
+            cache.results.put(key, commonSuperClass);
+        }
+        return commonSuperClass;
+    }
+
+    private static ClassInfo computeCommonSuperClass(ClassInfo type1, ClassInfo type2, boolean includeInterfaces) {
         if (type1.hasSuperClass(type2, Traversal.NONE, includeInterfaces)) {
             return type2;
         } else if (type2.hasSuperClass(type1, Traversal.NONE, includeInterfaces)) {
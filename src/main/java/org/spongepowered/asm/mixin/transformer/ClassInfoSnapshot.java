@@ -0,0 +1,571 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.spongepowered.asm.launch.MixinBootstrap;
+import org.spongepowered.asm.logging.ILogger;
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.MixinEnvironment.Option;
+import org.spongepowered.asm.service.IMixinService;
+import org.spongepowered.asm.service.ITransformer;
+import org.spongepowered.asm.service.ITransformerProvider;
+import org.spongepowered.asm.service.MixinService;
+import org.spongepowered.asm.util.asm.ASM;
+import org.spongepowered.asm.util.asm.ClassNodeAdapter;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Persistent snapshot of class metadata, enabled by setting
+ * {@link Option#CLASSINFO_SNAPSHOT} to a file. When metadata is loaded for a
+ * class, the class header and member signatures are recorded along with a
+ * checksum of the class resource. On the next launch the snapshot is mapped
+ * and metadata for classes whose resource is unchanged is restored from the
+ * snapshot instead of parsing and transforming the class. Restored metadata
+ * is equivalent to a skeleton load, method frames are read on demand.
+ * 
+ * <p>Note that the class resource is still read and checksummed on every
+ * lookup in order to validate the record, so the saving is in parsing and
+ * running other transformers over the class, not in I/O.</p>
+ * 
+ * <p>The recorded metadata is taken from the class after other transformers
+ * have run (eg. access wideners), so the snapshot is keyed on a fingerprint
+ * of the Mixin version, the service and side, and the transformers reported
+ * by the service's transformer provider. The whole snapshot is discarded if
+ * the fingerprint changes. Transformers which are not visible to the
+ * provider (for example those applied directly by the class loader) cannot
+ * be detected, the snapshot file should be deleted if these change.</p>
+ * 
+ * <p>The snapshot is written when the process exits. Records which were not
+ * used during the session are carried over from the previous snapshot.</p>
+ */
+final class ClassInfoSnapshot {
+    
+    /**
+     * A recorded class, the checksum and length of the class resource plus
+     * the encoded metadata
+     */
+    static final class Record {
+        
+        final long checksum;
+        
+        final int length;
+        
+        final byte[] data;
+        
+        Record(long checksum, int length, byte[] data) {
+            this.checksum = checksum;
+            this.length = length;
+            this.data = data;
+        }
+        
+    }
+
+    /**
+     * Bump this when the file format changes
+     */
+    private static final int FORMAT_VERSION = 2;
+    
+    private static final int MAGIC = 0x4D434953;
+    
+    private static final ILogger logger = MixinService.getService().getLogger("mixin");
+    
+    private static ClassInfoSnapshot instance;
+    
+    private static boolean initialised;
+    
+    /**
+     * Snapshot file
+     */
+    private final File file;
+    
+    private final IMixinService service;
+    
+    /**
+     * Fingerprint of the environment which produced the recorded metadata,
+     * computed once when the snapshot is opened
+     */
+    private final String fingerprint;
+    
+    /**
+     * Offsets of records in the previous snapshot, by class name
+     */
+    private final Map<String, int[]> index = new ConcurrentHashMap<String, int[]>();
+    
+    /**
+     * Mapped previous snapshot, null if there was no previous snapshot
+     */
+    private final ByteBuffer mapped;
+
+    /**
+     * Records gathered during this session
+     */
+    private final Map<String, Record> records = new ConcurrentHashMap<String, Record>();
+    
+    private final AtomicInteger restored = new AtomicInteger(), recorded = new AtomicInteger();
+    
+    private ClassInfoSnapshot(File file, IMixinService service) {
+        this.file = file;
+        this.service = service;
+        this.fingerprint = ClassInfoSnapshot.getFingerprint(service);
+        this.mapped = this.map();
+    }
+    
+    /**
+     * Get the snapshot for this session, or null if snapshots are not enabled
+     */
+    static synchronized ClassInfoSnapshot getInstance() {
+        if (!ClassInfoSnapshot.initialised) {
+            ClassInfoSnapshot.initialised = true;
+            String path = MixinEnvironment.getCurrentEnvironment().getOptionValue(Option.CLASSINFO_SNAPSHOT);
+            if (!Strings.isNullOrEmpty(path)) {
+                final ClassInfoSnapshot snapshot = new ClassInfoSnapshot(new File(path).getAbsoluteFile(), MixinService.getService());
+                Runtime.getRuntime().addShutdownHook(new Thread("Mixin ClassInfo snapshot") {
+                    @Override
+                    public void run() {
+                        snapshot.write();
+                    }
+                });
+                ClassInfoSnapshot.instance = snapshot;
+            }
+        }
+        return ClassInfoSnapshot.instance;
+    }
+    
+    /**
+     * Restore a skeleton class node for the specified class from the
+     * snapshot, if the class resource is unchanged since it was recorded. The
+     * resource is read in full and checksummed to check this.
+     * 
+     * @param className class name
+     * @return skeleton class node or null if the class is not in the
+     *      snapshot or has changed
+     */
+    ClassNode restore(String className) {
+        int[] location = this.index.get(className);
+        if (location == null) {
+            return null;
+        }
+
+        byte[] data = new byte[location[3]];
+        ByteBuffer buffer = this.mapped.duplicate();
+        buffer.position(location[2]);
+        buffer.get(data);
+        
+        long checksum = ((long)location[0] << 32) | (location[1] & 0xFFFFFFFFL);
+        Record previous = new Record(checksum, location[4], data);
+        byte[] bytes = this.getResourceBytes(className);
+        if (bytes == null || bytes.length != previous.length || ClassInfoSnapshot.checksum(bytes) != previous.checksum) {
+            this.index.remove(className);
+            return null;
+        }
+        
+        try {
+            ClassNode classNode = ClassInfoSnapshot.decode(className, data);
+            this.records.put(className, previous);
+            this.restored.incrementAndGet();
+            return classNode;
+        } catch (IOException ex) {
+            ClassInfoSnapshot.logger.debug("Discarding unreadable snapshot record for {}: {}", className, ex.getMessage());
+            this.index.remove(className);
+            return null;
+        }
+    }
+    
+    /**
+     * Record the metadata for a class which was loaded normally
+     * 
+     * @param className class name
+     * @param classNode class node, only the header and member signatures are
+     *      recorded
+     */
+    void record(String className, ClassNode classNode) {
+        byte[] bytes = this.getResourceBytes(className);
+        if (bytes == null) {
+            return;
+        }
+        try {
+            this.records.put(className, new Record(ClassInfoSnapshot.checksum(bytes), bytes.length, ClassInfoSnapshot.encode(classNode)));
+            this.recorded.incrementAndGet();
+        } catch (IOException ex) {
+            ClassInfoSnapshot.logger.debug("Could not record snapshot for {}: {}", className, ex.getMessage());
+        }
+    }
+    
+    private byte[] getResourceBytes(String className) {
+        InputStream stream = null;
+        try {
+            stream = this.service.getResourceAsStream(className + ".class");
+            return stream != null ? ByteStreams.toByteArray(stream) : null;
+        } catch (IOException ex) {
+            return null;
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ex) {
+                    // ignore
+                }
+            }
+        }
+    }
+    
+    private static long checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+    
+    private static String getFingerprint(IMixinService service) {
+        StringBuilder transformers = new StringBuilder();
+        ITransformerProvider transformerProvider = service.getTransformerProvider();
+        if (transformerProvider != null) {
+            for (ITransformer transformer : transformerProvider.getTransformers()) {
+                transformers.append(transformer.getName()).append(';');
+            }
+        }
+        
+        CRC32 crc = new CRC32();
+        byte[] transformerBytes = transformers.toString().getBytes(StandardCharsets.UTF_8);
+        crc.update(transformerBytes, 0, transformerBytes.length);
+        return String.format("%s/%s/%s/%d/%08x", MixinBootstrap.VERSION, service.getName(), service.getSideName(),
+                ClassInfoSnapshot.FORMAT_VERSION, crc.getValue());
+    }
+    
+    /**
+     * Map the previous snapshot and read its index
+     */
+    private ByteBuffer map() {
+        if (!this.file.isFile()) {
+            return null;
+        }
+        
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(this.file, "r");
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            
+            int magic = buffer.getInt();
+            int indexLength = buffer.getInt();
+            byte[] indexData = new byte[indexLength];
+            buffer.get(indexData);
+            int dataStart = buffer.position();
+            
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(indexData));
+            if (magic != ClassInfoSnapshot.MAGIC || !this.fingerprint.equals(in.readUTF())) {
+                ClassInfoSnapshot.logger.info("Ignoring ClassInfo snapshot {} from a different environment", this.file);
+                return null;
+            }
+            
+            for (int count = in.readInt(); count > 0; count--) {
+                String name = in.readUTF();
+                long checksum = in.readLong();
+                int length = in.readInt();
+                int offset = in.readInt();
+                int dataLength = in.readInt();
+                this.index.put(name, new int[] { (int)(checksum >>> 32), (int)checksum, dataStart + offset, dataLength, length });
+            }
+            ClassInfoSnapshot.logger.debug("Mapped ClassInfo snapshot {} with {} classes", this.file, this.index.size());
+            return buffer;
+        } catch (IOException ex) {
+            ClassInfoSnapshot.logger.warn("Could not read ClassInfo snapshot {}: {}", this.file, ex.getMessage());
+            this.index.clear();
+            return null;
+        } catch (RuntimeException ex) {
+            ClassInfoSnapshot.logger.warn("Corrupt ClassInfo snapshot {}: {}", this.file, ex.getMessage());
+            this.index.clear();
+            return null;
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ex) {
+                    // ignore, the mapping remains valid
+                }
+            }
+        }
+    }
+    
+    /**
+     * Write the snapshot, carrying over records from the previous snapshot
+     * which were not used this session
+     */
+    synchronized void write() {
+        List<String> names = new ArrayList<String>(this.records.keySet());
+        List<Record> records = new ArrayList<Record>();
+        for (String name : names) {
+            records.add(this.records.get(name));
+        }
+        
+        if (this.mapped != null) {
+            for (Map.Entry<String, int[]> entry : this.index.entrySet()) {
+                if (this.records.containsKey(entry.getKey())) {
+                    continue;
+                }
+                int[] location = entry.getValue();
+                byte[] data = new byte[location[3]];
+                ByteBuffer buffer = this.mapped.duplicate();
+                buffer.position(location[2]);
+                buffer.get(data);
+                names.add(entry.getKey());
+                records.add(new Record(((long)location[0] << 32) | (location[1] & 0xFFFFFFFFL), location[4], data));
+            }
+        }
+        
+        File tempFile = null;
+        try {
+            ByteArrayOutputStream index = new ByteArrayOutputStream();
+            DataOutputStream indexOut = new DataOutputStream(index);
+            indexOut.writeUTF(this.fingerprint);
+            indexOut.writeInt(records.size());
+            int offset = 0;
+            for (int i = 0; i < records.size(); i++) {
+                Record record = records.get(i);
+                indexOut.writeUTF(names.get(i));
+                indexOut.writeLong(record.checksum);
+                indexOut.writeInt(record.length);
+                indexOut.writeInt(offset);
+                indexOut.writeInt(record.data.length);
+                offset += record.data.length;
+            }
+            indexOut.flush();
+            
+            File dir = this.file.getParentFile();
+            if (dir != null && !dir.isDirectory()) {
+                dir.mkdirs();
+            }
+            tempFile = File.createTempFile(this.file.getName(), ".tmp", dir);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                out.writeInt(ClassInfoSnapshot.MAGIC);
+                out.writeInt(index.size());
+                index.writeTo(out);
+                for (Record record : records) {
+                    out.write(record.data);
+                }
+            } finally {
+                out.close();
+            }
+            
+            try {
+                Files.move(tempFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tempFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tempFile = null;
+            ClassInfoSnapshot.logger.debug("Wrote ClassInfo snapshot {} with {} classes ({} restored, {} recorded this session)", this.file,
+                    records.size(), this.restored.get(), this.recorded.get());
+        } catch (IOException ex) {
+            ClassInfoSnapshot.logger.warn("Could not write ClassInfo snapshot {}: {}", this.file, ex.getMessage());
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+    
+    /**
+     * Encode the header and member signatures of the supplied class
+     */
+    private static byte[] encode(ClassNode classNode) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(classNode.version);
+        out.writeInt(classNode.access);
+        ClassInfoSnapshot.writeString(out, classNode.superName);
+        ClassInfoSnapshot.writeString(out, classNode.signature);
+        ClassInfoSnapshot.writeString(out, classNode.outerClass);
+        ClassInfoSnapshot.writeStrings(out, classNode.interfaces);
+        
+        List<InnerClassNode> innerClasses = new ArrayList<InnerClassNode>();
+        for (InnerClassNode innerClass : classNode.innerClasses) {
+            if (classNode.name.equals(innerClass.name)) {
+                innerClasses.add(innerClass);
+            }
+        }
+        out.writeShort(innerClasses.size());
+        for (InnerClassNode innerClass : innerClasses) {
+            ClassInfoSnapshot.writeString(out, innerClass.outerName);
+            ClassInfoSnapshot.writeString(out, innerClass.innerName);
+            out.writeInt(innerClass.access);
+        }
+        
+        out.writeShort(classNode.fields.size());
+        for (FieldNode field : classNode.fields) {
+            out.writeInt(field.access);
+            out.writeUTF(field.name);
+            out.writeUTF(field.desc);
+            ClassInfoSnapshot.writeAnnotations(out, field.visibleAnnotations);
+        }
+        out.writeShort(classNode.methods.size());
+        for (MethodNode method : classNode.methods) {
+            out.writeInt(method.access);
+            out.writeUTF(method.name);
+            out.writeUTF(method.desc);
+            ClassInfoSnapshot.writeAnnotations(out, method.visibleAnnotations);
+        }
+        
+        ClassInfoSnapshot.writeString(out, ClassNodeAdapter.getNestHostClass(classNode));
+        ClassInfoSnapshot.writeStrings(out, ClassNodeAdapter.getNestMembers(classNode));
+        out.flush();
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Decode a skeleton class node from a record
+     */
+    private static ClassNode decode(String className, byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        ClassNode classNode = new ClassNode(ASM.API_VERSION);
+        classNode.name = className;
+        classNode.version = in.readInt();
+        classNode.access = in.readInt();
+        classNode.superName = ClassInfoSnapshot.readString(in);
+        classNode.signature = ClassInfoSnapshot.readString(in);
+        classNode.outerClass = ClassInfoSnapshot.readString(in);
+        List<String> interfaces = ClassInfoSnapshot.readStrings(in);
+        if (interfaces != null) {
+            classNode.interfaces.addAll(interfaces);
+        }
+        
+        for (int count = in.readUnsignedShort(); count > 0; count--) {
+            String outerName = ClassInfoSnapshot.readString(in);
+            String innerName = ClassInfoSnapshot.readString(in);
+            classNode.innerClasses.add(new InnerClassNode(className, outerName, innerName, in.readInt()));
+        }
+        
+        for (int count = in.readUnsignedShort(); count > 0; count--) {
+            int access = in.readInt();
+            FieldNode field = new FieldNode(ASM.API_VERSION, access, in.readUTF(), in.readUTF(), null, null);
+            field.visibleAnnotations = ClassInfoSnapshot.readAnnotations(in);
+            classNode.fields.add(field);
+        }
+        for (int count = in.readUnsignedShort(); count > 0; count--) {
+            int access = in.readInt();
+            MethodNode method = new MethodNode(ASM.API_VERSION, access, in.readUTF(), in.readUTF(), null, null);
+            method.visibleAnnotations = ClassInfoSnapshot.readAnnotations(in);
+            classNode.methods.add(method);
+        }
+        
+        String nestHost = ClassInfoSnapshot.readString(in);
+        if (nestHost != null) {
+            ClassNodeAdapter.setNestHostClass(classNode, nestHost);
+        }
+        List<String> nestMembers = ClassInfoSnapshot.readStrings(in);
+        if (nestMembers != null) {
+            ClassNodeAdapter.setNestMembers(classNode, nestMembers);
+        }
+        return classNode;
+    }
+    
+    /**
+     * Member annotations are only inspected for presence, so only the
+     * descriptors are retained
+     */
+    private static void writeAnnotations(DataOutputStream out, List<AnnotationNode> annotations) throws IOException {
+        out.writeShort(annotations != null ? annotations.size() : 0);
+        if (annotations != null) {
+            for (AnnotationNode annotation : annotations) {
+                out.writeUTF(annotation.desc);
+            }
+        }
+    }
+    
+    private static List<AnnotationNode> readAnnotations(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        if (count == 0) {
+            return null;
+        }
+        List<AnnotationNode> annotations = new ArrayList<AnnotationNode>(count);
+        for (int i = 0; i < count; i++) {
+            annotations.add(new AnnotationNode(in.readUTF()));
+        }
+        return annotations;
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+    
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeShort(values != null ? values.size() + 1 : 0);
+        if (values != null) {
+            for (String value : values) {
+                out.writeUTF(value);
+            }
+        }
+    }
+    
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        if (count == 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<String>(count - 1);
+        for (int i = 1; i < count; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+    
+}
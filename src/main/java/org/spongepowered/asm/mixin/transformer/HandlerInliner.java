@@ -0,0 +1,259 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+import org.spongepowered.asm.mixin.Debug;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.util.Annotations;
+import org.spongepowered.asm.util.Bytecode;
+
+/**
+ * Inlines the bodies of small injector handlers into their call sites in the
+ * target class once all injectors have been applied. Handlers in large target
+ * methods are frequently not inlined by the JIT, so a trivial handler (a
+ * constant swap or a clamp for example) otherwise costs a real invocation each
+ * time the injection point is reached.
+ * 
+ * <p>Handler arguments are stored into newly allocated locals at the call site
+ * and the handler's own locals are remapped above them. Line numbers from the
+ * handler are retained. Like those of the handler itself they are offset into
+ * the mixin's stratum of the target's <tt>SourceDebugExtension</tt>, so tools
+ * which read the source map resolve them to the mixin source, whereas plain
+ * stack traces report them against the <tt>SourceFile</tt> of the target. The
+ * handler methods themselves are left in the class so that they remain
+ * available to reflection. Only handlers which cannot be overridden (private
+ * or static), contain no exception handlers and are not decorated with
+ * {@link Debug} or {@link Unique} are considered.</p>
+ */
+class HandlerInliner {
+    
+    /**
+     * Target class
+     */
+    private final ClassNode targetClass;
+    
+    HandlerInliner(ClassNode targetClass) {
+        this.targetClass = targetClass;
+    }
+    
+    /**
+     * Inline the specified handler into all of its call sites in the target
+     * class if it is eligible for inlining
+     * 
+     * @param handler handler method
+     * @param threshold maximum code size of handlers to inline
+     * @return number of call sites inlined
+     */
+    int inline(MethodNode handler, int threshold) {
+        if (!this.canInline(handler, threshold)) {
+            return 0;
+        }
+        
+        int count = 0;
+        for (MethodNode method : new ArrayList<MethodNode>(this.targetClass.methods)) {
+            if (method == handler || method.instructions == null) {
+                continue;
+            }
+            
+            List<MethodInsnNode> calls = new ArrayList<MethodInsnNode>();
+            for (AbstractInsnNode insn : method.instructions) {
+                if (insn instanceof MethodInsnNode && this.isCallTo((MethodInsnNode)insn, handler)) {
+                    calls.add((MethodInsnNode)insn);
+                }
+            }
+            
+            for (MethodInsnNode call : calls) {
+                this.inline(method, call, handler);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean canInline(MethodNode handler, int threshold) {
+        if (threshold <= 0 || Bytecode.hasFlag(this.targetClass, Opcodes.ACC_INTERFACE)) {
+            return false;
+        }
+        
+        if (!Bytecode.hasFlag(handler, Opcodes.ACC_STATIC) && !Bytecode.hasFlag(handler, Opcodes.ACC_PRIVATE)) {
+            return false;
+        }
+        
+        if ((handler.access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE | Opcodes.ACC_SYNCHRONIZED)) != 0
+                || handler.instructions == null || handler.instructions.size() == 0
+                || (handler.tryCatchBlocks != null && !handler.tryCatchBlocks.isEmpty())
+                || Annotations.getVisible(handler, Debug.class) != null
+                || Annotations.getVisible(handler, Unique.class) != null
+                || Bytecode.getCodeSize(handler.instructions) > threshold) {
+            return false;
+        }
+        
+        for (AbstractInsnNode insn : handler.instructions) {
+            int opcode = insn.getOpcode();
+            if (opcode == Opcodes.JSR || opcode == Opcodes.RET) {
+                return false;
+            }
+            if (insn instanceof MethodInsnNode && this.isCallTo((MethodInsnNode)insn, handler)) {
+                return false; // recursive
+            }
+        }
+        
+        return true;
+    }
+
+    private boolean isCallTo(MethodInsnNode insn, MethodNode handler) {
+        return insn.owner.equals(this.targetClass.name) && insn.name.equals(handler.name) && insn.desc.equals(handler.desc)
+                && (insn.getOpcode() == Opcodes.INVOKESTATIC) == Bytecode.hasFlag(handler, Opcodes.ACC_STATIC);
+    }
+
+    private void inline(MethodNode method, MethodInsnNode call, MethodNode handler) {
+        boolean isStatic = Bytecode.hasFlag(handler, Opcodes.ACC_STATIC);
+        Type[] args = Type.getArgumentTypes(handler.desc);
+        int base = HandlerInliner.getMaxLocals(method);
+        
+        InsnList insns = new InsnList();
+        
+        // Arguments are on the stack in order, so store them in reverse
+        int[] argIndices = new int[args.length];
+        int pos = isStatic ? 0 : 1;
+        for (int arg = 0; arg < args.length; arg++) {
+            argIndices[arg] = pos;
+            pos += args[arg].getSize();
+        }
+        for (int arg = args.length - 1; arg >= 0; arg--) {
+            insns.add(new VarInsnNode(args[arg].getOpcode(Opcodes.ISTORE), base + argIndices[arg]));
+        }
+        if (!isStatic) {
+            insns.add(new VarInsnNode(Opcodes.ASTORE, base));
+        }
+        
+        Map<LabelNode, LabelNode> labels = new HashMap<LabelNode, LabelNode>();
+        for (AbstractInsnNode insn : handler.instructions) {
+            if (insn instanceof LabelNode) {
+                labels.put((LabelNode)insn, new LabelNode());
+            }
+        }
+        
+        LabelNode end = new LabelNode();
+        for (AbstractInsnNode insn : handler.instructions) {
+            int opcode = insn.getOpcode();
+            if (insn instanceof FrameNode) {
+                continue; // frames are recomputed when the class is written
+            } else if (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN) {
+                // Return value (if any) is left on the stack for the caller
+                if (HandlerInliner.nextRealInsn(insn) != null) {
+                    insns.add(new JumpInsnNode(Opcodes.GOTO, end));
+                }
+            } else if (insn instanceof VarInsnNode) {
+                insns.add(new VarInsnNode(opcode, base + ((VarInsnNode)insn).var));
+            } else if (insn instanceof IincInsnNode) {
+                insns.add(new IincInsnNode(base + ((IincInsnNode)insn).var, ((IincInsnNode)insn).incr));
+            } else {
+                insns.add(insn.clone(labels));
+            }
+        }
+        insns.add(end);
+        
+        // Restore the line number of the call site for the code which follows
+        LineNumberNode line = HandlerInliner.getLineNumber(call);
+        if (line != null) {
+            insns.add(new LineNumberNode(line.line, end));
+        }
+        
+        if (handler.localVariables != null) {
+            if (method.localVariables == null) {
+                method.localVariables = new ArrayList<LocalVariableNode>();
+            }
+            for (LocalVariableNode local : handler.localVariables) {
+                LabelNode start = labels.get(local.start), localEnd = labels.get(local.end);
+                if (start != null && localEnd != null) {
+                    method.localVariables.add(new LocalVariableNode(local.name, local.desc, local.signature, start, localEnd, base + local.index));
+                }
+            }
+        }
+        
+        method.instructions.insertBefore(call, insns);
+        method.instructions.remove(call);
+        method.maxLocals = Math.max(method.maxLocals, base + HandlerInliner.getMaxLocals(handler));
+    }
+    
+    private static AbstractInsnNode nextRealInsn(AbstractInsnNode insn) {
+        for (AbstractInsnNode next = insn.getNext(); next != null; next = next.getNext()) {
+            if (next.getOpcode() >= 0) {
+                return next;
+            }
+        }
+        return null;
+    }
+
+    private static LineNumberNode getLineNumber(AbstractInsnNode insn) {
+        for (AbstractInsnNode prev = insn.getPrevious(); prev != null; prev = prev.getPrevious()) {
+            if (prev instanceof LineNumberNode) {
+                return (LineNumberNode)prev;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the number of local slots used by the specified method. The declared
+     * <tt>maxLocals</tt> is not trusted since injectors may have added locals
+     * without updating it.
+     */
+    private static int getMaxLocals(MethodNode method) {
+        int maxLocals = Math.max(method.maxLocals, Bytecode.getFirstNonArgLocalIndex(method));
+        for (AbstractInsnNode insn : method.instructions) {
+            if (insn instanceof VarInsnNode) {
+                VarInsnNode varInsn = (VarInsnNode)insn;
+                int size = varInsn.getOpcode() == Opcodes.LLOAD || varInsn.getOpcode() == Opcodes.DLOAD
+                        || varInsn.getOpcode() == Opcodes.LSTORE || varInsn.getOpcode() == Opcodes.DSTORE ? 2 : 1;
+                maxLocals = Math.max(maxLocals, varInsn.var + size);
+            } else if (insn instanceof IincInsnNode) {
+                maxLocals = Math.max(maxLocals, ((IincInsnNode)insn).var + 1);
+            }
+        }
+        return maxLocals;
+    }
+    
+}
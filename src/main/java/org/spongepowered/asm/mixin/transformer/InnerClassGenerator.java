@@ -346,7 +346,7 @@ final class InnerClassGenerator implements IClassGenerator {
      * @param targetClass Target class name
      * @param innerClassName Original inner class name
      */
-    void registerInnerClass(MixinInfo owner, ClassInfo targetClass, String innerClassName) {
+    synchronized void registerInnerClass(MixinInfo owner, ClassInfo targetClass, String innerClassName) {
         String coordinate = InnerClassGenerator.innerClassCoordinate(owner, targetClass, innerClassName);
         String uniqueName = this.innerClassNames.get(coordinate);
         if (uniqueName != null) {
@@ -372,7 +372,7 @@ final class InnerClassGenerator implements IClassGenerator {
      * @return BiMap of original (mixin) inner class names to conformed class
      *      names
      */
-    BiMap<String, String> getInnerClasses(MixinInfo owner, String targetName) {
+    synchronized BiMap<String, String> getInnerClasses(MixinInfo owner, String targetName) {
         BiMap<String, String> innerClasses = HashBiMap.<String, String>create();
         for (InnerClassInfo innerClass : this.innerClasses.values()) {
             if (innerClass.getMixin() == owner && targetName.equals(innerClass.getTargetName())) {
@@ -387,7 +387,7 @@ final class InnerClassGenerator implements IClassGenerator {
      *      #generate(java.lang.String, org.objectweb.asm.tree.ClassNode)
      */
     @Override
-    public boolean generate(String name, ClassNode classNode) {
+    public synchronized boolean generate(String name, ClassNode classNode) {
         String ref = name.replace('.', '/');
         InnerClassInfo info = this.innerClasses.get(ref);
         if (info == null) {
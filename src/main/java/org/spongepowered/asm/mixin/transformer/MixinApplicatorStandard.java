@@ -136,7 +136,12 @@ class MixinApplicatorStandard {
         /**
          * Apply injectors from previous pass 
          */
-        INJECT_APPLY
+        INJECT_APPLY,
+        
+        /**
+         * Inline small injector handlers into their call sites, if enabled 
+         */
+        INJECT_INLINE
 
     }
 
@@ -188,6 +193,11 @@ class MixinApplicatorStandard {
      */
     protected final boolean mergeSignatures;
     
+    /**
+     * Inliner for injector handlers
+     */
+    protected final HandlerInliner handlerInliner;
+    
     MixinApplicatorStandard(TargetClassContext context) {
         this.context = context;
         this.targetName = context.getClassName();
@@ -198,6 +208,8 @@ class MixinApplicatorStandard {
         this.mergeSignatures = exporter.isDecompilerActive()
                 && MixinEnvironment.getCurrentEnvironment().getOption(Option.DEBUG_EXPORT_DECOMPILE_MERGESIGNATURES);
         
+        this.handlerInliner = new HandlerInliner(this.targetClass);
+        
         this.auditTrail = MixinService.getService().getAuditTrail();
     }
     
@@ -364,6 +376,13 @@ class MixinApplicatorStandard {
                 }
                 break;
 
+            case INJECT_INLINE:
+                this.processMixins(mixinContexts, (activity, mixin) -> {
+                    activity.next("Inline Handlers");
+                    this.inlineHandlers(mixin);
+                });
+                break;
+
             default:
                 // wat?
                 throw new IllegalStateException("Invalid pass specified " + pass);
@@ -832,6 +851,28 @@ class MixinApplicatorStandard {
         mixin.applyInjections(injectorOrder);
     }
     
+    /**
+     * Inline small handlers of injectors applied in the previous pass into
+     * their call sites, if handler inlining is enabled in the environment of
+     * the mixin
+     * 
+     * @param mixin Mixin being applied
+     */
+    protected void inlineHandlers(MixinTargetContext mixin) {
+        int threshold = MixinApplicatorStandard.getInlineThreshold(mixin.getEnvironment());
+        if (threshold <= 0) {
+            return;
+        }
+        
+        for (MethodNode handler : mixin.getInjectedHandlers()) {
+            int count = this.handlerInliner.inline(handler, threshold);
+            if (count > 0) {
+                this.logger.debug("Inlined handler {}{} from {} at {} call site(s) in {}", handler.name, handler.desc, mixin, count,
+                        this.targetName);
+            }
+        }
+    }
+    
     /**
      * Apply all accessors discovered during preprocessing
      * 
@@ -938,4 +979,12 @@ class MixinApplicatorStandard {
         return null;
     }
     
+    private static int getInlineThreshold(MixinEnvironment environment) {
+        try {
+            return Integer.parseInt(environment.getOptionValue(Option.INLINE_HANDLERS_THRESHOLD));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+    
 }
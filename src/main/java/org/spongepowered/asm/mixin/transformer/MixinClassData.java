@@ -0,0 +1,243 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.ClassNode;
+import org.spongepowered.asm.util.asm.ASM;
+
+/**
+ * Compact representation of a mixin class retained when the
+ * {@link org.spongepowered.asm.mixin.MixinEnvironment.Option#COMPACT_MIXIN_CLASSES
+ * compactMixinClasses} tunable is enabled. Only the class bytecode is kept
+ * permanently, the class tree is re-read from the bytecode on demand and a
+ * bounded number of recently-used trees are kept in a shared cache. Cached
+ * trees are softly referenced so they can also be reclaimed under memory
+ * pressure.
+ */
+final class MixinClassData {
+    
+    /**
+     * Snapshot of compact class data statistics
+     */
+    public static final class Stats {
+        
+        private final int retainedClasses, cachedTrees;
+        private final long retainedBytes, reparses;
+        
+        Stats(int retainedClasses, long retainedBytes, int cachedTrees, long reparses) {
+            this.retainedClasses = retainedClasses;
+            this.retainedBytes = retainedBytes;
+            this.cachedTrees = cachedTrees;
+            this.reparses = reparses;
+        }
+        
+        /**
+         * Get the number of mixin classes currently retained as bytecode
+         */
+        public int getRetainedClasses() {
+            return this.retainedClasses;
+        }
+        
+        /**
+         * Get the total size of the retained bytecode in bytes
+         */
+        public long getRetainedBytes() {
+            return this.retainedBytes;
+        }
+        
+        /**
+         * Get the number of class trees currently held in the cache
+         */
+        public int getCachedTrees() {
+            return this.cachedTrees;
+        }
+        
+        /**
+         * Get the number of times a class tree was re-read from bytecode
+         * because it was not in the cache
+         */
+        public long getReparses() {
+            return this.reparses;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%d classes retained (%d bytes), %d trees cached, %d reparsed", this.retainedClasses, this.retainedBytes,
+                    this.cachedTrees, this.reparses);
+        }
+        
+    }
+    
+    /**
+     * Recently used class trees, in access order
+     */
+    private static final LinkedHashMap<MixinClassData, SoftReference<ClassNode>> cache
+            = new LinkedHashMap<MixinClassData, SoftReference<ClassNode>>(16, 0.75F, true) {
+        
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<MixinClassData, SoftReference<ClassNode>> eldest) {
+            return this.size() > MixinClassData.cacheSize;
+        }
+        
+    };
+    
+    private static final AtomicInteger retainedClasses = new AtomicInteger();
+    
+    private static final AtomicLong retainedBytes = new AtomicLong();
+    
+    private static final AtomicLong reparses = new AtomicLong();
+    
+    /**
+     * Maximum number of trees to keep in the cache
+     */
+    private static volatile int cacheSize = 64;
+    
+    /**
+     * Class name, for diagnostics
+     */
+    private final String name;
+    
+    /**
+     * Retained bytecode
+     */
+    private final byte[] bytes;
+    
+    /**
+     * Flags to use when re-reading the class, these match the flags used when
+     * the class was originally loaded
+     */
+    private final int readerFlags;
+    
+    /**
+     * Class version, retained so that it can be queried without re-reading
+     * the class
+     */
+    private final int version;
+
+    private MixinClassData(ClassNode classNode, byte[] bytes, int readerFlags) {
+        this.name = classNode.name;
+        this.bytes = bytes;
+        this.readerFlags = readerFlags;
+        this.version = classNode.version;
+        MixinClassData.retainedClasses.incrementAndGet();
+        MixinClassData.retainedBytes.addAndGet(bytes.length);
+    }
+    
+    /**
+     * Create compact class data from the supplied tree. The supplied tree is
+     * placed in the cache since it is likely to be used again immediately.
+     * 
+     * @param classNode class tree to compact
+     * @param readerFlags flags the tree was read with
+     * @param cacheSize maximum number of trees to cache
+     * @return compact class data
+     */
+    static MixinClassData of(ClassNode classNode, int readerFlags, int cacheSize) {
+        ClassWriter writer = new ClassWriter(0);
+        classNode.accept(writer);
+        MixinClassData data = new MixinClassData(classNode, writer.toByteArray(), readerFlags);
+        synchronized (MixinClassData.cache) {
+            MixinClassData.cacheSize = Math.max(cacheSize, 0);
+            MixinClassData.cache.put(data, new SoftReference<ClassNode>(classNode));
+        }
+        return data;
+    }
+    
+    /**
+     * Get the retained bytecode. The returned array must not be modified.
+     */
+    byte[] getBytes() {
+        return this.bytes;
+    }
+    
+    /**
+     * Get the class version
+     */
+    int getVersion() {
+        return this.version;
+    }
+    
+    /**
+     * Get the class tree, re-reading it from the retained bytecode if it is
+     * not currently cached. The returned tree is shared and must not be
+     * modified.
+     */
+    ClassNode getClassNode() {
+        synchronized (MixinClassData.cache) {
+            SoftReference<ClassNode> ref = MixinClassData.cache.get(this);
+            ClassNode classNode = ref != null ? ref.get() : null;
+            if (classNode != null) {
+                return classNode;
+            }
+        }
+        
+        ClassNode classNode = new ClassNode(ASM.API_VERSION);
+        new ClassReader(this.bytes).accept(classNode, this.readerFlags);
+        MixinClassData.reparses.incrementAndGet();
+        
+        synchronized (MixinClassData.cache) {
+            MixinClassData.cache.put(this, new SoftReference<ClassNode>(classNode));
+        }
+        return classNode;
+    }
+    
+    /**
+     * Release this class data, called when the owning mixin state is replaced
+     */
+    void release() {
+        synchronized (MixinClassData.cache) {
+            MixinClassData.cache.remove(this);
+        }
+        MixinClassData.retainedClasses.decrementAndGet();
+        MixinClassData.retainedBytes.addAndGet(-this.bytes.length);
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("MixinClassData[%s]", this.name);
+    }
+    
+    /**
+     * Get a snapshot of the current compact class data statistics
+     */
+    static Stats getStats() {
+        int cachedTrees;
+        synchronized (MixinClassData.cache) {
+            cachedTrees = MixinClassData.cache.size();
+        }
+        return new Stats(MixinClassData.retainedClasses.get(), MixinClassData.retainedBytes.get(), cachedTrees, MixinClassData.reparses.get());
+    }
+    
+}
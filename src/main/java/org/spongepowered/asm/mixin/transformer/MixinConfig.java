@@ -28,6 +28,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.Constructor;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -204,9 +205,10 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
     private final transient Map<String, List<MixinInfo>> mixinMapping = new HashMap<String, List<MixinInfo>>();
     
     /**
-     * Targets for this configuration which haven't been mixed yet 
+     * Targets for this configuration which haven't been mixed yet, concurrent
+     * since targets may be handled on any class-loading thread
      */
-    private final transient Set<String> unhandledTargets = new HashSet<String>();
+    private final transient Set<String> unhandledTargets = ConcurrentHashMap.<String>newKeySet();
     
     /**
      * Mixins which have been parsed but not yet prepared 
@@ -848,21 +850,24 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
      * <p>For this reason we will invoke the initialisation on the first call to
      * either the <em>hasMixinsFor()</em> or <em>getMixinsFor()</em> methods.
      * </p>
+     * 
+     * @param extensions transformer extensions
+     * @param executor prepare executor, or null to prepare serially
      */
-    void prepare(Extensions extensions) {
+    void prepare(Extensions extensions, MixinPrepareExecutor executor) {
         if (this.prepared) {
             return;
         }
         this.prepared = true;
         
-        this.prepareMixins("mixins", this.mixinClasses, false, extensions);
+        this.prepareMixins("mixins", this.mixinClasses, false, extensions, executor);
         
         switch (this.env.getSide()) {
             case CLIENT:
-                this.prepareMixins("client", this.mixinClassesClient, false, extensions);
+                this.prepareMixins("client", this.mixinClassesClient, false, extensions, executor);
                 break;
             case SERVER:
-                this.prepareMixins("server", this.mixinClassesServer, false, extensions);
+                this.prepareMixins("server", this.mixinClassesServer, false, extensions, executor);
                 break;
             case UNKNOWN:
                 //$FALL-THROUGH$
@@ -872,16 +877,62 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
         }
     }
     
-    void postInitialise(Extensions extensions) {
+    /**
+     * Begin loading the declared mixin classes for this config on the supplied
+     * executor, ahead of {@link #prepare}
+     * 
+     * @param executor prepare executor
+     */
+    void preload(MixinPrepareExecutor executor) {
+        if (this.prepared) {
+            return;
+        }
+        
+        this.preloadMixins(this.mixinClasses, executor);
+        
+        switch (this.env.getSide()) {
+            case CLIENT:
+                this.preloadMixins(this.mixinClassesClient, executor);
+                break;
+            case SERVER:
+                this.preloadMixins(this.mixinClassesServer, executor);
+                break;
+            default:
+                break;
+        }
+    }
+    
+    private void preloadMixins(List<String> mixinClasses, MixinPrepareExecutor executor) {
+        if (executor == null || mixinClasses == null || Strings.isNullOrEmpty(this.mixinPackage)) {
+            return;
+        }
+        
+        for (String mixinClass : mixinClasses) {
+            String fqMixinClass = this.mixinPackage + mixinClass;
+            if (mixinClass != null && !MixinConfig.globalMixinList.contains(fqMixinClass)) {
+                executor.preload(fqMixinClass, MixinInfo.getReaderFlags(this));
+            }
+        }
+    }
+    
+    void postInitialise(Extensions extensions, MixinPrepareExecutor executor) {
         if (this.plugin != null) {
             List<String> pluginMixins = this.plugin.getMixins();
-            this.prepareMixins("companion plugin", pluginMixins, true, extensions);
+            this.prepareMixins("companion plugin", pluginMixins, true, extensions, executor);
+        }
+        
+        if (executor != null) {
+            executor.validate(this.mixins);
         }
         
         for (Iterator<MixinInfo> iter = this.mixins.iterator(); iter.hasNext();) {
             MixinInfo mixin = iter.next();
             try {
-                mixin.validate();
+                if (executor != null) {
+                    executor.getValidationResult(mixin);
+                } else {
+                    mixin.validate();
+                }
                 for (IListener listener : this.listeners) {
                     listener.onInit(mixin);
                 }
@@ -907,7 +958,8 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
         }
     }
 
-    private void prepareMixins(String collectionName, List<String> mixinClasses, boolean ignorePlugin, Extensions extensions) {
+    private void prepareMixins(String collectionName, List<String> mixinClasses, boolean ignorePlugin, Extensions extensions,
+            MixinPrepareExecutor executor) {
         if (mixinClasses == null) {
             return;
         }
@@ -920,6 +972,8 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
             return;
         }
         
+        this.preloadMixins(mixinClasses, executor);
+        
         for (String mixinClass : mixinClasses) {
             String fqMixinClass = this.mixinPackage + mixinClass;
             
@@ -930,7 +984,7 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
             MixinInfo mixin = null;
             
             try {
-                this.pendingMixins.add(mixin = new MixinInfo(this.service, this, mixinClass, this.plugin, ignorePlugin, extensions));
+                this.pendingMixins.add(mixin = new MixinInfo(this.service, this, mixinClass, this.plugin, ignorePlugin, extensions, executor));
                 MixinConfig.globalMixinList.add(fqMixinClass);
             } catch (InvalidMixinException ex) {
                 if (this.required) {
@@ -1175,6 +1229,13 @@ final class MixinConfig implements Comparable<MixinConfig>, IMixinConfig {
         return this.setSourceFile;
     }
     
+    /**
+     * Get the name of the refmap resource for this config
+     */
+    String getRefMapperConfig() {
+        return this.refMapperConfig;
+    }
+    
     /**
      * Get the reference remapper for injectors
      */
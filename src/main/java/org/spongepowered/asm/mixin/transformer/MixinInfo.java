@@ -26,16 +26,20 @@ package org.spongepowered.asm.mixin.transformer;
 
 import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.spongepowered.asm.logging.Level;
 import org.spongepowered.asm.logging.ILogger;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Handle;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
@@ -120,6 +124,10 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
             super(access, name, desc, signature, exceptions, MixinInfo.this);
         }
         
+        MixinMethodNode(int access, String name, String originalName, String desc, String signature, String[] exceptions) {
+            super(access, name, originalName, desc, signature, exceptions, MixinInfo.this);
+        }
+        
         @Override
         public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
             // Create a shallow copy of the bootstrap method args because the
@@ -160,10 +168,22 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         
         public final List<MixinMethodNode> mixinMethods;
         
+        /**
+         * Prepared tree this node is being copied from, if any. Methods in the
+         * copy take their original names from the corresponding template
+         * methods since the template methods may have been renamed.
+         */
+        private MixinClassNode template;
+        
         MixinClassNode(MixinInfo mixin) {
             this(ASM.API_VERSION);
         }
         
+        MixinClassNode(MixinInfo mixin, MixinClassNode template) {
+            this(ASM.API_VERSION);
+            this.template = template;
+        }
+        
         @SuppressWarnings("unchecked")
         protected MixinClassNode(int api) {
             super(api);
@@ -176,7 +196,8 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         
         @Override
         public MethodVisitor visitMethod(final int access, final String name, final String desc, final String signature, final String[] exceptions) {
-            MethodNode method = new MixinMethodNode(access, name, desc, signature, exceptions);
+            String originalName = this.template != null ? this.template.mixinMethods.get(this.methods.size()).getOriginalName() : name;
+            MethodNode method = new MixinMethodNode(access, name, originalName, desc, signature, exceptions);
             this.methods.add(method);
             return method;
         }
@@ -189,10 +210,17 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
     class State {
         
         /**
-         * Initial ClassNode passed in to the creation of this state object
+         * Initial ClassNode passed in to the creation of this state object,
+         * <tt>null</tt> if the class is retained in compact form
          */
         private final ClassNode classNode;
         
+        /**
+         * Compact class data, retained in place of the class tree when the
+         * compactMixinClasses tunable is enabled
+         */
+        private final MixinClassData classData;
+        
         /**
          * Mixin ClassInfo
          */
@@ -209,6 +237,16 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
          */
         private boolean unique;
 
+        /**
+         * True once the conform step of validation has run
+         */
+        private boolean conformed;
+
+        /**
+         * Exception raised by the conform step, rethrown by validation
+         */
+        private RuntimeException conformError;
+
         /**
          * All interfaces implemented by this mixin, including soft
          * implementations
@@ -230,13 +268,29 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
          * application
          */
         protected MixinClassNode validationClassNode;
+        
+        /**
+         * Tree which has been through the target-independent preparation
+         * pass, used as the template for the trees used for application so
+         * that preparation runs once per mixin rather than once per target.
+         * Softly referenced since it can always be recreated.
+         */
+        private volatile SoftReference<MixinClassNode> preparedClassNode;
 
         State(ClassNode classNode) {
             this(classNode, null);
         }
 
         State(ClassNode classNode, ClassInfo classInfo) {
-            this.classNode = classNode;
+            MixinEnvironment env = MixinInfo.this.parent.getEnvironment();
+            if (env.getOption(Option.COMPACT_MIXIN_CLASSES)) {
+                this.classNode = null;
+                this.classData = MixinClassData.of(classNode, MixinInfo.getReaderFlags(MixinInfo.this.parent),
+                        MixinInfo.parseCacheSize(env.getOptionValue(Option.MIXIN_CLASS_CACHE_SIZE)));
+            } else {
+                this.classNode = classNode;
+                this.classData = null;
+            }
             this.connect();
             this.classInfo = classInfo != null ? classInfo : ClassInfo.fromClassNode(this.getValidationClassNode());
         }
@@ -254,7 +308,29 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         }
         
         ClassNode getClassNode() {
-            return this.classNode;
+            return this.classData != null ? this.classData.getClassNode() : this.classNode;
+        }
+        
+        int getClassVersion() {
+            return this.classData != null ? this.classData.getVersion() : this.classNode.version;
+        }
+        
+        byte[] getClassBytes() {
+            if (this.classData != null) {
+                return this.classData.getBytes().clone();
+            }
+            ClassWriter writer = new ClassWriter(0);
+            this.classNode.accept(writer);
+            return writer.toByteArray();
+        }
+        
+        /**
+         * Release resources held by this state once it is no longer in use
+         */
+        void release() {
+            if (this.classData != null) {
+                this.classData.release();
+            }
         }
 
         MixinClassNode getValidationClassNode() {
@@ -292,10 +368,70 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
          */
         MixinClassNode createClassNode(int flags) {
             MixinClassNode mixinClassNode = new MixinClassNode(MixinInfo.this);
-            this.classNode.accept(mixinClassNode);
+            this.getClassNode().accept(mixinClassNode);
             return mixinClassNode;
         }
 
+        /**
+         * Gets a new tree which has already been through the preparation pass
+         * of the preprocessor for the specified type. The prepared tree is
+         * created on first use and then copied for each subsequent call.
+         *
+         * @param type Mixin Type
+         * @param extensions Transformer extensions
+         * @return Prepared tree
+         */
+        MixinClassNode createPreparedClassNode(SubType type, Extensions extensions) {
+            MixinClassNode template = this.getPreparedClassNode(type, extensions);
+            MixinClassNode mixinClassNode = new MixinClassNode(MixinInfo.this, template);
+            template.accept(mixinClassNode);
+            return mixinClassNode;
+        }
+
+        private MixinClassNode getPreparedClassNode(SubType type, Extensions extensions) {
+            SoftReference<MixinClassNode> ref = this.preparedClassNode;
+            MixinClassNode template = ref != null ? ref.get() : null;
+            if (template != null) {
+                return template;
+            }
+            
+            synchronized (this) {
+                ref = this.preparedClassNode;
+                template = ref != null ? ref.get() : null;
+                if (template == null) {
+                    template = this.createClassNode(0);
+                    type.createPreProcessor(template).prepare(extensions);
+                    this.preparedClassNode = new SoftReference<MixinClassNode>(template);
+                }
+                return template;
+            }
+        }
+
+        /**
+         * Prepares the validation class node and conforms injector handlers
+         * to the target classes. Any exception raised is retained and thrown
+         * by {@link #validate}.
+         * 
+         * @param type Mixin Type
+         * @param targetClasses Mixin's target classes
+         */
+        void conform(SubType type, List<ClassInfo> targetClasses) {
+            if (this.conformed) {
+                return;
+            }
+            
+            this.conformed = true;
+            try {
+                MixinClassNode classNode = this.getValidationClassNode();
+                MixinPreProcessorStandard preProcessor = type.createPreProcessor(classNode).prepare(MixinInfo.this.getExtensions());
+                for (ClassInfo target : targetClasses) {
+                    preProcessor.conform(target);
+                }
+            } catch (RuntimeException ex) {
+                this.conformError = ex;
+            }
+        }
+
         /**
          * Performs pre-flight checks on the mixin
          * 
@@ -303,13 +439,12 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
          * @param targetClasses Mixin's target classes
          */
         void validate(SubType type, List<ClassInfo> targetClasses) {
-            MixinClassNode classNode = this.getValidationClassNode();
-            
-            MixinPreProcessorStandard preProcessor = type.createPreProcessor(classNode).prepare(MixinInfo.this.getExtensions());
-            for (ClassInfo target : targetClasses) {
-                preProcessor.conform(target);
+            this.conform(type, targetClasses);
+            if (this.conformError != null) {
+                throw this.conformError;
             }
             
+            MixinClassNode classNode = this.getValidationClassNode();
             type.validate(this, targetClasses);
 
             this.detachedSuper = type.isDetachedSuper();
@@ -855,6 +990,13 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
      */
     private transient State state;
 
+    /**
+     * Lock held whilst this mixin is being applied to a target, used when
+     * transforming concurrently to prevent the same mixin being applied to two
+     * targets at once
+     */
+    private final transient Lock applyLock = new ReentrantLock();
+
     /**
      * Internal ctor, called by {@link MixinConfig}
      * 
@@ -863,8 +1005,11 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
      * @param plugin mixin config companion plugin handle
      * @param ignorePlugin true to prevent the plugin from filtering targets of
      *      this mixin
+     * @param executor prepare executor which may have preloaded the mixin
+     *      class, can be null
      */
-    MixinInfo(IMixinService service, MixinConfig parent, String name, PluginHandle plugin, boolean ignorePlugin, Extensions extensions) {
+    MixinInfo(IMixinService service, MixinConfig parent, String name, PluginHandle plugin, boolean ignorePlugin, Extensions extensions,
+            MixinPrepareExecutor executor) {
         this.service = service;
         this.parent = parent;
         this.name = name;
@@ -876,7 +1021,7 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         
         // Read the class bytes and transform
         try {
-            ClassNode mixinClassNode = this.loadMixinClass(this.className);
+            ClassNode mixinClassNode = this.loadMixinClass(this.className, executor);
             this.pendingState = new State(mixinClassNode);
             this.info = this.pendingState.getClassInfo();
             this.type = SubType.getTypeFor(this);
@@ -923,6 +1068,19 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         }
     }
 
+    /**
+     * Run the conform step of the validation pass. Conforming assigns handler
+     * names from counters shared by all mixins, so this step must be run
+     * serially and in declaration order for the names to be stable. It is
+     * run by {@link #validate} if it has not been run already, the remainder
+     * of validation only affects this mixin and may be run concurrently.
+     */
+    void conform() {
+        if (this.pendingState != null) {
+            this.pendingState.conform(this.type, this.targetClasses);
+        }
+    }
+
     /**
      * Run validation pass
      */
@@ -931,10 +1089,18 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
             throw new IllegalStateException("No pending validation state for " + this);
         }
         
+        State previous = this.state;
+        boolean valid = false;
         try {
             this.pendingState.validate(this.type, this.targetClasses);
             this.state = this.pendingState;
+            valid = true;
         } finally {
+            if (!valid) {
+                this.pendingState.release();
+            } else if (previous != null) {
+                previous.release();
+            }
             this.pendingState = null;
         }
     }
@@ -1169,8 +1335,7 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
      */
     @Override
     public byte[] getClassBytes() {
-//        return this.getState().getClassBytes();
-        throw new RuntimeException("NO");
+        return this.getState().getClassBytes();
     }
     
     /**
@@ -1286,7 +1451,7 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
     }
 
     int getClassVersion() {
-        return this.getState().getClassNode().version;
+        return this.getState().getClassVersion();
     }
     
     /**
@@ -1296,6 +1461,13 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         return this.extensions;
     }
 
+    /**
+     * Get the lock which guards application of this mixin
+     */
+    Lock getApplyLock() {
+        return this.applyLock;
+    }
+
     /**
      * Get a new mixin target context object for the specified target
      * 
@@ -1303,9 +1475,9 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
      * @return new context
      */
     MixinTargetContext createContextFor(TargetClassContext target) {
-        MixinClassNode classNode = this.getClassNode(ClassReader.EXPAND_FRAMES);
         Section preTimer = this.profiler.begin("pre");
-        MixinTargetContext context = this.type.createPreProcessor(classNode).prepare(this.extensions).createContextFor(target);
+        MixinClassNode classNode = this.getState().createPreparedClassNode(this.type, this.extensions);
+        MixinTargetContext context = this.type.createPreProcessor(classNode).assumePrepared().createContextFor(target);
         preTimer.end();
         return context;
     }
@@ -1317,7 +1489,7 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
      * @return mixin bytecode
      * @throws ClassNotFoundException if the mixin bytes could not be found
      */
-    private ClassNode loadMixinClass(String mixinClassName) throws ClassNotFoundException {
+    private ClassNode loadMixinClass(String mixinClassName, MixinPrepareExecutor executor) throws ClassNotFoundException {
         ClassNode classNode = null;
 
         try {
@@ -1328,8 +1500,10 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
                     this.logger.error("Classloader restrictions [{}] encountered loading {}, name: {}", restrictions, this, mixinClassName);
                 }
             }
-            int readerFlags = this.parent.getEnvironment().getOption(Option.CLASSREADER_EXPAND_FRAMES) ? ClassReader.EXPAND_FRAMES : 0;
-            classNode = this.service.getBytecodeProvider().getClassNode(mixinClassName, true, readerFlags);
+            classNode = executor != null ? executor.getPreloaded(mixinClassName) : null;
+            if (classNode == null) {
+                classNode = this.service.getBytecodeProvider().getClassNode(mixinClassName, true, MixinInfo.getReaderFlags(this.parent));
+            }
         } catch (ClassNotFoundException ex) {
             throw new ClassNotFoundException(String.format("The specified mixin '%s' was not found", mixinClassName));
         } catch (IOException ex) {
@@ -1340,6 +1514,25 @@ class MixinInfo implements Comparable<MixinInfo>, IMixinInfo {
         return classNode;
     }
 
+    /**
+     * Get the ClassReader flags to use when loading mixin classes for the
+     * specified config
+     */
+    static int getReaderFlags(MixinConfig config) {
+        return config.getEnvironment().getOption(Option.CLASSREADER_EXPAND_FRAMES) ? ClassReader.EXPAND_FRAMES : 0;
+    }
+
+    /**
+     * Parse the mixin class cache size option value
+     */
+    private static int parseCacheSize(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException ex) {
+            return 64;
+        }
+    }
+
     /**
      * Updates this mixin with new bytecode
      *
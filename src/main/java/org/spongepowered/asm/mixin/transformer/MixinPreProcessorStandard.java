@@ -200,6 +200,16 @@ class MixinPreProcessorStandard {
         return this;
     }
 
+    /**
+     * Mark this preprocessor as prepared without running the first pass, for
+     * use when the class node was copied from a tree which has already been
+     * through the first pass
+     */
+    final MixinPreProcessorStandard assumePrepared() {
+        this.prepared = true;
+        return this;
+    }
+
     protected void prepareInnerClasses(Extensions extensions) {
         InnerClassGenerator icg = extensions.<InnerClassGenerator>getGenerator(InnerClassGenerator.class);
         for (String targetClassName : this.mixin.getDeclaredTargetClasses()) {
@@ -0,0 +1,187 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.objectweb.asm.tree.ClassNode;
+import org.spongepowered.asm.service.IMixinService;
+
+/**
+ * Runs the expensive, independent parts of the mixin prepare phase on an
+ * executor supplied by the service. Tasks are submitted up-front and their
+ * results are consumed by the prepare phase in declaration order, so the
+ * outcome (including the order of mixins and errors) is the same as preparing
+ * serially.
+ * 
+ * <p>Validation is split in two: the conform step assigns injector handler
+ * names from counters shared by all mixins and so is always run on the calling
+ * thread in declaration order, only the remaining checks (which have no effect
+ * outside the mixin being validated) are run on the executor.</p>
+ */
+final class MixinPrepareExecutor {
+    
+    /**
+     * Service
+     */
+    private final IMixinService service;
+
+    /**
+     * Executor to run tasks on
+     */
+    private final Executor executor;
+    
+    /**
+     * Mixin classes being loaded
+     */
+    private final Map<String, Future<ClassNode>> classes = new HashMap<String, Future<ClassNode>>();
+    
+    /**
+     * Mixins being validated, the future yields the exception thrown by the
+     * validation pass or <tt>null</tt> if validation succeeded
+     */
+    private final Map<MixinInfo, Future<Throwable>> validations = new HashMap<MixinInfo, Future<Throwable>>();
+
+    MixinPrepareExecutor(IMixinService service, Executor executor) {
+        this.service = service;
+        this.executor = executor;
+    }
+    
+    /**
+     * Begin loading the specified mixin class
+     * 
+     * @param className Mixin class name
+     * @param readerFlags ClassReader flags
+     */
+    void preload(final String className, final int readerFlags) {
+        if (this.classes.containsKey(className)) {
+            return;
+        }
+        
+        this.classes.put(className, this.submit(new Callable<ClassNode>() {
+            @Override
+            public ClassNode call() throws Exception {
+                return MixinPrepareExecutor.this.service.getBytecodeProvider().getClassNode(className, true, readerFlags);
+            }
+        }));
+    }
+    
+    /**
+     * Get a mixin class which was preloaded, waiting for it to finish loading
+     * if necessary. If the load failed then <tt>null</tt> is returned and the
+     * caller should load the class itself so that the error is reported in the
+     * usual way.
+     * 
+     * @param className Mixin class name
+     * @return preloaded class or <tt>null</tt>
+     */
+    ClassNode getPreloaded(String className) {
+        Future<ClassNode> future = this.classes.remove(className);
+        if (future == null) {
+            return null;
+        }
+        
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+    
+    /**
+     * Conform the supplied mixins in order and then begin validating them
+     * 
+     * @param mixins Mixins to validate
+     */
+    void validate(Collection<MixinInfo> mixins) {
+        for (MixinInfo mixin : mixins) {
+            mixin.conform();
+        }
+        
+        for (final MixinInfo mixin : mixins) {
+            this.validations.put(mixin, this.submit(new Callable<Throwable>() {
+                @Override
+                public Throwable call() {
+                    try {
+                        mixin.validate();
+                        return null;
+                    } catch (Throwable th) {
+                        return th;
+                    }
+                }
+            }));
+        }
+    }
+    
+    /**
+     * Wait for validation of the specified mixin to complete, throws the
+     * exception raised by the validation pass if validation failed. Mixins
+     * which were not submitted are validated on the calling thread.
+     * 
+     * @param mixin Mixin to get result for
+     */
+    void getValidationResult(MixinInfo mixin) {
+        Future<Throwable> future = this.validations.remove(mixin);
+        if (future == null) {
+            mixin.validate();
+            return;
+        }
+        
+        Throwable th;
+        try {
+            th = future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted whilst validating " + mixin, ex);
+        } catch (ExecutionException ex) {
+            th = ex.getCause();
+        }
+        
+        if (th instanceof RuntimeException) {
+            throw (RuntimeException)th;
+        } else if (th instanceof Error) {
+            throw (Error)th;
+        } else if (th != null) {
+            throw new IllegalStateException(th);
+        }
+    }
+    
+    private <T> Future<T> submit(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<T>(task);
+        this.executor.execute(future);
+        return future;
+    }
+
+}
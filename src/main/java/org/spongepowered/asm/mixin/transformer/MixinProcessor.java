@@ -26,9 +26,16 @@ package org.spongepowered.asm.mixin.transformer;
 
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.spongepowered.asm.logging.Level;
 import org.spongepowered.asm.logging.ILogger;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.ClassNode;
 import org.spongepowered.asm.mixin.Mixin;
@@ -43,6 +50,7 @@ import org.spongepowered.asm.mixin.extensibility.IMixinErrorHandler.ErrorAction;
 import org.spongepowered.asm.mixin.extensibility.IMixinInfo;
 import org.spongepowered.asm.mixin.injection.InjectionPoint;
 import org.spongepowered.asm.mixin.injection.selectors.ITargetSelectorDynamic;
+import org.spongepowered.asm.mixin.injection.struct.MemberInfo;
 import org.spongepowered.asm.mixin.throwables.ClassAlreadyLoadedException;
 import org.spongepowered.asm.mixin.throwables.MixinApplyError;
 import org.spongepowered.asm.mixin.throwables.MixinException;
@@ -62,8 +70,10 @@ import org.spongepowered.asm.service.IMixinAuditTrail;
 import org.spongepowered.asm.service.IMixinService;
 import org.spongepowered.asm.service.MixinService;
 import org.spongepowered.asm.util.Annotations;
+import org.spongepowered.asm.util.Locals;
 import org.spongepowered.asm.util.PrettyPrinter;
 import org.spongepowered.asm.util.ReEntranceLock;
+import org.spongepowered.asm.util.asm.ASM;
 import org.spongepowered.asm.util.perf.Profiler;
 import org.spongepowered.asm.util.perf.Profiler.Section;
 
@@ -159,11 +169,36 @@ class MixinProcessor {
      */
     private final List<MixinConfig> pendingConfigs = new ArrayList<MixinConfig>();
     
+    /**
+     * Index of targets and mixin packages for all prepared configs, rebuilt
+     * each time configs are prepared
+     */
+    private volatile MixinTargetIndex index = MixinTargetIndex.EMPTY;
+    
     /**
      * Re-entrance detector
      */
     private final ReEntranceLock lock;
     
+    /**
+     * Transformer lock. In serial mode all operations take the write lock, in
+     * concurrent mode only config selection takes the write lock and all other
+     * operations take the read lock
+     */
+    private final ReentrantReadWriteLock transformLock = new ReentrantReadWriteLock();
+    
+    /**
+     * Per-target locks, used in concurrent mode to ensure that a given target
+     * class is only transformed by one thread at a time
+     */
+    private final Map<String, Lock> targetLocks = new ConcurrentHashMap<String, Lock>();
+    
+    /**
+     * True if disjoint target classes may be transformed concurrently, see
+     * {@link Option#CONCURRENT_TRANSFORM}
+     */
+    private final boolean concurrent;
+    
     /**
      * Session ID, used as a check when parsing {@link MixinMerged} annotations
      * to prevent them being applied at compile time by people trying to
@@ -181,6 +216,11 @@ class MixinProcessor {
      */
     private final IHotSwap hotSwapper;
     
+    /**
+     * Persistent transform cache, null if not enabled
+     */
+    private final MixinTransformCache transformCache;
+    
     /**
      * Postprocessor for passthrough 
      */
@@ -199,7 +239,7 @@ class MixinProcessor {
     /**
      * Current environment 
      */
-    private MixinEnvironment currentEnvironment;
+    private volatile MixinEnvironment currentEnvironment;
 
     /**
      * Logging level for verbose messages 
@@ -207,23 +247,33 @@ class MixinProcessor {
     private Level verboseLoggingLevel = Level.DEBUG;
 
     /**
-     * Handling an error state, do not process further mixins
+     * Handling an error state, do not process further mixins. Error handlers
+     * run on the thread which raised the error so this state is per-thread
      */
-    private boolean errorState = false;
+    private final ThreadLocal<Boolean> errorState = new ThreadLocal<Boolean>() {
+        @Override
+        protected Boolean initialValue() {
+            return Boolean.FALSE;
+        }
+    };
     
     /**
      * Number of classes transformed in the current phase
      */
-    private int transformedCount = 0;
+    private final AtomicInteger transformedCount = new AtomicInteger();
 
     /**
      * ctor 
      */
-    MixinProcessor(MixinEnvironment environment, Extensions extensions, IHotSwap hotSwapper, MixinCoprocessorNestHost nestHostCoprocessor) {
+    MixinProcessor(MixinEnvironment environment, Extensions extensions, IHotSwap hotSwapper, MixinCoprocessorNestHost nestHostCoprocessor,
+            MixinTransformCache transformCache) {
         this.lock = this.service.getReEntranceLock();
+        this.concurrent = environment.getOption(Option.CONCURRENT_TRANSFORM);
         
         this.extensions = extensions;
         this.hotSwapper = hotSwapper;
+        // Mixins can change under a hot-swap agent so the cache cannot be used
+        this.transformCache = hotSwapper == null ? transformCache : null;
         
         this.coprocessors.add(new MixinCoprocessorPassthrough());
         this.coprocessors.add(new MixinCoprocessorAccessor(this.sessionId));
@@ -265,11 +315,63 @@ class MixinProcessor {
         
         if (environment.getOption(Option.DEBUG_PROFILER)) {
             Profiler.printAuditSummary();
+            auditLogger.info("ClassInfo cache: {}", ClassInfo.getCacheStats());
+            auditLogger.info("ClassInfo memory: {}", ClassInfo.getMemoryStats());
+            auditLogger.info("Selector parse cache: {}", MemberInfo.getParseCacheStats());
+            if (environment.getOption(Option.COMPACT_MIXIN_CLASSES)) {
+                auditLogger.info("Mixin class data: {}", MixinClassData.getStats());
+            }
         }
     }
 
-    synchronized boolean applyMixins(MixinEnvironment environment, String name, ClassNode targetClassNode) {
-        if (name == null || this.errorState) {
+    /**
+     * Acquire the transformer lock for the current thread. In concurrent mode
+     * this also performs config selection (under the write lock) if selection
+     * is required, since selection cannot be performed under the shared lock.
+     * The returned lock must be released by the caller.
+     * 
+     * @param environment Current environment
+     * @return the lock which was acquired
+     */
+    Lock lockTransformer(MixinEnvironment environment) {
+        if (!this.concurrent) {
+            Lock writeLock = this.transformLock.writeLock();
+            writeLock.lock();
+            return writeLock;
+        }
+        
+        // A thread which already holds the read lock cannot upgrade, but a
+        // re-entrant thread cannot select anyway
+        if (this.transformLock.getReadHoldCount() == 0 && this.isSelectRequired(environment)) {
+            Lock writeLock = this.transformLock.writeLock();
+            writeLock.lock();
+            try {
+                if (this.lock.getDepth() == 0) {
+                    this.checkSelect(environment);
+                }
+            } catch (Exception ex) {
+                throw new MixinException(ex);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        
+        Lock readLock = this.transformLock.readLock();
+        readLock.lock();
+        return readLock;
+    }
+
+    boolean applyMixins(MixinEnvironment environment, String name, ClassNode targetClassNode) {
+        return this.applyMixins(environment, name, targetClassNode, null);
+    }
+
+    /**
+     * Apply mixins to the supplied target class, if a transform cache entry is
+     * supplied then it is marked as applied if mixins are applied to the class
+     * without errors
+     */
+    boolean applyMixins(MixinEnvironment environment, String name, ClassNode targetClassNode, MixinTransformCache.Entry cacheEntry) {
+        if (name == null || this.errorState.get().booleanValue()) {
             return false;
         }
         
@@ -300,17 +402,8 @@ class MixinProcessor {
                 return transformed;
             }
 
-            MixinConfig packageOwnedByConfig = null;
-            
-            for (MixinConfig config : this.configs) {
-                if (config.packageMatch(name)) {
-                    int packageLen = packageOwnedByConfig != null ? packageOwnedByConfig.getMixinPackage().length() : 0;
-                    if (config.getMixinPackage().length() > packageLen) {
-                        packageOwnedByConfig = config;
-                    }
-                    continue;
-                }
-            }                
+            MixinTargetIndex index = this.index;
+            MixinConfig packageOwnedByConfig = index.getPackageOwner(name);
 
             if (packageOwnedByConfig != null) {
                 // AMS - Temp passthrough for injection points and dynamic selectors. Moving to service in 0.9
@@ -322,19 +415,13 @@ class MixinProcessor {
                 throw new IllegalClassLoadError(this.getInvalidClassError(name, targetClassNode, packageOwnedByConfig));
             }
 
-            SortedSet<MixinInfo> mixins = null;
-            for (MixinConfig config : this.configs) {
-                if (config.hasMixinsFor(name)) {
-                    if (mixins == null) {
-                        mixins = new TreeSet<MixinInfo>();
-                    }
-                    
-                    // Get and sort mixins for the class
-                    mixins.addAll(config.getMixinsFor(name));
-                }
-            }
+            List<MixinInfo> targetMixins = index.getMixinsFor(name);
             
-            if (mixins != null) {
+            if (targetMixins != null) {
+                // Mixins which fail to apply are removed from the set, so the
+                // applicator gets its own copy of the (already sorted) list
+                SortedSet<MixinInfo> mixins = new TreeSet<MixinInfo>(targetMixins);
+
                 // Re-entrance is "safe" as long as we don't need to apply any mixins, if there are mixins then we need to panic now
                 if (locked) {
                     ReEntrantTransformerError error = new ReEntrantTransformerError("Re-entrance error.");
@@ -346,6 +433,7 @@ class MixinProcessor {
                     this.hotSwapper.registerTargetClass(name, targetClassNode);
                 }
 
+                List<Lock> applyLocks = this.lockTarget(name, mixins);
                 try {
                     TargetClassContext context = new TargetClassContext(environment, this.extensions, this.sessionId, name, targetClassNode, mixins);
                     context.applyMixins();
@@ -359,12 +447,19 @@ class MixinProcessor {
                     for (InvalidMixinException suppressed : context.getSuppressedExceptions()) {
                         this.handleMixinApplyError(context.getClassName(), suppressed, environment);
                     }
+                    
+                    if (cacheEntry != null && context.getSuppressedExceptions().isEmpty()) {
+                        cacheEntry.setApplied();
+                    }
 
-                    this.transformedCount++;
+                    this.transformedCount.incrementAndGet();
                     transformed = true;
                 } catch (InvalidMixinException th) {
                     this.dumpClassOnFailure(name, targetClassNode, environment);
                     this.handleMixinApplyError(name, th, environment);
+                } finally {
+                    MixinProcessor.unlockAll(applyLocks);
+                    Locals.releaseGeneratedLocalVariableTables(targetClassNode.name);
                 }
             } else {
                 // No mixins, but still need to run postProcess stage of coprocessors
@@ -385,12 +480,12 @@ class MixinProcessor {
         return transformed;
     }
 
-    synchronized boolean couldTransformClass(MixinEnvironment environment, String name) {
+    boolean couldTransformClass(MixinEnvironment environment, String name) {
         if (environment != MixinEnvironment.getCurrentEnvironment()) {
             throw new MixinException("Current environment must match the supplied environment");
         }
 
-        if (name == null || this.errorState) {
+        if (name == null || this.errorState.get().booleanValue()) {
             return false;
         }
         
@@ -401,21 +496,11 @@ class MixinProcessor {
                 return true;
             }
 
-            for (MixinConfig config : this.configs) {
-                if (config.packageMatch(name)) {
-                    // If the class is in a mixin package, it may be transformed
-                    return true;
-                }
-            }
-
-            for (MixinConfig config : this.configs) {
-                if (config.hasMixinsFor(name)) {
-                    // If any config has mixins for the class, it may be transformed
-                    return true;
-                }
-            }
-
-            return false;
+            MixinTargetIndex index = this.index;
+            
+            // If the class is in a mixin package, or any config has mixins for
+            // the class, it may be transformed
+            return index.getPackageOwner(name) != null || index.hasMixinsFor(name);
         } finally {
             this.lock.pop();
         }
@@ -432,7 +517,8 @@ class MixinProcessor {
                     throw error;
                 }
             }
-        } else {
+        } else if (!this.concurrent) {
+            // In concurrent mode selection is handled when acquiring the lock
             try {
                 this.checkSelect(environment);
             } catch (Exception ex) {
@@ -443,6 +529,124 @@ class MixinProcessor {
         
         return locked;
     }
+    
+    /**
+     * In concurrent mode, lock the specified target and then the mixins which
+     * are to be applied to it. Mixins are always locked in their natural order
+     * so that threads transforming targets with common mixins cannot deadlock.
+     * 
+     * @param name Target class name
+     * @param mixins Mixins to apply to the target
+     * @return locks acquired, in the order they were acquired
+     */
+    private List<Lock> lockTarget(String name, Collection<MixinInfo> mixins) {
+        if (!this.concurrent) {
+            return Collections.<Lock>emptyList();
+        }
+        
+        Lock targetLock = this.targetLocks.get(name);
+        if (targetLock == null) {
+            Lock newLock = new ReentrantLock();
+            targetLock = this.targetLocks.putIfAbsent(name, newLock);
+            if (targetLock == null) {
+                targetLock = newLock;
+            }
+        }
+        
+        List<Lock> locks = new ArrayList<Lock>(mixins.size() + 1);
+        targetLock.lock();
+        locks.add(targetLock);
+        for (MixinInfo mixin : mixins) {
+            Lock mixinLock = mixin.getApplyLock();
+            mixinLock.lock();
+            locks.add(mixinLock);
+        }
+        return locks;
+    }
+    
+    private static void unlockAll(List<Lock> locks) {
+        for (int index = locks.size() - 1; index >= 0; index--) {
+            locks.get(index).unlock();
+        }
+    }
+
+    /**
+     * Look up the supplied target class in the transform cache. On a cache hit
+     * the side-effects of applying the mixins are replayed, and the returned
+     * entry contains the cached transformed bytes. On a miss the returned entry
+     * should be passed to {@link #applyMixins} and then to
+     * {@link #storeTransformCache} with the transformed bytes.
+     * 
+     * @param environment Current environment
+     * @param name Class transformed name
+     * @param classBytes Untransformed class bytes
+     * @return cache entry or <tt>null</tt> if the transform cache is disabled
+     *      or the class cannot be cached
+     */
+    MixinTransformCache.Entry lookupTransformCache(MixinEnvironment environment, String name, byte[] classBytes) {
+        if (this.transformCache == null || name == null || this.errorState.get().booleanValue() || this.lock.getDepth() > 0) {
+            return null;
+        }
+        
+        List<MixinInfo> mixins = this.index.getMixinsFor(name);
+        if (mixins == null || mixins.isEmpty()) {
+            return null;
+        }
+        
+        Section timer = this.profiler.begin("cache");
+        try {
+            MixinTransformCache.Entry entry = this.transformCache.lookup(environment, name, classBytes, mixins);
+            if (entry != null && entry.getCachedBytes() != null) {
+                List<Lock> applyLocks = this.lockTarget(name, mixins);
+                try {
+                    this.applyCached(environment, entry, classBytes);
+                } finally {
+                    MixinProcessor.unlockAll(applyLocks);
+                }
+            }
+            return entry;
+        } finally {
+            timer.end();
+        }
+    }
+    
+    /**
+     * Store transformed bytes for an entry previously returned by
+     * {@link #lookupTransformCache}
+     */
+    void storeTransformCache(MixinTransformCache.Entry entry, byte[] transformedBytes) {
+        if (entry != null && this.transformCache != null) {
+            this.transformCache.store(entry, transformedBytes);
+        }
+    }
+    
+    private void applyCached(MixinEnvironment environment, MixinTransformCache.Entry entry, byte[] classBytes) {
+        String name = entry.getName();
+        ClassNode classNode = this.transformCache.load(entry, this.sessionId);
+        
+        ClassInfo targetInfo = ClassInfo.fromCache(name);
+        if (targetInfo == null) {
+            ClassNode originalClassNode = new ClassNode(ASM.API_VERSION);
+            new ClassReader(classBytes).accept(originalClassNode, 0);
+            targetInfo = ClassInfo.fromClassNode(originalClassNode);
+        }
+        targetInfo.addTransformedMembers(classNode);
+        
+        for (MixinInfo mixin : entry.getMixins()) {
+            MixinProcessor.logger.log(mixin.getLoggingLevel(), "Mixing {} from {} into {} (cached)", mixin.getName(), mixin.getParent(), name);
+            try {
+                mixin.postApply(name, classNode);
+            } catch (Exception ex) {
+                throw new MixinTransformerError("An unexpected critical error was encountered", ex);
+            }
+            if (this.auditTrail != null) {
+                this.auditTrail.onApply(name, mixin.toString());
+            }
+        }
+        
+        this.extensions.export(environment, name, false, classNode);
+        this.transformedCount.incrementAndGet();
+    }
 
     private String getInvalidClassError(String name, ClassNode targetClassNode, MixinConfig ownedByConfig) {
         if (ownedByConfig.getClasses().contains(name)) {
@@ -480,22 +684,26 @@ class MixinProcessor {
         return targets;
     }
 
-    private void checkSelect(MixinEnvironment environment) {
+    private boolean isSelectRequired(MixinEnvironment environment) {
         if (this.currentEnvironment != environment) {
-            this.select(environment);
-            return;
+            return true;
         }
         
         int unvisitedCount = Mixins.getUnvisitedCount();
-        if (unvisitedCount > 0 && this.transformedCount == 0) {
+        return unvisitedCount > 0 && this.transformedCount.get() == 0;
+    }
+
+    private void checkSelect(MixinEnvironment environment) {
+        if (this.isSelectRequired(environment)) {
             this.select(environment);
         }
     }
 
     private void select(MixinEnvironment environment) {
         this.verboseLoggingLevel = (environment.getOption(Option.DEBUG_VERBOSE)) ? Level.INFO : Level.DEBUG;
-        if (this.transformedCount > 0) {
-            MixinProcessor.logger.log(this.verboseLoggingLevel, "Ending {}, applied {} mixins", this.currentEnvironment, this.transformedCount);
+        int transformedCount = this.transformedCount.get();
+        if (transformedCount > 0) {
+            MixinProcessor.logger.log(this.verboseLoggingLevel, "Ending {}, applied {} mixins", this.currentEnvironment, transformedCount);
         }
         String action = this.currentEnvironment == environment ? "Checking for additional" : "Preparing";
         MixinProcessor.logger.log(this.verboseLoggingLevel, "{} mixins for {}", action, environment);
@@ -508,7 +716,7 @@ class MixinProcessor {
         this.extensions.select(environment);
         int totalMixins = this.prepareConfigs(environment, this.extensions);
         this.currentEnvironment = environment;
-        this.transformedCount = 0;
+        this.transformedCount.set(0);
 
         prepareTimer.end();
         
@@ -581,10 +789,20 @@ class MixinProcessor {
             }
         }
         
+        Executor executor = this.service.getPrepareExecutor();
+        MixinPrepareExecutor prepareExecutor = executor != null ? new MixinPrepareExecutor(this.service, executor) : null;
+        if (prepareExecutor != null) {
+            // Start loading mixin classes for all configs up-front, configs are
+            // still prepared in order below
+            for (MixinConfig config : this.pendingConfigs) {
+                config.preload(prepareExecutor);
+            }
+        }
+        
         for (MixinConfig config : this.pendingConfigs) {
             try {
                 MixinProcessor.logger.log(this.verboseLoggingLevel, "Preparing {} ({})", config, config.getDeclaredMixinCount());
-                config.prepare(extensions);
+                config.prepare(extensions, prepareExecutor);
                 totalMixins += config.getMixinCount();
             } catch (InvalidMixinException ex) {
                 this.handleMixinPrepareError(config, ex, environment);
@@ -612,7 +830,7 @@ class MixinProcessor {
 
         for (MixinConfig config : this.pendingConfigs) {
             try {
-                config.postInitialise(this.extensions);
+                config.postInitialise(this.extensions, prepareExecutor);
             } catch (InvalidMixinException ex) {
                 this.handleMixinPrepareError(config, ex, environment);
             } catch (Exception ex) {
@@ -624,6 +842,7 @@ class MixinProcessor {
         this.configs.addAll(this.pendingConfigs);
         Collections.sort(this.configs);
         this.pendingConfigs.clear();
+        this.index = new MixinTargetIndex(this.configs);
         
         return totalMixins;
     }
@@ -637,7 +856,7 @@ class MixinProcessor {
     }
 
     private void handleMixinError(String context, InvalidMixinException ex, MixinEnvironment environment, ErrorPhase errorPhase) throws Error {
-        this.errorState = true;
+        this.errorState.set(Boolean.TRUE);
         
         IMixinInfo mixin = ex.getMixin();
         
@@ -679,7 +898,7 @@ class MixinProcessor {
         
         MixinProcessor.logger.log(action.logLevel, errorPhase.getLogMessage(context, ex, mixin), ex);
         
-        this.errorState = false;
+        this.errorState.set(Boolean.FALSE);
 
         if (action == ErrorAction.ERROR) {
             throw new MixinApplyError(errorPhase.getErrorMessage(mixin, config, phase), ex);
@@ -153,6 +153,11 @@ public class MixinTargetContext extends ClassContext implements IMixinContext {
      */
     private final List<InjectionInfo> injectors = new ArrayList<InjectionInfo>();
 
+    /**
+     * Handler methods of injectors which were successfully applied
+     */
+    private final List<MethodNode> injectedHandlers = new ArrayList<MethodNode>();
+
     /**
      * Accessor method list
      */
@@ -1475,6 +1480,9 @@ public class MixinTargetContext extends ClassContext implements IMixinContext {
             for (InjectionInfo injectInfo : injectors) {
                 postInjectActivity.next(injectInfo.toString());
                 injectInfo.postInject();
+                if (injectInfo.getInjectedCallbackCount() > 0) {
+                    this.injectedHandlers.add(injectInfo.getMethod());
+                }
             }
 
             applyActivity.end();
@@ -1488,6 +1496,13 @@ public class MixinTargetContext extends ClassContext implements IMixinContext {
         }
     }
 
+    /**
+     * Get the handler methods of injectors applied by this mixin
+     */
+    List<MethodNode> getInjectedHandlers() {
+        return Collections.<MethodNode>unmodifiableList(this.injectedHandlers);
+    }
+
     /**
      * Expand accessor methods mixed into the target class by populating the
      * method bodies
@@ -0,0 +1,197 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Index of mixin targets and mixin packages across all prepared configs. The
+ * index is rebuilt whenever configs are prepared so that deciding whether a
+ * class is a mixin target, or belongs to a mixin package, does not require
+ * visiting every config each time a class is loaded.
+ */
+final class MixinTargetIndex {
+
+    /**
+     * Node in the mixin package trie. Children are matched against regions of
+     * the class name in place, so that walking the trie does not allocate.
+     */
+    static final class PackageNode {
+
+        /**
+         * Package segment of this node, empty for the root
+         */
+        final String segment;
+
+        /**
+         * Child packages
+         */
+        final List<PackageNode> children = new ArrayList<PackageNode>();
+
+        /**
+         * Config which owns this package, if any
+         */
+        MixinConfig owner;
+
+        PackageNode(String segment) {
+            this.segment = segment;
+        }
+
+        /**
+         * Get the child whose segment matches the specified region of the
+         * supplied name
+         * 
+         * @param name name containing the segment
+         * @param offset start of the segment in the name
+         * @param length length of the segment
+         * @return matching child or <tt>null</tt> if there is no such child
+         */
+        PackageNode getChild(String name, int offset, int length) {
+            for (int i = 0; i < this.children.size(); i++) {
+                PackageNode child = this.children.get(i);
+                if (child.segment.length() == length && name.regionMatches(offset, child.segment, 0, length)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+    }
+
+    /**
+     * Empty index, used before any configs are prepared
+     */
+    static final MixinTargetIndex EMPTY = new MixinTargetIndex(Collections.<MixinConfig>emptyList());
+
+    /**
+     * Mixins for each target class, sorted in application order
+     */
+    private final Map<String, List<MixinInfo>> targets = new HashMap<String, List<MixinInfo>>();
+
+    /**
+     * Root of the mixin package trie
+     */
+    private final PackageNode packages = new PackageNode("");
+
+    /**
+     * Build a new index from the supplied configs, configs are expected to be
+     * supplied in priority order
+     * 
+     * @param configs configs to index
+     */
+    MixinTargetIndex(List<MixinConfig> configs) {
+        Map<String, SortedSet<MixinInfo>> targets = new HashMap<String, SortedSet<MixinInfo>>();
+        for (MixinConfig config : configs) {
+            this.addPackage(config);
+            for (String target : config.getTargetsSet()) {
+                SortedSet<MixinInfo> mixins = targets.get(target);
+                if (mixins == null) {
+                    mixins = new TreeSet<MixinInfo>();
+                    targets.put(target, mixins);
+                }
+                mixins.addAll(config.getMixinsFor(target));
+            }
+        }
+        
+        for (Entry<String, SortedSet<MixinInfo>> entry : targets.entrySet()) {
+            this.targets.put(entry.getKey(), Collections.<MixinInfo>unmodifiableList(new ArrayList<MixinInfo>(entry.getValue())));
+        }
+    }
+
+    private void addPackage(MixinConfig config) {
+        String mixinPackage = config.getMixinPackage();
+        if (mixinPackage.isEmpty()) {
+            return;
+        }
+        
+        PackageNode node = this.packages;
+        for (int pos = 0, next; (next = mixinPackage.indexOf('.', pos)) > -1; pos = next + 1) {
+            PackageNode child = node.getChild(mixinPackage, pos, next - pos);
+            if (child == null) {
+                child = new PackageNode(mixinPackage.substring(pos, next));
+                node.children.add(child);
+            }
+            node = child;
+        }
+        
+        // Where two configs share a package the first one in order owns it
+        if (node.owner == null) {
+            node.owner = config;
+        }
+    }
+
+    /**
+     * Get the config which owns the most specific mixin package containing
+     * the specified class
+     * 
+     * @param className Class name to check
+     * @return owning config or <tt>null</tt> if the class is not in a mixin
+     *      package
+     */
+    MixinConfig getPackageOwner(String className) {
+        MixinConfig owner = null;
+        PackageNode node = this.packages;
+        for (int pos = 0, next; (next = className.indexOf('.', pos)) > -1; pos = next + 1) {
+            node = node.getChild(className, pos, next - pos);
+            if (node == null) {
+                break;
+            }
+            if (node.owner != null) {
+                owner = node.owner;
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * Get whether any config has mixins for the specified target class
+     * 
+     * @param targetClass target class
+     * @return true if the class is a mixin target
+     */
+    boolean hasMixinsFor(String targetClass) {
+        return this.targets.containsKey(targetClass);
+    }
+
+    /**
+     * Get the mixins for the specified target class from all configs, sorted
+     * in application order
+     * 
+     * @param targetClass target class
+     * @return immutable list of mixins or <tt>null</tt> if the class is not a
+     *      mixin target
+     */
+    List<MixinInfo> getMixinsFor(String targetClass) {
+        return this.targets.get(targetClass);
+    }
+
+}
@@ -0,0 +1,581 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.spongepowered.asm.launch.MixinBootstrap;
+import org.spongepowered.asm.logging.ILogger;
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.MixinEnvironment.Option;
+import org.spongepowered.asm.mixin.transformer.ClassInfo.Member;
+import org.spongepowered.asm.mixin.transformer.meta.MixinMerged;
+import org.spongepowered.asm.service.MixinService;
+import org.spongepowered.asm.util.Annotations;
+import org.spongepowered.asm.util.asm.ASM;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Persistent, content-addressed store of transformed classes, enabled by
+ * setting {@link Option#TRANSFORM_CACHE} to a directory. Entries are keyed by
+ * a hash of the untransformed class bytes and a fingerprint of the mixins
+ * which apply to the class (the mixin bytecode, owning config, refmap and the
+ * environment options), so an entry can only be reused when applying the
+ * mixins again would produce the same result.
+ * 
+ * <p>Entries are written to a temporary file and then moved into place, so
+ * several processes can safely share the same cache directory.</p>
+ * 
+ * <p>Stored classes do not carry the session id in {@link MixinMerged}
+ * annotations. Instead, the original names of merged members which were
+ * renamed in the mixin (eg. <tt>&#64;Unique</tt> members) are recorded, so
+ * that when an entry is loaded the renames can be replayed onto the mixin
+ * metadata and the annotations rewritten for the current session.</p>
+ * 
+ * <p>Not all targets can be cached. Nothing is cached while remappers are
+ * registered with the environment, since the mapping data they apply cannot
+ * be fingerprinted. Mixins from configs with a companion plugin are skipped
+ * since the plugin may alter the target in ways which are not captured by the
+ * key, as are mixins with inner classes and targets which reference synthetic
+ * classes, since those classes must be generated at runtime by the session
+ * which applied the mixin.</p>
+ */
+final class MixinTransformCache {
+    
+    /**
+     * A cache lookup for a single target class
+     */
+    static final class Entry {
+        
+        /**
+         * Target class name
+         */
+        private final String name;
+        
+        /**
+         * Cache key
+         */
+        private final String key;
+        
+        /**
+         * Mixins which apply to the target
+         */
+        private final List<MixinInfo> mixins;
+        
+        /**
+         * Transformed bytes read from the cache, null on a miss
+         */
+        private final byte[] cachedBytes;
+        
+        /**
+         * Cached bytes rewritten for the current session, see
+         * {@link MixinTransformCache#load}
+         */
+        private byte[] loadedBytes;
+        
+        /**
+         * Set once mixins have been applied to the target without errors,
+         * only entries which were applied cleanly are stored
+         */
+        private boolean applied;
+        
+        Entry(String name, String key, List<MixinInfo> mixins, byte[] cachedBytes) {
+            this.name = name;
+            this.key = key;
+            this.mixins = mixins;
+            this.cachedBytes = cachedBytes;
+        }
+        
+        String getName() {
+            return this.name;
+        }
+        
+        List<MixinInfo> getMixins() {
+            return this.mixins;
+        }
+        
+        byte[] getCachedBytes() {
+            return this.cachedBytes;
+        }
+        
+        void setLoadedBytes(byte[] loadedBytes) {
+            this.loadedBytes = loadedBytes;
+        }
+        
+        /**
+         * Get the bytes to return from the transformer for a cache hit, this
+         * is the cached class rewritten for the current session
+         */
+        byte[] getLoadedBytes() {
+            return this.loadedBytes != null ? this.loadedBytes : this.cachedBytes;
+        }
+        
+        void setApplied() {
+            this.applied = true;
+        }
+        
+        @Override
+        public String toString() {
+            return String.format("%s[%s]", this.name, this.key);
+        }
+        
+    }
+
+    /**
+     * Bump this when the key or entry format changes
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    private static final int CLASS_MAGIC = 0xCAFEBABE;
+    
+    /**
+     * {@link MixinMerged} key which holds the session id in transformed
+     * classes, this is removed from stored classes
+     */
+    private static final String SESSION_ID_KEY = "sessionId";
+    
+    /**
+     * {@link MixinMerged} key added to members of stored classes which were
+     * renamed from their original name in the mixin
+     */
+    private static final String ORIGINAL_NAME_KEY = "originalName";
+    
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final ILogger logger = MixinService.getService().getLogger("mixin");
+
+    /**
+     * Used to fingerprint the parsed contents of mixin configs
+     */
+    private static final Gson configSerialiser = new GsonBuilder()
+            .excludeFieldsWithModifiers(Modifier.STATIC, Modifier.TRANSIENT, Modifier.FINAL)
+            .create();
+
+    /**
+     * Cache directory
+     */
+    private final File directory;
+    
+    /**
+     * Synthetic class registry, targets which reference synthetic classes are
+     * not stored
+     */
+    private final SyntheticClassRegistry syntheticClassRegistry;
+    
+    /**
+     * Fingerprints of mixins and configs, computed once per session
+     */
+    private final Map<MixinInfo, byte[]> mixinFingerprints = new ConcurrentHashMap<MixinInfo, byte[]>();
+    private final Map<MixinConfig, byte[]> configFingerprints = new ConcurrentHashMap<MixinConfig, byte[]>();
+    
+    /**
+     * Statistics
+     */
+    private final AtomicInteger hits = new AtomicInteger(), misses = new AtomicInteger(), stores = new AtomicInteger();
+
+    private MixinTransformCache(File directory, SyntheticClassRegistry syntheticClassRegistry) {
+        this.directory = directory;
+        this.syntheticClassRegistry = syntheticClassRegistry;
+    }
+    
+    /**
+     * Create the transform cache if it is enabled in the supplied environment
+     * 
+     * @param environment Environment
+     * @param syntheticClassRegistry Synthetic class registry
+     * @return new cache or <tt>null</tt> if the cache is not enabled
+     */
+    static MixinTransformCache create(MixinEnvironment environment, SyntheticClassRegistry syntheticClassRegistry) {
+        String path = environment.getOptionValue(Option.TRANSFORM_CACHE);
+        if (Strings.isNullOrEmpty(path)) {
+            return null;
+        }
+        
+        File directory = new File(path);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            MixinTransformCache.logger.warn("Could not create transform cache directory {}, the transform cache will be disabled",
+                    directory.getAbsolutePath());
+            return null;
+        }
+        
+        MixinTransformCache.logger.info("Using transform cache in {}", directory.getAbsolutePath());
+        return new MixinTransformCache(directory, syntheticClassRegistry);
+    }
+
+    /**
+     * Look up the supplied target class in the cache
+     * 
+     * @param environment Current environment
+     * @param name Target class name
+     * @param classBytes Untransformed class bytes
+     * @param mixins Mixins which apply to the target, in application order
+     * @return cache entry, or <tt>null</tt> if the target cannot be cached
+     */
+    Entry lookup(MixinEnvironment environment, String name, byte[] classBytes, List<MixinInfo> mixins) {
+        if (!environment.getRemappers().isEmpty()) {
+            // Remapper contents cannot be fingerprinted, so any of them could change the result
+            return null;
+        }
+        
+        for (MixinInfo mixin : mixins) {
+            if (!MixinTransformCache.isCacheable(mixin)) {
+                return null;
+            }
+        }
+        
+        String key;
+        try {
+            key = this.getKey(environment, name, classBytes, mixins);
+        } catch (Exception ex) {
+            MixinTransformCache.logger.debug("Could not compute transform cache key for {}: {}", name, ex.getMessage());
+            return null;
+        }
+        
+        byte[] cachedBytes = this.read(key);
+        if (cachedBytes != null) {
+            this.hits.incrementAndGet();
+        } else {
+            this.misses.incrementAndGet();
+        }
+        return new Entry(name, key, mixins, cachedBytes);
+    }
+
+    /**
+     * Store the transformed bytes for the supplied entry, if the entry was
+     * applied cleanly and the class can be cached
+     * 
+     * @param entry Entry returned from {@link #lookup}
+     * @param transformedBytes Transformed class bytes
+     */
+    void store(Entry entry, byte[] transformedBytes) {
+        if (!entry.applied || entry.cachedBytes != null || this.referencesSyntheticClass(transformedBytes)) {
+            return;
+        }
+        
+        File file = this.getFile(entry.key);
+        File tempFile = null;
+        try {
+            File dir = file.getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Could not create directory " + dir);
+            }
+            tempFile = File.createTempFile(entry.key, ".tmp", dir);
+            Files.write(MixinTransformCache.detachSession(transformedBytes, entry.mixins), tempFile);
+            try {
+                java.nio.file.Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                java.nio.file.Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tempFile = null;
+            this.stores.incrementAndGet();
+        } catch (FileAlreadyExistsException ex) {
+            // Another process stored the same entry first, entries are content-addressed so this is fine
+        } catch (IOException ex) {
+            MixinTransformCache.logger.debug("Could not store transform cache entry {}: {}", entry, ex.getMessage());
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+    
+    /**
+     * Prepare the cached class of an entry for use in the current session.
+     * Renames of merged members are replayed onto the metadata of the mixins
+     * they came from, and {@link MixinMerged} annotations are given the
+     * current session id. The rewritten class is available from
+     * {@link Entry#getLoadedBytes} afterwards.
+     * 
+     * @param entry Entry with cached bytes
+     * @param sessionId Current session id
+     * @return cached class node, rewritten for the current session
+     */
+    ClassNode load(Entry entry, String sessionId) {
+        ClassNode classNode = new ClassNode(ASM.API_VERSION);
+        new ClassReader(entry.cachedBytes).accept(classNode, 0);
+        
+        for (MethodNode method : classNode.methods) {
+            AnnotationNode merged = Annotations.getVisible(method, MixinMerged.class);
+            String originalName = MixinTransformCache.attachSession(merged, sessionId);
+            if (originalName != null) {
+                ClassInfo mixinInfo = MixinTransformCache.getMixinClassInfo(entry.mixins, merged);
+                Member member = mixinInfo != null ? mixinInfo.findMethod(originalName, method.desc, ClassInfo.INCLUDE_ALL) : null;
+                if (member != null) {
+                    member.renameTo(method.name);
+                }
+            }
+        }
+        
+        for (FieldNode field : classNode.fields) {
+            AnnotationNode merged = Annotations.getVisible(field, MixinMerged.class);
+            String originalName = MixinTransformCache.attachSession(merged, sessionId);
+            if (originalName != null) {
+                ClassInfo mixinInfo = MixinTransformCache.getMixinClassInfo(entry.mixins, merged);
+                Member member = mixinInfo != null ? mixinInfo.findField(originalName, field.desc, ClassInfo.INCLUDE_ALL) : null;
+                if (member != null) {
+                    member.renameTo(field.name);
+                }
+            }
+        }
+        
+        ClassWriter writer = new ClassWriter(0);
+        classNode.accept(writer);
+        entry.setLoadedBytes(writer.toByteArray());
+        return classNode;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("%s (%d hits, %d misses, %d stored)", this.directory, this.hits.get(), this.misses.get(), this.stores.get());
+    }
+
+    /**
+     * Remove the session id from {@link MixinMerged} annotations in the
+     * supplied transformed class and record the original names of renamed
+     * members
+     */
+    private static byte[] detachSession(byte[] classBytes, List<MixinInfo> mixins) {
+        ClassNode classNode = new ClassNode(ASM.API_VERSION);
+        new ClassReader(classBytes).accept(classNode, 0);
+        
+        for (MethodNode method : classNode.methods) {
+            AnnotationNode merged = Annotations.getVisible(method, MixinMerged.class);
+            if (merged != null) {
+                MixinTransformCache.removeValue(merged, MixinTransformCache.SESSION_ID_KEY);
+                ClassInfo mixinInfo = MixinTransformCache.getMixinClassInfo(mixins, merged);
+                Member member = mixinInfo != null ? mixinInfo.findMethod(method.name, method.desc, ClassInfo.INCLUDE_ALL) : null;
+                if (member != null && !member.getOriginalName().equals(method.name)) {
+                    Annotations.setValue(merged, MixinTransformCache.ORIGINAL_NAME_KEY, member.getOriginalName());
+                }
+            }
+        }
+        
+        for (FieldNode field : classNode.fields) {
+            AnnotationNode merged = Annotations.getVisible(field, MixinMerged.class);
+            if (merged != null) {
+                MixinTransformCache.removeValue(merged, MixinTransformCache.SESSION_ID_KEY);
+                ClassInfo mixinInfo = MixinTransformCache.getMixinClassInfo(mixins, merged);
+                Member member = mixinInfo != null ? mixinInfo.findField(field.name, field.desc, ClassInfo.INCLUDE_ALL) : null;
+                if (member != null && !member.getOriginalName().equals(field.name)) {
+                    Annotations.setValue(merged, MixinTransformCache.ORIGINAL_NAME_KEY, member.getOriginalName());
+                }
+            }
+        }
+        
+        ClassWriter writer = new ClassWriter(0);
+        classNode.accept(writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Set the session id on a {@link MixinMerged} annotation from a stored
+     * class and remove the recorded original name
+     * 
+     * @return the recorded original name of the member, or null if the member
+     *      was not renamed
+     */
+    private static String attachSession(AnnotationNode merged, String sessionId) {
+        if (merged == null) {
+            return null;
+        }
+        String originalName = (String)MixinTransformCache.removeValue(merged, MixinTransformCache.ORIGINAL_NAME_KEY);
+        Annotations.setValue(merged, MixinTransformCache.SESSION_ID_KEY, sessionId);
+        return originalName;
+    }
+
+    private static ClassInfo getMixinClassInfo(List<MixinInfo> mixins, AnnotationNode merged) {
+        String mixinName = Annotations.<String>getValue(merged, "mixin");
+        for (MixinInfo mixin : mixins) {
+            if (mixin.getClassName().equals(mixinName)) {
+                return mixin.getClassInfo();
+            }
+        }
+        return null;
+    }
+
+    private static Object removeValue(AnnotationNode annotation, String key) {
+        if (annotation.values == null) {
+            return null;
+        }
+        for (Iterator<Object> iter = annotation.values.iterator(); iter.hasNext();) {
+            if (key.equals(iter.next())) {
+                iter.remove();
+                Object value = iter.next();
+                iter.remove();
+                return value;
+            }
+            iter.next();
+        }
+        return null;
+    }
+
+    private static boolean isCacheable(MixinInfo mixin) {
+        return mixin.getParent().getPlugin() == null && mixin.getInnerClasses().isEmpty();
+    }
+
+    private byte[] read(String key) {
+        File file = this.getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        
+        try {
+            byte[] bytes = Files.toByteArray(file);
+            if (bytes.length < 4 || (((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF))
+                    != MixinTransformCache.CLASS_MAGIC) {
+                MixinTransformCache.logger.warn("Ignoring invalid transform cache entry {}", file);
+                return null;
+            }
+            return bytes;
+        } catch (IOException ex) {
+            MixinTransformCache.logger.debug("Could not read transform cache entry {}: {}", file, ex.getMessage());
+            return null;
+        }
+    }
+
+    private File getFile(String key) {
+        return new File(new File(this.directory, key.substring(0, 2)), key + ".class");
+    }
+
+    private boolean referencesSyntheticClass(byte[] classBytes) {
+        ClassReader reader = new ClassReader(classBytes);
+        char[] buffer = new char[reader.getMaxStringLength()];
+        for (int item = 1; item < reader.getItemCount(); item++) {
+            int offset = reader.getItem(item);
+            if (offset > 0 && reader.readByte(offset - 1) == 7 /* CONSTANT_Class */) {
+                String className = reader.readUTF8(offset, buffer);
+                if (this.syntheticClassRegistry.findSyntheticClass(className) != null) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private String getKey(MixinEnvironment environment, String name, byte[] classBytes, List<MixinInfo> mixins) throws IOException {
+        MessageDigest digest = MixinTransformCache.createDigest();
+        MixinTransformCache.update(digest, String.format("%d:%s:%s", MixinTransformCache.FORMAT_VERSION, MixinBootstrap.VERSION, name));
+        
+        MixinTransformCache.update(digest, String.format("%s:%s:%s", environment.getPhase(), environment.getSide(),
+                MixinEnvironment.getCompatibilityLevel()));
+        for (Option option : Option.values()) {
+            MixinTransformCache.update(digest, String.format("%s=%s/%s", option.name(), environment.getOption(option),
+                    environment.getOptionValue(option)));
+        }
+        
+        for (MixinInfo mixin : mixins) {
+            digest.update(this.getFingerprint(mixin));
+        }
+        
+        digest.update(classBytes);
+        return MixinTransformCache.toHex(digest.digest());
+    }
+    
+    private byte[] getFingerprint(MixinInfo mixin) throws IOException {
+        byte[] fingerprint = this.mixinFingerprints.get(mixin);
+        if (fingerprint == null) {
+            MessageDigest digest = MixinTransformCache.createDigest();
+            MixinTransformCache.update(digest, String.format("%s:%d", mixin.getClassName(), mixin.getPriority()));
+            digest.update(this.getFingerprint(mixin.getParent()));
+            digest.update(mixin.getClassBytes());
+            fingerprint = digest.digest();
+            this.mixinFingerprints.put(mixin, fingerprint);
+        }
+        return fingerprint;
+    }
+    
+    private byte[] getFingerprint(MixinConfig config) throws IOException {
+        byte[] fingerprint = this.configFingerprints.get(config);
+        if (fingerprint == null) {
+            MessageDigest digest = MixinTransformCache.createDigest();
+            MixinTransformCache.update(digest, String.format("%s:%d", config.getName(), config.getPriority()));
+            MixinTransformCache.update(digest, MixinTransformCache.configSerialiser.toJson(config));
+            String refMapResource = config.getRefMapperConfig();
+            if (refMapResource != null) {
+                InputStream resource = MixinService.getService().getResourceAsStream(refMapResource);
+                if (resource != null) {
+                    try {
+                        digest.update(ByteStreams.toByteArray(resource));
+                    } finally {
+                        resource.close();
+                    }
+                } else {
+                    MixinTransformCache.update(digest, "<missing>");
+                }
+            }
+            fingerprint = digest.digest();
+            this.configFingerprints.put(config, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte)0);
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = MixinTransformCache.HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = MixinTransformCache.HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+}
@@ -26,6 +26,7 @@ package org.spongepowered.asm.mixin.transformer;
 
 import java.lang.reflect.Constructor;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 import org.objectweb.asm.tree.ClassNode;
 import org.spongepowered.asm.launch.MixinInitialisationError;
@@ -110,7 +111,8 @@ final class MixinTransformer extends TreeTransformer implements IMixinTransforme
         this.hotSwapper = this.initHotSwapper(environment);
         this.nestHostCoprocessor = new MixinCoprocessorNestHost();
 
-        this.processor = new MixinProcessor(environment, this.extensions, this.hotSwapper, this.nestHostCoprocessor);
+        this.processor = new MixinProcessor(environment, this.extensions, this.hotSwapper, this.nestHostCoprocessor,
+                MixinTransformCache.create(environment, this.syntheticClassRegistry));
         this.generator = new MixinClassGenerator(environment, this.extensions);
         
         DefaultExtensions.create(environment, this.extensions, this.syntheticClassRegistry, this.nestHostCoprocessor);
@@ -229,15 +231,26 @@ final class MixinTransformer extends TreeTransformer implements IMixinTransforme
      * @return Transformed bytecode
      */
     @Override
-    public synchronized byte[] transformClass(MixinEnvironment environment, String name, byte[] classBytes) {
-        if (!couldTransformClass(environment, name)) {
+    public byte[] transformClass(MixinEnvironment environment, String name, byte[] classBytes) {
+        Lock lock = this.processor.lockTransformer(environment);
+        try {
+            if (!this.processor.couldTransformClass(environment, name)) {
+                return classBytes;
+            }
+            MixinTransformCache.Entry cacheEntry = this.processor.lookupTransformCache(environment, name, classBytes);
+            if (cacheEntry != null && cacheEntry.getCachedBytes() != null) {
+                return cacheEntry.getLoadedBytes();
+            }
+            ClassNode classNode = this.readClass(name, classBytes);
+            if (this.processor.applyMixins(environment, name, classNode, cacheEntry)) {
+                byte[] transformedBytes = this.writeClass(classNode);
+                this.processor.storeTransformCache(cacheEntry, transformedBytes);
+                return transformedBytes;
+            }
             return classBytes;
+        } finally {
+            lock.unlock();
         }
-        ClassNode classNode = this.readClass(name, classBytes);
-        if (this.processor.applyMixins(environment, name, classNode)) {
-            return this.writeClass(classNode);
-        }
-        return classBytes;
     }
 
     /**
@@ -249,8 +262,13 @@ final class MixinTransformer extends TreeTransformer implements IMixinTransforme
      * @return true if the class was transformed
      */
     @Override
-    public synchronized boolean transformClass(MixinEnvironment environment, String name, ClassNode classNode) {
-        return this.processor.applyMixins(environment, name, classNode);
+    public boolean transformClass(MixinEnvironment environment, String name, ClassNode classNode) {
+        Lock lock = this.processor.lockTransformer(environment);
+        try {
+            return this.processor.applyMixins(environment, name, classNode);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -261,8 +279,13 @@ final class MixinTransformer extends TreeTransformer implements IMixinTransforme
      * @return true if the class could be transformed
      */
     @Override
-    public synchronized boolean couldTransformClass(MixinEnvironment environment, String name) {
-        return this.processor.couldTransformClass(environment, name);
+    public boolean couldTransformClass(MixinEnvironment environment, String name) {
+        Lock lock = this.processor.lockTransformer(environment);
+        try {
+            return this.processor.couldTransformClass(environment, name);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -273,12 +296,17 @@ final class MixinTransformer extends TreeTransformer implements IMixinTransforme
      * @return Generated bytecode or <tt>null</tt> if no class was generated
      */
     @Override
-    public synchronized byte[] generateClass(MixinEnvironment environment, String name) {
-        ClassNode classNode = MixinTransformer.createEmptyClass(name);
-        if (this.generator.generateClass(environment, name, classNode)) {
-            return this.writeClass(classNode);
+    public byte[] generateClass(MixinEnvironment environment, String name) {
+        Lock lock = this.processor.lockTransformer(environment);
+        try {
+            ClassNode classNode = MixinTransformer.createEmptyClass(name);
+            if (this.generator.generateClass(environment, name, classNode)) {
+                return this.writeClass(classNode);
+            }
+            return null;
+        } finally {
+            lock.unlock();
         }
-        return null;
     }
     
     /**
@@ -288,8 +316,13 @@ final class MixinTransformer extends TreeTransformer implements IMixinTransforme
      * @return True if the class was generated successfully
      */
     @Override
-    public synchronized boolean generateClass(MixinEnvironment environment, String name, ClassNode classNode) {
-        return this.generator.generateClass(environment, name, classNode);
+    public boolean generateClass(MixinEnvironment environment, String name, ClassNode classNode) {
+        Lock lock = this.processor.lockTransformer(environment);
+        try {
+            return this.generator.generateClass(environment, name, classNode);
+        } finally {
+            lock.unlock();
+        }
     }
     
     /**
@@ -0,0 +1,290 @@
+/*
+ * This file is part of Mixin, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) SpongePowered <https://www.spongepowered.org>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.spongepowered.asm.mixin.transformer.ext.extensions;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.WeakHashMap;
+
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.spongepowered.asm.logging.ILogger;
+import org.spongepowered.asm.mixin.MixinEnvironment;
+import org.spongepowered.asm.mixin.MixinEnvironment.Option;
+import org.spongepowered.asm.mixin.transformer.ext.IExtension;
+import org.spongepowered.asm.mixin.transformer.ext.ITargetClassContext;
+import org.spongepowered.asm.mixin.transformer.meta.MixinMerged;
+import org.spongepowered.asm.service.MixinService;
+import org.spongepowered.asm.util.Annotations;
+import org.spongepowered.asm.util.Bytecode;
+import org.spongepowered.asm.util.Constants;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * Records the code size of each method in a target class before and after
+ * mixins are applied, attributes the growth to the mixins and injectors which
+ * caused it, and warns when a method crosses one of the HotSpot JIT size
+ * thresholds. A CSV report with one row per changed method is written to the
+ * audit directory.
+ */
+public class ExtensionCodeSize implements IExtension {
+
+    /**
+     * HotSpot <tt>MaxInlineSize</tt>, methods larger than this are only
+     * inlined if they are hot
+     */
+    public static final int MAX_INLINE_SIZE = 35;
+
+    /**
+     * HotSpot <tt>FreqInlineSize</tt>, methods larger than this are never
+     * inlined
+     */
+    public static final int FREQ_INLINE_SIZE = 325;
+
+    /**
+     * HotSpot <tt>HugeMethodLimit</tt>, methods larger than this are never
+     * compiled
+     */
+    public static final int HUGE_METHOD_LIMIT = 8000;
+
+    private static final String AUDIT_DIR = "audit";
+    private static final String CODE_SIZE_REPORT_FILENAME = "mixin_code_size_report.csv";
+    
+    private static final String OTHER = "<other>";
+
+    private static final ILogger logger = MixinService.getService().getLogger("mixin");
+
+    /**
+     * Size information for a single target class while mixins are applied
+     */
+    static final class ClassReport {
+        
+        /**
+         * Method sizes before mixins were applied, keyed by name and desc
+         */
+        final Map<String, Integer> before = new HashMap<String, Integer>();
+        
+        /**
+         * Growth of each method by contributor, keyed by name and desc
+         */
+        final Map<String, Map<String, Integer>> growth = new HashMap<String, Map<String, Integer>>();
+        
+        synchronized void record(String method, String contributor, int delta) {
+            Map<String, Integer> contributors = this.growth.get(method);
+            if (contributors == null) {
+                contributors = new LinkedHashMap<String, Integer>();
+                this.growth.put(method, contributors);
+            }
+            Integer existing = contributors.get(contributor);
+            contributors.put(contributor, Integer.valueOf(existing != null ? existing.intValue() + delta : delta));
+        }
+        
+    }
+    
+    /**
+     * CSV Report file
+     */
+    private final File csv;
+    
+    /**
+     * Reports for classes currently being transformed, weak so that a failed
+     * transformation does not leak
+     */
+    private final Map<ClassNode, ClassReport> reports = Collections.synchronizedMap(new WeakHashMap<ClassNode, ClassReport>());
+
+    /**
+     * True once the output dir and csv have been created, not triggered until
+     * something is written
+     */
+    private boolean started = false;
+
+    public ExtensionCodeSize() {
+        this.csv = new File(new File(Constants.DEBUG_OUTPUT_DIR, ExtensionCodeSize.AUDIT_DIR), ExtensionCodeSize.CODE_SIZE_REPORT_FILENAME);
+    }
+    
+    /**
+     * Delayed creation of CSV so the dir doesn't get created when the extension
+     * is inactive
+     */
+    private synchronized void start() {
+        if (this.started) {
+            return;
+        }
+        
+        this.started = true;
+        this.csv.getParentFile().mkdirs();
+
+        try {
+            Files.write("Class,Method,Signature,Before,After,Threshold,Contributors\n", this.csv, Charsets.ISO_8859_1);
+        } catch (IOException ex) {
+            // oh well
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.mixin.transformer.ext.IExtension#checkActive(
+     *      org.spongepowered.asm.mixin.MixinEnvironment)
+     */
+    @Override
+    public boolean checkActive(MixinEnvironment environment) {
+        return environment.getOption(Option.DEBUG_CODE_SIZE);
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.mixin.transformer.IMixinTransformerModule
+     *     #preApply(org.spongepowered.asm.mixin.transformer.TargetClassContext)
+     */
+    @Override
+    public void preApply(ITargetClassContext context) {
+        ClassNode classNode = context.getClassNode();
+        ClassReport report = new ClassReport();
+        for (MethodNode method : classNode.methods) {
+            report.before.put(method.name + method.desc, Integer.valueOf(Bytecode.getCodeSize(method.instructions)));
+        }
+        this.reports.put(classNode, report);
+    }
+
+    /**
+     * Attribute growth of a target method to a contributor, called by
+     * injectors after they have been applied to a target method. Ignored if
+     * the target class is not being recorded.
+     * 
+     * @param classNode target class
+     * @param method target method
+     * @param contributor description of the contributor, eg. the injector
+     * @param delta change in code size
+     */
+    public void record(ClassNode classNode, MethodNode method, String contributor, int delta) {
+        ClassReport report = this.reports.get(classNode);
+        if (report != null && delta != 0) {
+            report.record(method.name + method.desc, contributor, delta);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.mixin.transformer.IMixinTransformerModule
+     *    #postApply(org.spongepowered.asm.mixin.transformer.TargetClassContext)
+     */
+    @Override
+    public void postApply(ITargetClassContext context) {
+        ClassNode classNode = context.getClassNode();
+        ClassReport report = this.reports.remove(classNode);
+        if (report == null) {
+            return;
+        }
+        
+        String className = classNode.name.replace('/', '.');
+        StringBuilder rows = new StringBuilder();
+        for (MethodNode method : classNode.methods) {
+            String key = method.name + method.desc;
+            Integer before = report.before.get(key);
+            int beforeSize = before != null ? before.intValue() : 0;
+            int afterSize = Bytecode.getCodeSize(method.instructions);
+            if (before != null ? beforeSize == afterSize : afterSize == 0) {
+                continue;
+            }
+            
+            Map<String, Integer> contributors = report.growth.get(key);
+            contributors = contributors != null ? new LinkedHashMap<String, Integer>(contributors) : new LinkedHashMap<String, Integer>();
+            int unattributed = afterSize - beforeSize;
+            for (Integer delta : contributors.values()) {
+                unattributed -= delta.intValue();
+            }
+            if (unattributed != 0) {
+                AnnotationNode merged = Annotations.getVisible(method, MixinMerged.class);
+                String mixin = merged != null ? Annotations.<String>getValue(merged, "mixin") : null;
+                contributors.put(mixin != null ? mixin : ExtensionCodeSize.OTHER, Integer.valueOf(unattributed));
+            }
+            
+            int threshold = ExtensionCodeSize.getCrossedThreshold(beforeSize, afterSize);
+            String summary = ExtensionCodeSize.summarise(contributors);
+            if (threshold == ExtensionCodeSize.HUGE_METHOD_LIMIT) {
+                ExtensionCodeSize.logger.warn("{}::{}{} grew from {} to {} bytes which exceeds HugeMethodLimit ({}), it will not be JIT compiled. Contributors: {}",
+                        className, method.name, method.desc, beforeSize, afterSize, threshold, summary);
+            } else if (threshold == ExtensionCodeSize.FREQ_INLINE_SIZE) {
+                ExtensionCodeSize.logger.warn("{}::{}{} grew from {} to {} bytes which exceeds FreqInlineSize ({}), it will no longer be inlined. Contributors: {}",
+                        className, method.name, method.desc, beforeSize, afterSize, threshold, summary);
+            } else if (threshold == ExtensionCodeSize.MAX_INLINE_SIZE) {
+                ExtensionCodeSize.logger.debug("{}::{}{} grew from {} to {} bytes which exceeds MaxInlineSize ({}). Contributors: {}",
+                        className, method.name, method.desc, beforeSize, afterSize, threshold, summary);
+            }
+            
+            rows.append(String.format("%s,%s,%s,%d,%d,%d,%s\n", className, method.name, method.desc, beforeSize, afterSize, threshold,
+                    summary.replace(',', ';')));
+        }
+        
+        if (rows.length() > 0) {
+            this.appendToCSVReport(rows.toString());
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.spongepowered.asm.mixin.transformer.ext.IExtension
+     *      #export(org.spongepowered.asm.mixin.MixinEnvironment,
+     *      java.lang.String, boolean, org.objectweb.asm.tree.ClassNode)
+     */
+    @Override
+    public void export(MixinEnvironment env, String name, boolean force, ClassNode classNode) {
+    }
+    
+    private synchronized void appendToCSVReport(String rows) {
+        this.start();
+        try {
+            Files.append(rows, this.csv, Charsets.ISO_8859_1);
+        } catch (IOException ex) {
+            // Not the end of the world
+        }
+    }
+
+    /**
+     * Get the largest threshold which the method size crossed, or zero if it
+     * did not cross any threshold
+     */
+    private static int getCrossedThreshold(int before, int after) {
+        for (int threshold : new int[] { ExtensionCodeSize.HUGE_METHOD_LIMIT, ExtensionCodeSize.FREQ_INLINE_SIZE, ExtensionCodeSize.MAX_INLINE_SIZE }) {
+            if (before <= threshold && after > threshold) {
+                return threshold;
+            }
+        }
+        return 0;
+    }
+    
+    private static String summarise(Map<String, Integer> contributors) {
+        StringBuilder sb = new StringBuilder();
+        for (Entry<String, Integer> contributor : contributors.entrySet()) {
+            sb.append(sb.length() > 0 ? " " : "").append(String.format("%s (%+d)", contributor.getKey(), contributor.getValue()));
+        }
+        return sb.toString();
+    }
+
+}
@@ -52,6 +52,15 @@ public class RemapperChain implements IRemapper {
         this.remappers.add(remapper);
         return this;
     }
+    
+    /**
+     * Get whether this chain contains no remappers
+     * 
+     * @return true if no remappers have been added
+     */
+    public boolean isEmpty() {
+        return this.remappers.isEmpty();
+    }
 
     @Override
     public String mapMethodName(String owner, String name, String desc) {
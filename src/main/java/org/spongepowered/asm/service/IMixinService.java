@@ -26,6 +26,7 @@ package org.spongepowered.asm.service;
 
 import java.io.InputStream;
 import java.util.Collection;
+import java.util.concurrent.Executor;
 
 import org.spongepowered.asm.launch.platform.container.IContainerHandle;
 import org.spongepowered.asm.logging.ILogger;
@@ -214,4 +215,24 @@ public interface IMixinService {
      */
     public abstract ILogger getLogger(final String name);
 
+    /**
+     * Get an executor which the mixin processor can use to prepare mixins in
+     * parallel. When an executor is supplied, mixin classes are loaded from
+     * the {@link #getBytecodeProvider bytecode provider} and mixins are
+     * validated on the executor's threads, results are then consumed in
+     * declaration order so that mixin ordering and error reporting are the
+     * same as when preparing serially.
+     * 
+     * <p>Services should only return an executor if their bytecode provider
+     * (and any transformers it invokes) can safely be called concurrently.
+     * The default implementation returns <tt>null</tt>, which causes mixins
+     * to be prepared serially on the calling thread.</p>
+     * 
+     * @return Executor to use for preparing mixins, or <tt>null</tt> to
+     *      prepare mixins serially
+     */
+    public default Executor getPrepareExecutor() {
+        return null;
+    }
+
 }
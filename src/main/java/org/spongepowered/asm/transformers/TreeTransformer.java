@@ -24,18 +24,106 @@
  */
 package org.spongepowered.asm.transformers;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
 import org.spongepowered.asm.service.ILegacyClassTransformer;
+import org.spongepowered.asm.util.asm.ASM;
 
 /**
  * Base class for transformers which work with ASM tree model
  */
 public abstract class TreeTransformer implements ILegacyClassTransformer {
 
-    private ClassReader classReader;
-    private ClassNode classNode;
+    /**
+     * Snapshot of a method's code as it was read from the original bytecode,
+     * used to determine whether the method was touched by the transformation
+     */
+    static final class MethodState {
+        
+        private final AbstractInsnNode[] insns;
+        
+        private final TryCatchBlockNode[] tryCatchBlocks;
+        
+        private final int maxStack, maxLocals;
+        
+        MethodState(MethodNode method) {
+            this.insns = method.instructions.toArray();
+            this.tryCatchBlocks = MethodState.getTryCatchBlocks(method);
+            this.maxStack = method.maxStack;
+            this.maxLocals = method.maxLocals;
+        }
+        
+        boolean isModified(MethodNode method) {
+            return this.maxStack != method.maxStack
+                    || this.maxLocals != method.maxLocals
+                    || this.insns.length != method.instructions.size()
+                    || !Arrays.equals(this.insns, method.instructions.toArray())
+                    || !Arrays.equals(this.tryCatchBlocks, MethodState.getTryCatchBlocks(method));
+        }
+        
+        private static TryCatchBlockNode[] getTryCatchBlocks(MethodNode method) {
+            if (method.tryCatchBlocks == null) {
+                return new TryCatchBlockNode[0];
+            }
+            return method.tryCatchBlocks.toArray(new TryCatchBlockNode[0]);
+        }
+        
+    }
+    
+    /**
+     * State retained between reading a class and writing it back out, allows
+     * the original constant pool and the frames of untouched methods to be
+     * reused when the class is written
+     */
+    static final class ReadState {
+        
+        final ClassReader classReader;
+        
+        final ClassNode classNode;
+        
+        private final Map<MethodNode, MethodState> methods = new IdentityHashMap<MethodNode, MethodState>();
+        
+        ReadState(ClassReader classReader, ClassNode classNode) {
+            this.classReader = classReader;
+            this.classNode = classNode;
+            for (MethodNode method : classNode.methods) {
+                this.methods.put(method, new MethodState(method));
+            }
+        }
+        
+        /**
+         * Get the methods in the class which were added or whose code was
+         * changed since the class was read
+         */
+        List<MethodNode> getModifiedMethods() {
+            List<MethodNode> modified = new ArrayList<MethodNode>();
+            for (MethodNode method : this.classNode.methods) {
+                MethodState state = this.methods.get(method);
+                if (state == null || state.isModified(method)) {
+                    modified.add(method);
+                }
+            }
+            return modified;
+        }
+        
+    }
+    
+    /**
+     * Read state for the class currently being transformed on each thread,
+     * classes may be transformed concurrently so this cannot be shared
+     */
+    private final ThreadLocal<ReadState> readState = new ThreadLocal<ReadState>();
 
     /**
      * @param basicClass Original bytecode
@@ -53,12 +141,9 @@ public abstract class TreeTransformer implements ILegacyClassTransformer {
      */
     protected final ClassNode readClass(String className, byte[] basicClass, boolean cacheReader) {
         ClassReader classReader = new MixinClassReader(basicClass, className);
-        if (cacheReader) {
-            this.classReader = classReader;
-        }
-
         ClassNode classNode = new ClassNode();
         classReader.accept(classNode, ClassReader.EXPAND_FRAMES);
+        this.readState.set(cacheReader ? new ReadState(classReader, classNode) : null);
         return classNode;
     }
 
@@ -67,19 +152,76 @@ public abstract class TreeTransformer implements ILegacyClassTransformer {
      * @return generated bytecode
      */
     protected final byte[] writeClass(ClassNode classNode) {
+        ReadState state = this.readState.get();
+        this.readState.remove();
+
         // Use optimised writer for speed
-        if (this.classReader != null && this.classNode == classNode) {
-            this.classNode = null;
-            ClassWriter writer = new MixinClassWriter(this.classReader, ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
-            this.classReader = null;
+        if (state != null && state.classNode == classNode) {
+            if (TreeTransformer.computeModifiedFrames(state, classNode)) {
+                ClassWriter writer = new MixinClassWriter(state.classReader, 0);
+                classNode.accept(writer);
+                return writer.toByteArray();
+            }
+            
+            ClassWriter writer = new MixinClassWriter(state.classReader, ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
             classNode.accept(writer);
             return writer.toByteArray();
         }
 
-        this.classNode = null;
-
         ClassWriter writer = new MixinClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
         classNode.accept(writer);
         return writer.toByteArray();
     }
+
+    /**
+     * Recompute frames and maxs for only the methods which were added or
+     * modified since the class was read, replacing them in the supplied class.
+     * Untouched methods keep the (expanded) frames they were read with.
+     * 
+     * @param state read state for the class
+     * @param classNode class to update
+     * @return true if the class can now be written without computing frames,
+     *      false if the full computation is required
+     */
+    private static boolean computeModifiedFrames(ReadState state, ClassNode classNode) {
+        // Classes older than Java 6 have no frames to preserve, and classes
+        // which were upgraded past Java 6 need frames in every method
+        if ((state.classReader.readInt(4) & 0xFFFF) < Opcodes.V1_6 || (classNode.version & 0xFFFF) < Opcodes.V1_6) {
+            return false;
+        }
+        
+        List<MethodNode> modified = state.getModifiedMethods();
+        if (modified.isEmpty()) {
+            return true;
+        }
+        
+        for (MethodNode method : modified) {
+            if (method.attrs != null && !method.attrs.isEmpty()) {
+                return false;
+            }
+        }
+
+        // Write just the modified methods into a scratch class, computing
+        // frames and maxs, then read them back in place of the originals
+        ClassWriter scratch = new MixinClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        scratch.visit(classNode.version, classNode.access, classNode.name, null, classNode.superName,
+                classNode.interfaces.toArray(new String[0]));
+        for (MethodNode method : modified) {
+            method.accept(scratch);
+        }
+        scratch.visitEnd();
+        
+        ClassNode framed = new ClassNode(ASM.API_VERSION);
+        new ClassReader(scratch.toByteArray()).accept(framed, ClassReader.EXPAND_FRAMES);
+        if (framed.methods.size() != modified.size()) {
+            return false;
+        }
+
+        for (int index = 0; index < modified.size(); index++) {
+            int pos = classNode.methods.indexOf(modified.get(index));
+            classNode.methods.set(pos, framed.methods.get(index));
+        }
+        return true;
+    }
+
 }
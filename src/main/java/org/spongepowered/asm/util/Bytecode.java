@@ -671,6 +671,64 @@ public final class Bytecode {
         return size;
     }
     
+    /**
+     * Estimate the size in bytes of the code which will be emitted for the
+     * supplied instructions. The estimate is exact for most instructions, the
+     * exceptions being <tt>LDC</tt> (which is assumed to require a wide
+     * constant pool index) and switch instructions (which are assumed to
+     * require the maximum padding), so the value returned is an upper bound
+     * suitable for comparison with JIT thresholds and the 64K method limit.
+     * 
+     * @param insns instructions to measure
+     * @return estimated code size in bytes
+     */
+    public static int getCodeSize(InsnList insns) {
+        int size = 0;
+        for (Iterator<AbstractInsnNode> iter = insns.iterator(); iter.hasNext();) {
+            size += Bytecode.getCodeSize(iter.next());
+        }
+        return size;
+    }
+
+    /**
+     * Estimate the size in bytes of the code which will be emitted for the
+     * supplied instruction, see {@link #getCodeSize(InsnList)}.
+     * 
+     * @param insn instruction to measure
+     * @return estimated code size in bytes, zero for pseudo-instructions
+     */
+    public static int getCodeSize(AbstractInsnNode insn) {
+        switch (insn.getType()) {
+            case AbstractInsnNode.INSN:
+                return 1;
+            case AbstractInsnNode.INT_INSN:
+                return insn.getOpcode() == Opcodes.SIPUSH ? 3 : 2;
+            case AbstractInsnNode.VAR_INSN:
+                int var = ((VarInsnNode)insn).var;
+                return var > 255 ? 4 : var > 3 || insn.getOpcode() == Opcodes.RET ? 2 : 1;
+            case AbstractInsnNode.TYPE_INSN:
+            case AbstractInsnNode.FIELD_INSN:
+            case AbstractInsnNode.JUMP_INSN:
+            case AbstractInsnNode.LDC_INSN:
+                return 3;
+            case AbstractInsnNode.METHOD_INSN:
+                return insn.getOpcode() == Opcodes.INVOKEINTERFACE ? 5 : 3;
+            case AbstractInsnNode.INVOKE_DYNAMIC_INSN:
+                return 5;
+            case AbstractInsnNode.IINC_INSN:
+                IincInsnNode iinc = (IincInsnNode)insn;
+                return iinc.var > 255 || iinc.incr > Byte.MAX_VALUE || iinc.incr < Byte.MIN_VALUE ? 6 : 3;
+            case AbstractInsnNode.TABLESWITCH_INSN:
+                return 16 + ((TableSwitchInsnNode)insn).labels.size() * 4;
+            case AbstractInsnNode.LOOKUPSWITCH_INSN:
+                return 12 + ((LookupSwitchInsnNode)insn).labels.size() * 8;
+            case AbstractInsnNode.MULTIANEWARRAY_INSN:
+                return 4;
+            default:
+                return 0;
+        }
+    }
+    
     /**
      * Injects appropriate LOAD opcodes into the supplied InsnList appropriate
      * for each entry in the args array starting at pos
@@ -28,8 +28,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -109,6 +111,12 @@ public final class Locals {
             this.type = type;
         }
         
+        ZombieLocalVariableNode(ZombieLocalVariableNode other) {
+            this(other.ancestor, other.type);
+            this.lifetime = other.lifetime;
+            this.frames = other.frames;
+        }
+        
         boolean checkResurrect(Settings settings) {
             int insnThreshold = this.type == ZombieLocalVariableNode.CHOP ? settings.choppedInsnThreshold : settings.trimmedInsnThreshold;
             if (insnThreshold > -1 && this.lifetime > insnThreshold) {
@@ -132,6 +140,371 @@ public final class Locals {
         
     }
     
+    /**
+     * Incremental view of the locals in a method. Runs the state machine used
+     * by {@link Locals#getLocalsAt} forward through the method and retains a
+     * snapshot of its state at regular intervals, so that each query only
+     * replays the instructions since the nearest preceding snapshot instead of
+     * the whole method. The frame metadata, initial locals and local variable
+     * table are only fetched once per timeline.
+     * 
+     * <p>A timeline describes the method as it was when the timeline was
+     * created, callers must discard it if the method's instructions or local
+     * variable table are subsequently modified. Timelines are not thread-safe.
+     * </p>
+     */
+    public static final class Timeline {
+        
+        /**
+         * Number of instructions between retained snapshots
+         */
+        private static final int SNAPSHOT_INTERVAL = 32;
+        
+        /**
+         * State of the locals state machine before a particular instruction
+         */
+        final class State {
+            
+            final LocalVariableNode[] frame;
+            
+            int frameSize;
+            
+            int frameIndex = -1;
+            
+            int lastFrameSize;
+            
+            int knownFrameSize;
+            
+            VarInsnNode storeInsn;
+            
+            State() {
+                this.frame = new LocalVariableNode[Timeline.this.method.maxLocals];
+                System.arraycopy(Timeline.this.initialLocals, 0, this.frame, 0, Timeline.this.initialLocals.length);
+                this.frameSize = this.lastFrameSize = this.knownFrameSize = Timeline.this.initialFrameSize;
+            }
+            
+            State(State other) {
+                this.frame = other.frame.clone();
+                for (int l = 0; l < this.frame.length; l++) {
+                    if (this.frame[l] instanceof ZombieLocalVariableNode) {
+                        this.frame[l] = new ZombieLocalVariableNode((ZombieLocalVariableNode)this.frame[l]);
+                    }
+                }
+                this.frameSize = other.frameSize;
+                this.frameIndex = other.frameIndex;
+                this.lastFrameSize = other.lastFrameSize;
+                this.knownFrameSize = other.knownFrameSize;
+                this.storeInsn = other.storeInsn;
+            }
+            
+            /**
+             * Advance the state machine over the specified instruction
+             */
+            void step(AbstractInsnNode insn) {
+                final ClassNode classNode = Timeline.this.classNode;
+                final MethodNode method = Timeline.this.method;
+                final Settings settings = Timeline.this.settings;
+                final int initialFrameSize = Timeline.this.initialFrameSize;
+                final LocalVariableNode[] frame = this.frame;
+                
+                // Tick the zombies
+                for (int l = 0; l < frame.length; l++) {
+                    if (frame[l] instanceof ZombieLocalVariableNode) {
+                        ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)frame[l];
+                        zombie.lifetime++;
+                        if (insn instanceof FrameNode) {
+                            zombie.frames++;
+                        }
+                    }
+                }
+    
+                if (this.storeInsn != null) {
+                    LocalVariableNode storedLocal = Timeline.this.getLocalVariableAt(insn, this.storeInsn.var);
+                    frame[this.storeInsn.var] = storedLocal;
+                    this.knownFrameSize = Math.max(this.knownFrameSize, this.storeInsn.var + 1);
+                    if (storedLocal != null && this.storeInsn.var < method.maxLocals - 1 && storedLocal.desc != null
+                            && Type.getType(storedLocal.desc).getSize() == 2) {
+                        frame[this.storeInsn.var + 1] = null; // TOP
+                        this.knownFrameSize = Math.max(this.knownFrameSize, this.storeInsn.var + 2);
+                        if (settings.hasFlags(Settings.RESURRECT_EXPOSED_ON_STORE)) {
+                            Locals.resurrect(frame, this.knownFrameSize, settings);
+                        }
+                    }
+                    this.storeInsn = null;
+                }
+                
+                handleFrame: if (insn instanceof FrameNode) {
+                    this.frameIndex++;
+                    FrameNode frameNode = (FrameNode)insn;
+                    if (frameNode.type == Opcodes.F_SAME || frameNode.type == Opcodes.F_SAME1) {
+                        break handleFrame;
+                    }
+                    
+                    List<FrameData> frames = Timeline.this.frames;
+                    int frameNodeSize = Locals.computeFrameSize(frameNode, initialFrameSize);
+                    FrameData frameData = this.frameIndex < frames.size() ? frames.get(this.frameIndex) : null;
+    
+                    if (frameData != null) {
+                        if (frameData.type == Opcodes.F_FULL) {
+                            this.knownFrameSize = this.lastFrameSize = this.frameSize = Math.max(initialFrameSize, Math.min(frameNodeSize, frameData.size));
+                        } else {
+                            this.frameSize = Locals.getAdjustedFrameSize(this.frameSize, frameData, initialFrameSize);
+                        }
+                    } else {
+                        this.frameSize = Locals.getAdjustedFrameSize(this.frameSize, frameNode, initialFrameSize);
+                    }
+                    
+                    // Sanity check
+                    if (this.frameSize < initialFrameSize) {
+                        throw new IllegalStateException(String.format("Locals entered an invalid state evaluating %s::%s%s at instruction %d (%s). "
+                                + "Initial frame size is %d, calculated a frame size of %d with %s", classNode.name, method.name, method.desc,
+                                method.instructions.indexOf(insn), Bytecode.describeNode(insn, false), initialFrameSize, this.frameSize, frameData));
+                    }
+                    
+                    if ((frameData == null && (frameNode.type == Opcodes.F_CHOP || frameNode.type == Opcodes.F_NEW))
+                            || (frameData != null && frameData.type == Opcodes.F_CHOP)) {
+                        for (int framePos = this.frameSize; framePos < frame.length; framePos++) {
+                            frame[framePos] = ZombieLocalVariableNode.of(frame[framePos], ZombieLocalVariableNode.CHOP);
+                        }
+                        this.knownFrameSize = this.lastFrameSize = this.frameSize;
+                        break handleFrame;
+                    }
+    
+                    int framePos = frameNode.type == Opcodes.F_APPEND ? this.lastFrameSize : 0;
+                    this.lastFrameSize = this.frameSize;
+                    
+                    // localPos tracks the location in the frame node's locals list, which doesn't leave space for TOP entries
+                    for (int localPos = 0; framePos < frame.length; framePos++, localPos++) {
+                        // Get the local at the current position in the FrameNode's locals list
+                        final Object localType = (localPos < frameNode.local.size()) ? frameNode.local.get(localPos) : null;
+    
+                        if (localType instanceof String) { // String refers to a reference type
+                            frame[framePos] = Timeline.this.getLocalVariableAt(insn, framePos);
+                        } else if (localType instanceof Integer) { // Integer refers to a primitive type or other marker
+                            boolean isMarkerType = localType == Opcodes.UNINITIALIZED_THIS || localType == Opcodes.NULL;
+                            boolean is32bitValue = localType == Opcodes.INTEGER || localType == Opcodes.FLOAT;
+                            boolean is64bitValue = localType == Opcodes.DOUBLE || localType == Opcodes.LONG;
+                            if (localType == Opcodes.TOP) {
+                                // Explicit TOP entries are pretty much always bogus, but depending on our resurrection
+                                // strategy we may want to resurrect eligible zombies here. Real TOP entries are handled below
+                                if (frame[framePos] instanceof ZombieLocalVariableNode && settings.hasFlags(Settings.RESURRECT_FOR_BOGUS_TOP)) {
+                                    ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)frame[framePos];
+                                    if (zombie.type == ZombieLocalVariableNode.TRIM) {
+                                        frame[framePos] = zombie.ancestor;
+                                    }
+                                }
+                            } else if (isMarkerType) {
+                                frame[framePos] = null;
+                            } else if (is32bitValue || is64bitValue) {
+                                frame[framePos] = Timeline.this.getLocalVariableAt(insn, framePos);
+    
+                                if (is64bitValue) {
+                                    framePos++;
+                                    frame[framePos] = null; // TOP
+                                }
+                            } else {
+                                throw new LVTGeneratorError("Unrecognised locals opcode " + localType + " in locals array at position " + localPos
+                                        + " in " + classNode.name + "." + method.name + method.desc);
+                            }
+                        } else if (localType == null) {
+                            if (framePos >= initialFrameSize && framePos >= this.frameSize && this.frameSize > 0) {
+                                if (framePos < this.knownFrameSize) {
+                                    frame[framePos] = Timeline.this.getLocalVariableAt(insn, framePos);
+                                } else {
+                                    frame[framePos] = ZombieLocalVariableNode.of(frame[framePos], ZombieLocalVariableNode.TRIM);
+                                }
+                            }
+                        } else if (localType instanceof LabelNode) {
+                            // Uninitialised
+                        } else {
+                            throw new LVTGeneratorError("Invalid value " + localType + " in locals array at position " + localPos
+                                    + " in " + classNode.name + "." + method.name + method.desc);
+                        }
+                    }
+                } else if (insn instanceof VarInsnNode) {
+                    VarInsnNode varInsn = (VarInsnNode)insn;
+                    boolean isLoad = insn.getOpcode() >= Opcodes.ILOAD && insn.getOpcode() <= Opcodes.SALOAD;
+                    if (isLoad) {
+                        LocalVariableNode toLoad = Timeline.this.getLocalVariableAt(insn, varInsn.var);
+                        frame[varInsn.var] = toLoad;
+                        int varSize = toLoad != null && toLoad.desc != null ? Type.getType(frame[varInsn.var].desc).getSize() : 1;
+                        this.knownFrameSize = Math.max(this.knownFrameSize, varInsn.var + varSize);
+                        if (settings.hasFlags(Settings.RESURRECT_EXPOSED_ON_LOAD)) {
+                            Locals.resurrect(frame, this.knownFrameSize, settings);
+                        }
+                    } else {
+                        // Update the LVT for the opcode AFTER this one, since we always want to know
+                        // the frame state BEFORE the *current* instruction to match the contract of
+                        // injection points
+                        this.storeInsn = varInsn;
+                    }
+                }
+            }
+            
+            /**
+             * Produce the locals array for the current state, the state cannot
+             * be advanced further after calling this method
+             */
+            LocalVariableNode[] finish() {
+                final LocalVariableNode[] frame = this.frame;
+                
+                // Null out any "unknown" or mixin-provided locals
+                for (int l = 0; l < frame.length; l++) {
+                    if (frame[l] instanceof ZombieLocalVariableNode) {
+                        ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)frame[l];
+                        // preserve zombies where the frame node which culled them was immediately prior to
+                        // the matched instruction, or *was itself* the matched instruction, the returned
+                        // frame will contain the original node (the zombie ancestor)
+                        frame[l] = (zombie.lifetime > 1) ? null : zombie.ancestor;
+                    }
+                    
+                    if ((frame[l] != null && frame[l].desc == null) || frame[l] instanceof SyntheticLocalVariableNode) {
+                        frame[l] = null;
+                    }
+                }
+                
+                return frame;
+            }
+            
+        }
+        
+        final ClassNode classNode;
+        
+        final MethodNode method;
+        
+        final Settings settings;
+        
+        /**
+         * Frame metadata from the class info
+         */
+        final List<FrameData> frames;
+        
+        /**
+         * Initial frame, "this" and the method arguments
+         */
+        final LocalVariableNode[] initialLocals;
+        
+        final int initialFrameSize;
+        
+        /**
+         * True to retain snapshots between queries
+         */
+        private final boolean retainSnapshots;
+        
+        /**
+         * Snapshot <em>n</em> is the state before the instruction at position
+         * <em>n</em> * {@link #SNAPSHOT_INTERVAL} 
+         */
+        private final List<State> snapshots = new ArrayList<State>();
+        
+        /**
+         * Local variable table for the method, fetched on first use
+         */
+        private List<LocalVariableNode> localVariableTable;
+        
+        /**
+         * Create a new timeline for the specified method using the default
+         * settings
+         * 
+         * @param classNode ClassNode containing the method
+         * @param method MethodNode to explore
+         * @param fabricCompatibility Fabric compatibility level
+         */
+        public Timeline(ClassNode classNode, MethodNode method, int fabricCompatibility) {
+            this(classNode, method, Settings.DEFAULT, fabricCompatibility, true);
+        }
+        
+        Timeline(ClassNode classNode, MethodNode method, Settings settings, int fabricCompatibility, boolean retainSnapshots) {
+            ClassInfo classInfo = ClassInfo.forName(classNode.name);
+            if (classInfo == null) {
+                throw new LVTGeneratorError("Could not load class metadata for " + classNode.name + " generating LVT for " + method.name);
+            }
+            Method methodInfo = classInfo.findMethod(method, method.access | ClassInfo.INCLUDE_INITIALISERS);
+            if (methodInfo == null) {
+                throw new LVTGeneratorError("Could not locate method metadata for " + method.name + " generating LVT in " + classNode.name);
+            }
+            
+            this.classNode = classNode;
+            this.method = method;
+            this.settings = settings;
+            this.frames = methodInfo.getFrames();
+            
+            // Initialize the frame with "this" and method parameters
+            this.initialLocals = Locals.getInitialMethodLocals(method, classNode, fabricCompatibility);
+            this.initialFrameSize = this.initialLocals.length;
+            this.retainSnapshots = retainSnapshots;
+        }
+        
+        /**
+         * Get the locals available at the specified instruction, see
+         * {@link Locals#getLocalsAt(ClassNode, MethodNode, AbstractInsnNode,
+         * int)} for details
+         * 
+         * @param node Node indicating the position at which to determine the
+         *      locals state
+         * @return A sparse array containing a view (hopefully) of the locals at
+         *      the specified location
+         */
+        public LocalVariableNode[] getLocalsAt(AbstractInsnNode node) {
+            InsnList insns = this.method.instructions;
+            for (int i = 0; i < 3 && (node instanceof LabelNode || node instanceof LineNumberNode); i++) {
+                AbstractInsnNode nextNode = Locals.nextNode(insns, node);
+                if (nextNode instanceof FrameNode) { // Do not ffwd over frames
+                    break;
+                }
+                node = nextNode;
+            }
+            
+            // If the node is not in the method then the whole method is replayed
+            int size = insns.size();
+            int pos = node != null ? insns.indexOf(node) : -1;
+            if (pos < 0 || pos >= size || insns.get(pos) != node) {
+                pos = size - 1;
+            }
+            
+            State state;
+            int from;
+            if (this.retainSnapshots) {
+                int snapshot = Math.max(pos, 0) / Timeline.SNAPSHOT_INTERVAL;
+                if (this.snapshots.isEmpty()) {
+                    this.snapshots.add(new State());
+                }
+                while (this.snapshots.size() <= snapshot) {
+                    int index = this.snapshots.size() - 1;
+                    State next = new State(this.snapshots.get(index));
+                    this.advance(next, index * Timeline.SNAPSHOT_INTERVAL, (index + 1) * Timeline.SNAPSHOT_INTERVAL - 1);
+                    this.snapshots.add(next);
+                }
+                state = new State(this.snapshots.get(snapshot));
+                from = snapshot * Timeline.SNAPSHOT_INTERVAL;
+            } else {
+                state = new State();
+                from = 0;
+            }
+            
+            this.advance(state, from, pos);
+            return state.finish();
+        }
+        
+        private void advance(State state, int from, int to) {
+            if (from > to) {
+                return;
+            }
+            Iterator<AbstractInsnNode> iter = this.method.instructions.iterator(from);
+            for (int pos = from; pos <= to && iter.hasNext(); pos++) {
+                state.step(iter.next());
+            }
+        }
+        
+        LocalVariableNode getLocalVariableAt(AbstractInsnNode node, int var) {
+            if (this.localVariableTable == null) {
+                this.localVariableTable = Locals.getLocalVariableTable(this.classNode, this.method);
+            }
+            return Locals.getLocalVariableAt(this.classNode, this.method, this.localVariableTable, this.method.instructions.indexOf(node), var);
+        }
+        
+    }
+    
     /**
      * Settings for <tt>getLocalsAt</tt> containing the tunable options for the
      * algorithm. This exists for two purposes: Firstly, wrapping tunables up in
@@ -261,10 +634,27 @@ public final class Locals {
     private static final String[] FRAME_TYPES = { "TOP", "INTEGER", "FLOAT", "DOUBLE", "LONG", "NULL", "UNINITIALIZED_THIS" };
     
     /**
-     * Cached local variable lists, to avoid having to recalculate them
-     * (expensive) if multiple injectors are working with the same method
+     * Maximum number of classes to retain generated local variable tables for,
+     * tables are normally released once the class has been transformed
      */
-    private static final Map<String, List<LocalVariableNode>> calculatedLocalVariables = new HashMap<String, List<LocalVariableNode>>();
+    private static final int MAX_CALCULATED_CLASSES = 32;
+    
+    /**
+     * Cached local variable lists by class and then by method, to avoid having
+     * to recalculate them (expensive) if multiple injectors are working with
+     * the same method
+     */
+    private static final Map<String, Map<String, List<LocalVariableNode>>> calculatedLocalVariables
+            = Collections.synchronizedMap(new LinkedHashMap<String, Map<String, List<LocalVariableNode>>>(16, 0.75F, true) {
+        
+        private static final long serialVersionUID = 1L;
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, List<LocalVariableNode>>> eldest) {
+            return this.size() > Locals.MAX_CALCULATED_CLASSES;
+        }
+        
+    });
     
     private Locals() {
         // utility class
@@ -495,192 +885,7 @@ public final class Locals {
     }
 
     private static LocalVariableNode[] getLocalsAt(ClassNode classNode, MethodNode method, AbstractInsnNode node, Settings settings, int fabricCompatibility) {
-        for (int i = 0; i < 3 && (node instanceof LabelNode || node instanceof LineNumberNode); i++) {
-            AbstractInsnNode nextNode = Locals.nextNode(method.instructions, node);
-            if (nextNode instanceof FrameNode) { // Do not ffwd over frames
-                break;
-            }
-            node = nextNode;
-        }
-        
-        ClassInfo classInfo = ClassInfo.forName(classNode.name);
-        if (classInfo == null) {
-            throw new LVTGeneratorError("Could not load class metadata for " + classNode.name + " generating LVT for " + method.name);
-        }
-        Method methodInfo = classInfo.findMethod(method, method.access | ClassInfo.INCLUDE_INITIALISERS);
-        if (methodInfo == null) {
-            throw new LVTGeneratorError("Could not locate method metadata for " + method.name + " generating LVT in " + classNode.name);
-        }
-        List<FrameData> frames = methodInfo.getFrames();
-
-        // Initialize the frame with "this" and method parameters
-        LocalVariableNode[] initialLocals = getInitialMethodLocals(method, classNode, fabricCompatibility);
-        LocalVariableNode[] frame = new LocalVariableNode[method.maxLocals];
-        System.arraycopy(initialLocals, 0, frame, 0, initialLocals.length);
-
-        final int initialFrameSize = initialLocals.length;
-        int frameSize = initialFrameSize;
-        int frameIndex = -1;
-        int lastFrameSize = initialFrameSize;
-        int knownFrameSize = initialFrameSize;
-        VarInsnNode storeInsn = null;
-
-        for (Iterator<AbstractInsnNode> iter = method.instructions.iterator(); iter.hasNext();) {
-            AbstractInsnNode insn = iter.next();
-            
-            // Tick the zombies
-            for (int l = 0; l < frame.length; l++) {
-                if (frame[l] instanceof ZombieLocalVariableNode) {
-                    ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)frame[l];
-                    zombie.lifetime++;
-                    if (insn instanceof FrameNode) {
-                        zombie.frames++;
-                    }
-                }
-            }
-
-            if (storeInsn != null) {
-                LocalVariableNode storedLocal = Locals.getLocalVariableAt(classNode, method, insn, storeInsn.var);
-                frame[storeInsn.var] = storedLocal;
-                knownFrameSize = Math.max(knownFrameSize, storeInsn.var + 1);
-                if (storedLocal != null && storeInsn.var < method.maxLocals - 1 && storedLocal.desc != null
-                        && Type.getType(storedLocal.desc).getSize() == 2) {
-                    frame[storeInsn.var + 1] = null; // TOP
-                    knownFrameSize = Math.max(knownFrameSize, storeInsn.var + 2);
-                    if (settings.hasFlags(Settings.RESURRECT_EXPOSED_ON_STORE)) {
-                        Locals.resurrect(frame, knownFrameSize, settings);
-                    }
-                }
-                storeInsn = null;
-            }
-            
-            handleFrame: if (insn instanceof FrameNode) {
-                frameIndex++;
-                FrameNode frameNode = (FrameNode)insn;
-                if (frameNode.type == Opcodes.F_SAME || frameNode.type == Opcodes.F_SAME1) {
-                    break handleFrame;
-                }
-                
-                int frameNodeSize = Locals.computeFrameSize(frameNode, initialFrameSize);
-                FrameData frameData = frameIndex < frames.size() ? frames.get(frameIndex) : null;
-
-                if (frameData != null) {
-                    if (frameData.type == Opcodes.F_FULL) {
-                        knownFrameSize = lastFrameSize = frameSize = Math.max(initialFrameSize, Math.min(frameNodeSize, frameData.size));
-                    } else {
-                        frameSize = Locals.getAdjustedFrameSize(frameSize, frameData, initialFrameSize);
-                    }
-                } else {
-                    frameSize = Locals.getAdjustedFrameSize(frameSize, frameNode, initialFrameSize);
-                }
-                
-                // Sanity check
-                if (frameSize < initialFrameSize) {
-                    throw new IllegalStateException(String.format("Locals entered an invalid state evaluating %s::%s%s at instruction %d (%s). "
-                            + "Initial frame size is %d, calculated a frame size of %d with %s", classNode.name, method.name, method.desc,
-                            method.instructions.indexOf(insn), Bytecode.describeNode(insn, false), initialFrameSize, frameSize, frameData));
-                }
-                
-                if ((frameData == null && (frameNode.type == Opcodes.F_CHOP || frameNode.type == Opcodes.F_NEW))
-                        || (frameData != null && frameData.type == Opcodes.F_CHOP)) {
-                    for (int framePos = frameSize; framePos < frame.length; framePos++) {
-                        frame[framePos] = ZombieLocalVariableNode.of(frame[framePos], ZombieLocalVariableNode.CHOP);
-                    }
-                    knownFrameSize = lastFrameSize = frameSize;
-                    break handleFrame;
-                }
-
-                int framePos = frameNode.type == Opcodes.F_APPEND ? lastFrameSize : 0;
-                lastFrameSize = frameSize;
-                
-                // localPos tracks the location in the frame node's locals list, which doesn't leave space for TOP entries
-                for (int localPos = 0; framePos < frame.length; framePos++, localPos++) {
-                    // Get the local at the current position in the FrameNode's locals list
-                    final Object localType = (localPos < frameNode.local.size()) ? frameNode.local.get(localPos) : null;
-
-                    if (localType instanceof String) { // String refers to a reference type
-                        frame[framePos] = Locals.getLocalVariableAt(classNode, method, insn, framePos);
-                    } else if (localType instanceof Integer) { // Integer refers to a primitive type or other marker
-                        boolean isMarkerType = localType == Opcodes.UNINITIALIZED_THIS || localType == Opcodes.NULL;
-                        boolean is32bitValue = localType == Opcodes.INTEGER || localType == Opcodes.FLOAT;
-                        boolean is64bitValue = localType == Opcodes.DOUBLE || localType == Opcodes.LONG;
-                        if (localType == Opcodes.TOP) {
-                            // Explicit TOP entries are pretty much always bogus, but depending on our resurrection
-                            // strategy we may want to resurrect eligible zombies here. Real TOP entries are handled below
-                            if (frame[framePos] instanceof ZombieLocalVariableNode && settings.hasFlags(Settings.RESURRECT_FOR_BOGUS_TOP)) {
-                                ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)frame[framePos];
-                                if (zombie.type == ZombieLocalVariableNode.TRIM) {
-                                    frame[framePos] = zombie.ancestor;
-                                }
-                            }
-                        } else if (isMarkerType) {
-                            frame[framePos] = null;
-                        } else if (is32bitValue || is64bitValue) {
-                            frame[framePos] = Locals.getLocalVariableAt(classNode, method, insn, framePos);
-
-                            if (is64bitValue) {
-                                framePos++;
-                                frame[framePos] = null; // TOP
-                            }
-                        } else {
-                            throw new LVTGeneratorError("Unrecognised locals opcode " + localType + " in locals array at position " + localPos
-                                    + " in " + classNode.name + "." + method.name + method.desc);
-                        }
-                    } else if (localType == null) {
-                        if (framePos >= initialFrameSize && framePos >= frameSize && frameSize > 0) {
-                            if (framePos < knownFrameSize) {
-                                frame[framePos] = Locals.getLocalVariableAt(classNode, method, insn, framePos);
-                            } else {
-                                frame[framePos] = ZombieLocalVariableNode.of(frame[framePos], ZombieLocalVariableNode.TRIM);
-                            }
-                        }
-                    } else if (localType instanceof LabelNode) {
-                        // Uninitialised
-                    } else {
-                        throw new LVTGeneratorError("Invalid value " + localType + " in locals array at position " + localPos
-                                + " in " + classNode.name + "." + method.name + method.desc);
-                    }
-                }
-            } else if (insn instanceof VarInsnNode) {
-                VarInsnNode varInsn = (VarInsnNode)insn;
-                boolean isLoad = insn.getOpcode() >= Opcodes.ILOAD && insn.getOpcode() <= Opcodes.SALOAD;
-                if (isLoad) {
-                    LocalVariableNode toLoad = Locals.getLocalVariableAt(classNode, method, insn, varInsn.var);
-                    frame[varInsn.var] = toLoad;
-                    int varSize = toLoad != null && toLoad.desc != null ? Type.getType(frame[varInsn.var].desc).getSize() : 1;
-                    knownFrameSize = Math.max(knownFrameSize, varInsn.var + varSize);
-                    if (settings.hasFlags(Settings.RESURRECT_EXPOSED_ON_LOAD)) {
-                        Locals.resurrect(frame, knownFrameSize, settings);
-                    }
-                } else {
-                    // Update the LVT for the opcode AFTER this one, since we always want to know
-                    // the frame state BEFORE the *current* instruction to match the contract of
-                    // injection points
-                    storeInsn = varInsn;
-                }
-            }
-            
-            if (insn == node) {
-                break;
-            }
-        }
-
-        // Null out any "unknown" or mixin-provided locals
-        for (int l = 0; l < frame.length; l++) {
-            if (frame[l] instanceof ZombieLocalVariableNode) {
-                ZombieLocalVariableNode zombie = (ZombieLocalVariableNode)frame[l];
-                // preserve zombies where the frame node which culled them was immediately prior to
-                // the matched instruction, or *was itself* the matched instruction, the returned
-                // frame will contain the original node (the zombie ancestor)
-                frame[l] = (zombie.lifetime > 1) ? null : zombie.ancestor;
-            }
-            
-            if ((frame[l] != null && frame[l].desc == null) || frame[l] instanceof SyntheticLocalVariableNode) {
-                frame[l] = null;
-            }
-        }
-
-        return frame;
+        return new Timeline(classNode, method, settings, fabricCompatibility, false).getLocalsAt(node);
     }
     
     private static LocalVariableNode[] getLocalsAt092(ClassNode classNode, MethodNode method, AbstractInsnNode node) {
@@ -868,10 +1073,15 @@ public final class Locals {
      *      variable at the specified location in the specified local slot
      */
     private static LocalVariableNode getLocalVariableAt(ClassNode classNode, MethodNode method, int pos, int var) {
+        return Locals.getLocalVariableAt(classNode, method, Locals.getLocalVariableTable(classNode, method), pos, var);
+    }
+
+    private static LocalVariableNode getLocalVariableAt(ClassNode classNode, MethodNode method, List<LocalVariableNode> localVariableTable, int pos,
+            int var) {
         LocalVariableNode localVariableNode = null;
         LocalVariableNode fallbackNode = null;
 
-        for (LocalVariableNode local : Locals.getLocalVariableTable(classNode, method)) {
+        for (LocalVariableNode local : localVariableTable) {
             if (local.index != var) {
                 continue;
             }
@@ -923,15 +1133,34 @@ public final class Locals {
      * @return generated local variable table 
      */
     public static List<LocalVariableNode> getGeneratedLocalVariableTable(ClassNode classNode, MethodNode method) {
-        String methodId = String.format("%s.%s%s", classNode.name, method.name, method.desc);
-        List<LocalVariableNode> localVars = Locals.calculatedLocalVariables.get(methodId);
+        Map<String, List<LocalVariableNode>> classLocalVars;
+        synchronized (Locals.calculatedLocalVariables) {
+            classLocalVars = Locals.calculatedLocalVariables.get(classNode.name);
+            if (classLocalVars == null) {
+                classLocalVars = new ConcurrentHashMap<String, List<LocalVariableNode>>();
+                Locals.calculatedLocalVariables.put(classNode.name, classLocalVars);
+            }
+        }
+        
+        String methodId = method.name.concat(method.desc);
+        List<LocalVariableNode> localVars = classLocalVars.get(methodId);
         if (localVars != null) {
             return localVars;
         }
 
-        localVars = Locals.generateLocalVariableTable(classNode, method);
-        Locals.calculatedLocalVariables.put(methodId, localVars);
-        return Collections.<LocalVariableNode>unmodifiableList(localVars);
+        localVars = Collections.<LocalVariableNode>unmodifiableList(Locals.generateLocalVariableTable(classNode, method));
+        classLocalVars.put(methodId, localVars);
+        return localVars;
+    }
+    
+    /**
+     * Discard generated local variable tables for the specified class, called
+     * once the class has been transformed
+     * 
+     * @param className Name of the class (internal name)
+     */
+    public static void releaseGeneratedLocalVariableTables(String className) {
+        Locals.calculatedLocalVariables.remove(className);
     }
 
     /**
@@ -37,8 +37,13 @@ public class MethodNodeEx extends MethodNode {
     private final String originalName;
     
     public MethodNodeEx(int access, String name, String descriptor, String signature, String[] exceptions, IMixinInfo owner) {
+        this(access, name, name, descriptor, signature, exceptions, owner);
+    }
+    
+    protected MethodNodeEx(int access, String name, String originalName, String descriptor, String signature, String[] exceptions,
+            IMixinInfo owner) {
         super(ASM.API_VERSION, access, name, descriptor, signature, exceptions);
-        this.originalName = name;
+        this.originalName = originalName;
         this.owner = owner;
     }
     
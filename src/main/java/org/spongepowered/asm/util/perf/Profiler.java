@@ -709,9 +709,15 @@ public final class Profiler {
     private final List<String> phases = new ArrayList<String>();
     
     /**
-     * Profiler section stack
+     * Profiler section stack, sections are tracked per-thread so that
+     * concurrent transformations do not corrupt each other's section stack
      */
-    private final Deque<Section> stack = new LinkedList<Section>();
+    private final ThreadLocal<Deque<Section>> stack = new ThreadLocal<Deque<Section>>() {
+        @Override
+        protected Deque<Section> initialValue() {
+            return new LinkedList<Section>();
+        }
+    };
     
     public Profiler(String id) {
         this.id = id;
@@ -743,7 +749,7 @@ public final class Profiler {
         this.sections.clear();
         this.phases.clear();
         this.phases.add("Initial");
-        this.stack.clear();
+        this.stack.get().clear();
     }
 
     /**
@@ -772,7 +778,7 @@ public final class Profiler {
     }
     
     boolean isHead(Section section) {
-        return this.stack.peek() == section;
+        return this.stack.get().peek() == section;
     }
     
     /**
@@ -818,7 +824,7 @@ public final class Profiler {
         boolean fine = (flags & Profiler.FINE) != 0;
         
         String path = name;
-        Section head = this.stack.peek();
+        Section head = this.stack.get().peek();
         if (head != null) {
             path = head.getName() + (root ? Section.SEPARATOR_ROOT : Section.SEPARATOR_CHILD) + path;
             if (head.isRoot() && !root) {
@@ -834,7 +840,7 @@ public final class Profiler {
         }
         
         section.setFine(fine).setRoot(root);
-        this.stack.push(section);
+        this.stack.get().push(section);
         
         return section.start();
     }
@@ -847,7 +853,8 @@ public final class Profiler {
      */
     synchronized void end(Section section) {
         try {
-            for (Section head = this.stack.pop(), next = head; next != section; next = this.stack.pop()) {
+            Deque<Section> stack = this.stack.get();
+            for (Section head = stack.pop(), next = head; next != section; next = stack.pop()) {
                 if (next == null && Profiler.active) {
                     if (head == null) {
                         throw new IllegalStateException("Attempted to pop " + section + " but the stack is empty");